@@ -0,0 +1,209 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** Runs many jobs of Main in one JVM, as listed in a manifest file, so
+ *  that JVM startup, JIT compilation, and configuration parsing are paid
+ *  for once rather than once per job.
+ *
+ *  Each non-blank line of a manifest not starting with "#" is a job: the
+ *  names of a configuration file, an input file, and an output file, in
+ *  that order, with any of Main's options among them.  Each distinct
+ *  configuration file is parsed once; every job using it gets its own
+ *  machine, whose rotors share their compiled tables with the other
+ *  jobs' (see RotorCatalog(RotorCatalog)).  Jobs run concurrently on a
+ *  fixed number of threads.  A job that fails does not affect the
+ *  others; its error is reported in the summary, which gives, for each
+ *  job, its status, time, and throughput.
+ *  @author Frederick Fan
+ */
+class Batch {
+
+    /** The outcome of one job. */
+    private static final class Outcome {
+
+        /** The outcome of a job taking SECONDS seconds to convert INBYTES
+         *  bytes of input, with error message ERROR, or null if it
+         *  succeeded. */
+        Outcome(String error, double seconds, long inBytes) {
+            this.error = error;
+            this.seconds = seconds;
+            this.inBytes = inBytes;
+        }
+
+        /** The error message, or null. */
+        final String error;
+
+        /** Elapsed time in seconds. */
+        final double seconds;
+
+        /** Size of the input in bytes. */
+        final long inBytes;
+    }
+
+    /** A batch running jobs on THREADS threads. */
+    Batch(int threads) {
+        _executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /** Return a new machine configured from the configuration file named
+     *  NAME, parsing the file only if no earlier job has. */
+    Machine machine(String name) {
+        ConfigParser config =
+            _configs.computeIfAbsent(
+                new File(name).getAbsolutePath(),
+                path -> new ConfigParser(new String(readFile(path))));
+        return new Machine(config.alphabet(), config.numRotors(),
+                           config.numPawls(),
+                           new RotorCatalog(config.catalog()));
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static byte[] readFile(String name) {
+        try {
+            return Files.readAllBytes(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return the outcome of running Main with arguments ARGS. */
+    private Outcome run(String[] args) {
+        long start = System.nanoTime();
+        Main main = null;
+        try {
+            main = new Main(args, this::machine);
+            String[] files = main.files();
+            if (files.length != 3) {
+                throw error("a job needs a configuration, input, and "
+                            + "output file");
+            }
+            main.process();
+            return new Outcome(null, (System.nanoTime() - start) / 1e9,
+                               new File(files[1]).length());
+        } catch (EnigmaException excp) {
+            return new Outcome(excp.getMessage(),
+                               (System.nanoTime() - start) / 1e9, 0);
+        } catch (RuntimeException excp) {
+            return new Outcome("internal error: " + excp,
+                               (System.nanoTime() - start) / 1e9, 0);
+        } finally {
+            if (main != null) {
+                main.close();
+            }
+        }
+    }
+
+    /** Return the number of configuration files parsed so far. */
+    int configurations() {
+        return _configs.size();
+    }
+
+    /** Run JOBS, each the arguments of one run of Main, and write a
+     *  summary to REPORT.  Return true iff all succeeded. */
+    boolean run(List<String[]> jobs, PrintStream report) {
+        long start = System.nanoTime();
+        ArrayList<Future<Outcome>> outcomes = new ArrayList<>();
+        for (String[] job : jobs) {
+            outcomes.add(_executor.submit(() -> run(job)));
+        }
+        int failed = 0;
+        long totalBytes = 0;
+        report.printf("%4s %-6s %9s %12s %9s  %s%n", "job", "status",
+                      "seconds", "bytes", "MB/s", "arguments");
+        for (int j = 0; j < jobs.size(); j += 1) {
+            Outcome outcome;
+            try {
+                outcome = outcomes.get(j).get();
+            } catch (InterruptedException | ExecutionException excp) {
+                outcome = new Outcome("internal error: " + excp, 0, 0);
+            }
+            String args = String.join(" ", jobs.get(j));
+            if (outcome.error == null) {
+                report.printf("%4d %-6s %9.3f %12d %9.2f  %s%n", j + 1, "ok",
+                              outcome.seconds, outcome.inBytes,
+                              outcome.inBytes / MEGA
+                              / Math.max(outcome.seconds, 1e-9), args);
+                totalBytes += outcome.inBytes;
+            } else {
+                failed += 1;
+                report.printf("%4d %-6s %9.3f %12s %9s  %s%n", j + 1,
+                              "FAILED", outcome.seconds, "-", "-", args);
+                report.printf("%4s Error: %s%n", "", outcome.error);
+            }
+        }
+        _executor.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        report.printf("%d jobs, %d failed, %d bytes in %.3f seconds "
+                      + "(%.2f MB/s), %d configurations parsed%n",
+                      jobs.size(), failed, totalBytes, seconds,
+                      totalBytes / MEGA / seconds, _configs.size());
+        return failed == 0;
+    }
+
+    /** Return the jobs in the manifest file named NAME. */
+    static List<String[]> readManifest(String name) {
+        ArrayList<String[]> result = new ArrayList<>();
+        for (String line : new String(readFile(name)).split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                result.add(line.split("\\s+"));
+            }
+        }
+        return result;
+    }
+
+    /** Run the jobs in the manifest file named by the last of ARGS (see
+     *  the class comment), printing a summary on the standard output.
+     *  The other ARGS are options:
+     *      --threads=N    Run N jobs at a time (default: the number of
+     *                     processors).
+     *  Exits with code 1 if any job fails. */
+    public static void main(String... args) {
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            int k;
+            for (k = 0; k < args.length - 1; k += 1) {
+                if (args[k].startsWith("--threads=")) {
+                    threads = Main.intOption(args[k]);
+                } else {
+                    throw error("unknown option %s", args[k]);
+                }
+            }
+            if (k != args.length - 1) {
+                throw error("Usage: java enigma.Batch [--threads=N] "
+                            + "MANIFEST");
+            }
+            if (new Batch(threads).run(readManifest(args[k]), System.out)) {
+                return;
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Bytes in a megabyte. */
+    private static final double MEGA = 1 << 20;
+
+    /** Threads on which jobs run. */
+    private final ExecutorService _executor;
+
+    /** Parsed configurations, by absolute file name. */
+    private final ConcurrentHashMap<String, ConfigParser> _configs =
+        new ConcurrentHashMap<>();
+
+}
@@ -0,0 +1,85 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Batch class.
+ *  @author Frederick Fan
+ */
+public class BatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new temporary file named like NAME, containing
+     *  CONTENTS. */
+    private File file(String name, String contents) throws IOException {
+        File result = File.createTempFile("batch", name);
+        result.deleteOnExit();
+        Files.write(result.toPath(),
+                    contents.getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    /** Return the contents of FILE. */
+    private String contents(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()),
+                          StandardCharsets.UTF_8);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkJobs() throws IOException {
+        String good = "* B BETA I II III AAAA\nHELLO WORLD\n";
+        File goodIn = file(".in", good);
+        File badIn = file(".in", "* B BETA I II III AAAA\nHELL0\n");
+        File goodOut = file(".out", ""), badOut = file(".out", "");
+        File optionOut = file(".out", "");
+        File manifest =
+            file(".jobs", "# Two jobs sharing a configuration.\n"
+                 + "default.conf " + goodIn + " " + goodOut + "\n\n"
+                 + "--engine=flat default.conf " + badIn + " " + badOut
+                 + "\n" + "  --chunk-size 100 default.conf " + goodIn + " "
+                 + optionOut + "\n");
+        List<String[]> jobs = Batch.readManifest(manifest.getPath());
+        assertEquals(3, jobs.size());
+        assertEquals("--engine=flat", jobs.get(1)[0]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Batch batch = new Batch(2);
+        assertFalse(batch.run(jobs, new PrintStream(bytes, true)));
+        assertEquals(1, batch.configurations());
+        String[] report = bytes.toString().split("\\R");
+        assertEquals(7, report.length);
+        assertTrue(report[1], report[1].matches(" *1 ok .*"));
+        assertTrue(report[2], report[2].matches(" *2 FAILED .*"));
+        assertTrue(report[3], report[3].matches(
+                       " *Error: illegal character '0' at line 2.*"));
+        assertTrue(report[4], report[4].matches(" *3 FAILED .*"));
+        assertTrue(report[5], report[5].matches(
+                       " *Error: unknown option --chunk-size"));
+        assertTrue(report[6], report[6].startsWith("3 jobs, 2 failed, "
+                                                   + good.length()
+                                                   + " bytes in "));
+        assertTrue(report[6], report[6].endsWith(
+                       ", 1 configurations parsed"));
+
+        assertEquals("ILBDA AMTAZ", contents(goodOut).trim());
+        assertEquals("", contents(optionOut));
+    }
+
+}
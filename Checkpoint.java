@@ -0,0 +1,157 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import static enigma.EnigmaException.*;
+
+/** A record of how far a run of Main has got through its input: where the
+ *  next unprocessed line starts in the input, how much output has been
+ *  written, the settings line of the current message, and the positions
+ *  of the rotors.  This is enough to restart a run at that point without
+ *  reprocessing anything before it.
+ *  @author Frederick Fan
+ */
+class Checkpoint {
+
+    /** A checkpoint at INPUTOFFSET bytes into the input, before line
+     *  LINENUMBER + 1, with OUTPUTOFFSET bytes of output written, in the
+     *  message whose settings line is SETTINGS, with the rotors (not
+     *  counting the reflector) at POSITIONS. */
+    Checkpoint(long inputOffset, long outputOffset, int lineNumber,
+               String settings, int[] positions) {
+        _inputOffset = inputOffset;
+        _outputOffset = outputOffset;
+        _lineNumber = lineNumber;
+        _settings = settings;
+        _positions = positions;
+    }
+
+    /** Return the position of the next unprocessed byte of input. */
+    long inputOffset() {
+        return _inputOffset;
+    }
+
+    /** Return the number of bytes of output written. */
+    long outputOffset() {
+        return _outputOffset;
+    }
+
+    /** Return the number of lines of input processed. */
+    int lineNumber() {
+        return _lineNumber;
+    }
+
+    /** Return the settings line of the current message. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the positions of the rotors, leftmost first, not counting
+     *  the reflector. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** Write me to the file named NAME, replacing it atomically, so that
+     *  a reader sees either the old checkpoint or the new one. */
+    void write(File name) {
+        Properties props = new Properties();
+        props.setProperty("input.offset", Long.toString(_inputOffset));
+        props.setProperty("output.offset", Long.toString(_outputOffset));
+        props.setProperty("line", Integer.toString(_lineNumber));
+        props.setProperty("settings", _settings);
+        props.setProperty("positions", positionList());
+        props.setProperty("checksum", checksum());
+
+        File temp = new File(name.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            props.store(out, "enigma checkpoint");
+            out.getFD().sync();
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", temp);
+        }
+        try {
+            Files.move(temp.toPath(), name.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", name);
+        }
+    }
+
+    /** Return my positions as a comma-separated list. */
+    private String positionList() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < _positions.length; i += 1) {
+            result.append(i == 0 ? "" : ",").append(_positions[i]);
+        }
+        return result.toString();
+    }
+
+    /** Return a checksum of my contents, as recorded in my file so that a
+     *  damaged file is not mistaken for a checkpoint. */
+    private String checksum() {
+        CRC32 crc = new CRC32();
+        String contents = String.join("\n", Long.toString(_inputOffset),
+                                      Long.toString(_outputOffset),
+                                      Integer.toString(_lineNumber),
+                                      _settings, positionList());
+        crc.update(contents.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /** Return the checkpoint in the file named NAME, which must be
+     *  intact. */
+    static Checkpoint read(File name) {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(name)) {
+            props.load(in);
+        } catch (IOException excp) {
+            throw error("could not read checkpoint %s", name);
+        }
+        Checkpoint result;
+        try {
+            String[] posns = props.getProperty("positions").split(",");
+            int[] positions = new int[posns.length];
+            for (int i = 0; i < posns.length; i += 1) {
+                positions[i] = Integer.parseInt(posns[i]);
+            }
+            result = new Checkpoint(
+                Long.parseLong(props.getProperty("input.offset")),
+                Long.parseLong(props.getProperty("output.offset")),
+                Integer.parseInt(props.getProperty("line")),
+                props.getProperty("settings"), positions);
+        } catch (NullPointerException | NumberFormatException excp) {
+            throw error("malformed checkpoint %s", name);
+        }
+        if (!result.checksum().equals(props.getProperty("checksum"))) {
+            throw error("corrupt checkpoint %s", name);
+        }
+        return result;
+    }
+
+    /** Position of the next unprocessed byte of input. */
+    private final long _inputOffset;
+
+    /** Number of bytes of output written. */
+    private final long _outputOffset;
+
+    /** Number of lines of input processed. */
+    private final int _lineNumber;
+
+    /** Settings line of the current message. */
+    private final String _settings;
+
+    /** Positions of the rotors, not counting the reflector. */
+    private final int[] _positions;
+
+}
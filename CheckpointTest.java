@@ -0,0 +1,147 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Checkpoint class, and for
+ *  checkpointed runs of Main.
+ *  @author Frederick Fan
+ */
+public class CheckpointTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Input whose sixth line has an illegal character, with mixed line
+     *  terminators. */
+    static final String INPUT =
+        "* B BETA I II III AAAA\r\nHELLO WORLD\nFROM HIS SHOULDER\r\n"
+        + "HIAWATHA\n* B BETA III IV I AXLE (YF) (ZH)\r\nTOOK THE CAM3RA\n"
+        + "OF ROSEWOOD\r\nMADE OF SLIDING FOLDING ROSEWOOD\n";
+
+    /** Return a new temporary file named like NAME, containing
+     *  CONTENTS. */
+    private File file(String name, String contents) throws IOException {
+        File result = File.createTempFile("checkpoint", name);
+        result.deleteOnExit();
+        Files.write(result.toPath(),
+                    contents.getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    /** Run Main with the configuration default.conf, input file INPUT,
+     *  output file OUTPUT, and options OPTIONS. */
+    private void run(File input, File output, String... options) {
+        String[] args = Arrays.copyOf(options, options.length + 3);
+        args[options.length] = "default.conf";
+        args[options.length + 1] = input.getPath();
+        args[options.length + 2] = output.getPath();
+        Main main = new Main(args);
+        try {
+            main.process();
+        } finally {
+            main.close();
+        }
+    }
+
+    /** Return the contents of FILE. */
+    private String contents(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()),
+                          StandardCharsets.UTF_8);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkResume() throws IOException {
+        File input = file(".in", INPUT);
+        File output = file(".out", "");
+        File ckpt = new File(output.getPath() + ".ckpt");
+        ckpt.deleteOnExit();
+        try {
+            run(input, output, "--checkpoint=2");
+            fail("illegal character not reported");
+        } catch (EnigmaException excp) {
+            /* The run is interrupted, leaving its checkpoint. */
+        }
+        Checkpoint saved = Checkpoint.read(ckpt);
+        assertEquals(4, saved.lineNumber());
+        assertEquals(INPUT.indexOf("* B BETA III"), saved.inputOffset());
+        Files.write(output.toPath(),
+                    "GARBAGE".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        Files.write(input.toPath(), INPUT.replace("CAM3RA", "CAMERA")
+                    .getBytes(StandardCharsets.UTF_8));
+        run(input, output, "--resume");
+        assertFalse(ckpt.exists());
+        File direct = file(".out", "");
+        run(input, direct);
+        assertEquals(contents(direct), contents(output));
+    }
+
+    @Test
+    public void checkTruncated() throws IOException {
+        File ckpt = file(".ckpt", "");
+        new Checkpoint(41, 21, 4, "* B BETA I II III AAAA",
+                       new int[] { 0, 0, 0, 15 }).write(ckpt);
+        byte[] whole = Files.readAllBytes(ckpt.toPath());
+        Checkpoint read = Checkpoint.read(ckpt);
+        assertEquals(41, read.inputOffset());
+        assertEquals(21, read.outputOffset());
+        assertEquals("* B BETA I II III AAAA", read.settings());
+        assertArrayEquals(new int[] { 0, 0, 0, 15 }, read.positions());
+        for (int len = 0; len < whole.length - 1; len += 1) {
+            try (RandomAccessFile out = new RandomAccessFile(ckpt, "rw")) {
+                out.write(whole);
+                out.setLength(len);
+            }
+            try {
+                Checkpoint.read(ckpt);
+                fail(msg("checkTruncated", "accepted %d of %d bytes", len,
+                         whole.length));
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkMalformed() throws IOException {
+        Checkpoint.read(file(".ckpt",
+                             "input.offset=41\noutput.offset=21\nline=four\n"
+                             + "settings=* B BETA I II III AAAA\n"
+                             + "positions=0,0,0,15\n"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkAltered() throws IOException {
+        File ckpt = file(".ckpt", "");
+        new Checkpoint(41, 21, 4, "* B BETA I II III AAAA",
+                       new int[] { 0, 0, 0, 15 }).write(ckpt);
+        Files.write(ckpt.toPath(),
+                    contents(ckpt).replace("line=4", "line=5")
+                    .getBytes(StandardCharsets.UTF_8));
+        Checkpoint.read(ckpt);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkMissing() {
+        Checkpoint.read(new File("no/such/checkpoint"));
+    }
+
+}
@@ -0,0 +1,167 @@
+package enigma;
+
+import java.nio.CharBuffer;
+
+/** The tables of a rotor, compiled so that converting a character,
+ *  testing for a notch, and advancing are each a matter of indexing an
+ *  array.  For every position of the rotor there are forward and backward
+ *  tables with the shift for that position already applied; the notches
+ *  are a bitmap indexed by position; and the position following each
+ *  position is tabulated as well.  For very large alphabets, where a table
+ *  per position would take too much space, the shift is applied by
+ *  comparison and subtraction instead.  In neither case is there any
+ *  division.  The tables may instead be read in place from a
+ *  RotorTableFile, which holds them for ring setting 0 only: at ring
+ *  setting R, the tables for position P are those for position P - R at
+ *  ring setting 0.
+ *  @author Frederick Fan
+ */
+final class CompiledRotor {
+
+    /** Tables for a rotor whose permutation at position 0 is FORWARD, with
+     *  inverse BACKWARD, and which has notches at the positions in
+     *  NOTCHES. */
+    CompiledRotor(int[] forward, int[] backward, int[] notches) {
+        int n = forward.length;
+        _size = n;
+        _base = forward;
+        _baseInverse = backward;
+        if (n <= SHIFTED_LIMIT) {
+            _forward = new int[n * n];
+            _backward = new int[n * n];
+            for (int posn = 0; posn < n; posn += 1) {
+                for (int p = 0; p < n; p += 1) {
+                    _forward[posn * n + p] =
+                        unshift(forward[shift(p, posn)], posn);
+                    _backward[posn * n + p] =
+                        unshift(backward[shift(p, posn)], posn);
+                }
+            }
+        } else {
+            _forward = _backward = null;
+        }
+        _mapped = null;
+        _ring = 0;
+        _notches = notchMap(n, notches);
+        _next = successors(n);
+    }
+
+    /** Tables for a rotor of SIZE positions at ring setting RING, read in
+     *  place from TABLES, which holds the forward and then the backward
+     *  table for each position at ring setting 0 (as in a RotorTableFile),
+     *  and which has notches at the positions in NOTCHES. */
+    CompiledRotor(CharBuffer tables, int size, int ring, int[] notches) {
+        _size = size;
+        _base = _baseInverse = null;
+        _forward = _backward = null;
+        _mapped = tables;
+        _ring = ring;
+        _notches = notchMap(size, notches);
+        _next = successors(size);
+    }
+
+    /** Return the notch bitmap for a rotor of SIZE positions with notches
+     *  at the positions in NOTCHES. */
+    private static long[] notchMap(int size, int[] notches) {
+        long[] result = new long[(size + WORD_SIZE - 1) / WORD_SIZE];
+        for (int posn : notches) {
+            result[posn / WORD_SIZE] |= 1L << posn;
+        }
+        return result;
+    }
+
+    /** Return the table of the positions following each of SIZE
+     *  positions. */
+    private static int[] successors(int size) {
+        int[] result = new int[size];
+        for (int posn = 0; posn < size; posn += 1) {
+            result[posn] = posn + 1 == size ? 0 : posn + 1;
+        }
+        return result;
+    }
+
+    /** Return P + POSN, modulo my size, for 0 <= P, POSN < size(). */
+    private int shift(int p, int posn) {
+        int r = p + posn;
+        return r >= _size ? r - _size : r;
+    }
+
+    /** Return P - POSN, modulo my size, for 0 <= P, POSN < size(). */
+    private int unshift(int p, int posn) {
+        int r = p - posn;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the conversion of P when the rotor is at position POSN. */
+    int forward(int posn, int p) {
+        if (_forward != null) {
+            return _forward[posn * _size + p];
+        } else if (_mapped != null) {
+            return _mapped.get(2 * _size * unshift(posn, _ring) + p);
+        }
+        return unshift(_base[shift(p, posn)], posn);
+    }
+
+    /** Return the inverse conversion of E when the rotor is at position
+     *  POSN. */
+    int backward(int posn, int e) {
+        if (_backward != null) {
+            return _backward[posn * _size + e];
+        } else if (_mapped != null) {
+            return _mapped.get((2 * unshift(posn, _ring) + 1) * _size + e);
+        }
+        return unshift(_baseInverse[shift(e, posn)], posn);
+    }
+
+    /** Return true iff position POSN is at a notch. */
+    boolean atNotch(int posn) {
+        return (_notches[posn >>> WORD_SHIFT] & (1L << posn)) != 0;
+    }
+
+    /** Return the position following POSN. */
+    int next(int posn) {
+        return _next[posn];
+    }
+
+    /** Largest alphabet for which a table is kept for every position. */
+    static final int SHIFTED_LIMIT = 256;
+
+    /** Number of bits in a word of the notch bitmap. */
+    private static final int WORD_SIZE = 64;
+
+    /** Log base 2 of WORD_SIZE. */
+    private static final int WORD_SHIFT = 6;
+
+    /** Size of my alphabet. */
+    private final int _size;
+
+    /** The permutation at position 0, and its inverse (null if my tables
+     *  are read in place). */
+    private final int[] _base, _baseInverse;
+
+    /** Forward tables for each position, concatenated (or null for large
+     *  alphabets). */
+    private final int[] _forward;
+
+    /** Backward tables for each position, concatenated (or null for large
+     *  alphabets). */
+    private final int[] _backward;
+
+    /** Tables read in place from a RotorTableFile, or null. */
+    private final CharBuffer _mapped;
+
+    /** The ring setting applied to _mapped. */
+    private final int _ring;
+
+    /** Bitmap of the positions at notches. */
+    private final long[] _notches;
+
+    /** The position following each position. */
+    private final int[] _next;
+
+}
@@ -0,0 +1,356 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static enigma.EnigmaException.*;
+
+/** Streams that decompress input or compress output on a thread of their
+ *  own, so that the time spent on compression overlaps with the time
+ *  spent converting, rather than adding to it.  The background thread and
+ *  the thread using the stream pass blocks of uncompressed bytes through
+ *  a queue holding at most a few blocks, so that neither gets far ahead
+ *  of the other.
+ *  @author Frederick Fan
+ */
+class Compression {
+
+    /** Formats of compressed streams. */
+    enum Format {
+        /** Not compressed. */
+        NONE,
+        /** Gzip (as written by gzip(1) and GZIPOutputStream). */
+        GZIP,
+        /** Zlib, the default format of Deflater and Inflater. */
+        DEFLATE,
+        /** Deflate with no header or checksum (Deflater with nowrap). */
+        RAW
+    }
+
+    /** Return the format named NAME (ignoring case), as given in an
+     *  option. */
+    static Format format(String name) {
+        try {
+            return Format.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException excp) {
+            throw error("unknown compression format %s", name);
+        }
+    }
+
+    /** Return the format implied by the extension of the file named NAME:
+     *  GZIP for .gz, DEFLATE for .zz or .deflate, and otherwise NONE. */
+    static Format formatOf(String name) {
+        if (name.endsWith(".gz")) {
+            return Format.GZIP;
+        } else if (name.endsWith(".zz") || name.endsWith(".deflate")) {
+            return Format.DEFLATE;
+        }
+        return Format.NONE;
+    }
+
+    /** Return a stream of the bytes of RAW, decompressed according to
+     *  FORMAT on a background thread, or RAW itself if FORMAT is
+     *  NONE. */
+    static InputStream input(InputStream raw, Format format) {
+        switch (format) {
+        case NONE:
+            return raw;
+        case GZIP:
+            try {
+                return new BlockInputStream(new GZIPInputStream(raw,
+                                                                BLOCK_SIZE));
+            } catch (IOException excp) {
+                throw error("could not read gzip header: %s",
+                            excp.getMessage());
+            }
+        default:
+            return new BlockInputStream(
+                new InflaterInputStream(raw,
+                                        new Inflater(format == Format.RAW),
+                                        BLOCK_SIZE));
+        }
+    }
+
+    /** Return a stream that compresses the bytes written to it according
+     *  to FORMAT on a background thread, writing the result to RAW, or RAW
+     *  itself if FORMAT is NONE.  Closing the stream finishes the
+     *  compressed data and closes RAW. */
+    static OutputStream output(OutputStream raw, Format format) {
+        try {
+            switch (format) {
+            case NONE:
+                return raw;
+            case GZIP:
+                return new BlockOutputStream(new GZIPOutputStream(raw,
+                                                                  BLOCK_SIZE));
+            default:
+                Deflater deflater =
+                    new Deflater(Deflater.DEFAULT_COMPRESSION,
+                                 format == Format.RAW);
+                return new BlockOutputStream(
+                    new DeflaterOutputStream(raw, deflater, BLOCK_SIZE) {
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            deflater.end();
+                        }
+                    });
+            }
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** A stream whose bytes are read from another by a background thread,
+     *  and passed over in blocks. */
+    private static final class BlockInputStream extends InputStream {
+
+        /** A stream of the bytes of SOURCE, which is read on a new
+         *  thread. */
+        BlockInputStream(InputStream source) {
+            _source = source;
+            _thread = new Thread(this::fill, "decompress");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        /** Read _source to its end, in blocks, onto _blocks. */
+        private void fill() {
+            try {
+                while (true) {
+                    byte[] block = new byte[BLOCK_SIZE];
+                    int len = _source.readNBytes(block, 0, BLOCK_SIZE);
+                    if (len == 0) {
+                        break;
+                    }
+                    _blocks.put(len == BLOCK_SIZE ? block
+                                : Arrays.copyOf(block, len));
+                }
+            } catch (IOException excp) {
+                _error = excp;
+            } catch (InterruptedException excp) {
+                return;
+            }
+            try {
+                _blocks.put(END);
+            } catch (InterruptedException excp) {
+                /* Closed: no one is waiting for the end. */
+            }
+        }
+
+        /** Make _block hold unread bytes, if there are any more.  Return
+         *  false at the end of the stream. */
+        private boolean next() throws IOException {
+            while (_block != END && _pos == _block.length) {
+                try {
+                    _block = _blocks.take();
+                } catch (InterruptedException excp) {
+                    throw new InterruptedIOException();
+                }
+                _pos = 0;
+            }
+            if (_block == END && _error != null) {
+                throw _error;
+            }
+            return _block != END;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!next()) {
+                return -1;
+            }
+            _pos += 1;
+            return _block[_pos - 1] & BYTE_MASK;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!next()) {
+                return -1;
+            }
+            int n = Math.min(len, _block.length - _pos);
+            System.arraycopy(_block, _pos, b, off, n);
+            _pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _thread.interrupt();
+            _source.close();
+        }
+
+        /** The stream read by _thread. */
+        private final InputStream _source;
+
+        /** The thread reading _source. */
+        private final Thread _thread;
+
+        /** Blocks read from _source and not yet taken. */
+        private final ArrayBlockingQueue<byte[]> _blocks =
+            new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+
+        /** The block being read. */
+        private byte[] _block = new byte[0];
+
+        /** Position of the next unread byte of _block. */
+        private int _pos;
+
+        /** The error that ended the reading of _source, or null. */
+        private volatile IOException _error;
+    }
+
+    /** A stream whose bytes are passed over in blocks to a background
+     *  thread, which writes them to another. */
+    private static final class BlockOutputStream extends OutputStream {
+
+        /** A stream writing to SINK on a new thread. */
+        BlockOutputStream(OutputStream sink) {
+            _sink = sink;
+            _thread = new Thread(this::drain, "compress");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        /** Write the blocks on _blocks to _sink, until the end. */
+        private void drain() {
+            try {
+                while (true) {
+                    byte[] block = _blocks.take();
+                    if (block == END) {
+                        break;
+                    } else if (_error == null) {
+                        try {
+                            _sink.write(block, 0, block.length);
+                        } catch (IOException excp) {
+                            _error = excp;
+                        }
+                    }
+                }
+                _sink.close();
+            } catch (IOException excp) {
+                if (_error == null) {
+                    _error = excp;
+                }
+            } catch (InterruptedException excp) {
+                return;
+            }
+        }
+
+        /** Pass the first LEN bytes of _block to the background thread, and
+         *  start a new block. */
+        private void pass(int len) throws IOException {
+            if (_error != null) {
+                throw _error;
+            }
+            try {
+                _blocks.put(len == _block.length ? _block
+                            : Arrays.copyOf(_block, len));
+            } catch (InterruptedException excp) {
+                throw new InterruptedIOException();
+            }
+            _block = new byte[BLOCK_SIZE];
+            _pos = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (_pos == _block.length) {
+                pass(_pos);
+            }
+            _block[_pos] = (byte) b;
+            _pos += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (_pos == _block.length) {
+                    pass(_pos);
+                }
+                int n = Math.min(len, _block.length - _pos);
+                System.arraycopy(b, off, _block, _pos, n);
+                _pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Pass any bytes written to the background thread.  This does not
+         *  wait for them to be compressed. */
+        @Override
+        public void flush() throws IOException {
+            if (_pos > 0) {
+                pass(_pos);
+            }
+        }
+
+        /** Finish the compressed data, wait for it to be written, and
+         *  close the stream written to. */
+        @Override
+        public void close() throws IOException {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            flush();
+            try {
+                _blocks.put(END);
+                _thread.join();
+            } catch (InterruptedException excp) {
+                throw new InterruptedIOException();
+            }
+            if (_error != null) {
+                throw _error;
+            }
+        }
+
+        /** The stream written by _thread. */
+        private final OutputStream _sink;
+
+        /** The thread writing _sink. */
+        private final Thread _thread;
+
+        /** Blocks written and not yet taken. */
+        private final ArrayBlockingQueue<byte[]> _blocks =
+            new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+
+        /** The block being filled. */
+        private byte[] _block = new byte[BLOCK_SIZE];
+
+        /** Number of bytes of _block filled. */
+        private int _pos;
+
+        /** True once I have been closed. */
+        private boolean _closed;
+
+        /** The first error in writing _sink, or null. */
+        private volatile IOException _error;
+    }
+
+    /** Size of a block of uncompressed bytes. */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /** Largest number of blocks waiting to be passed on. */
+    private static final int QUEUE_BLOCKS = 8;
+
+    /** Marks the end of a queue of blocks. */
+    private static final byte[] END = new byte[0];
+
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+}
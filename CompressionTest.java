@@ -0,0 +1,107 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Compression class.
+ *  @author Frederick Fan
+ */
+public class CompressionTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return LEN bytes of compressible text. */
+    private byte[] text(int len) {
+        byte[] result = new byte[len];
+        for (int i = 0; i < len; i += 1) {
+            result[i] = (byte) (i % 61 == 60 ? '\n'
+                                : 'A' + (i * 7 + i / 26) % 26);
+        }
+        return result;
+    }
+
+    /** Return DATA compressed in FORMAT. */
+    private byte[] compress(byte[] data, Compression.Format format)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = Compression.output(bytes, format)) {
+            int half = data.length / 2;
+            out.write(data, 0, half);
+            for (int i = half; i < data.length; i += 1) {
+                out.write(data[i]);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return the decompression of DATA, which is in FORMAT. */
+    private byte[] decompress(byte[] data, Compression.Format format)
+        throws IOException {
+        try (InputStream in =
+             Compression.input(new ByteArrayInputStream(data), format)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRoundTrip() throws IOException {
+        for (Compression.Format format : Compression.Format.values()) {
+            for (int len : new int[] { 0, 1, 1000, 1 << 20 }) {
+                byte[] data = text(len);
+                byte[] compressed = compress(data, format);
+                assertArrayEquals(msg("checkRoundTrip", "%s, %d bytes",
+                                      format, len),
+                                  data, decompress(compressed, format));
+                if (format != Compression.Format.NONE && len >= 1000) {
+                    assertTrue(compressed.length < len / 2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkGzipCompatible() throws IOException {
+        byte[] data = text(100_000);
+        byte[] compressed = compress(data, Compression.Format.GZIP);
+        try (InputStream in =
+             new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void checkCorruptInput() throws IOException {
+        byte[] compressed = compress(text(100_000),
+                                     Compression.Format.DEFLATE);
+        compressed[compressed.length / 2] ^= 0x55;
+        compressed[compressed.length / 2 + 1] ^= 0x55;
+        decompress(compressed, Compression.Format.DEFLATE);
+    }
+
+    @Test
+    public void checkFormats() {
+        assertEquals(Compression.Format.GZIP, Compression.formatOf("a.gz"));
+        assertEquals(Compression.Format.DEFLATE,
+                     Compression.formatOf("a.deflate"));
+        assertEquals(Compression.Format.NONE, Compression.formatOf("a.txt"));
+        assertEquals(Compression.Format.RAW, Compression.format("raw"));
+    }
+
+}
@@ -0,0 +1,251 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A parser for machine configuration files.  A configuration consists of
+ *  a line giving the alphabet (either a range such as A-Z, or the
+ *  characters of the alphabet in order), the number of rotor slots and
+ *  the number of pawls, and then any number of rotor descriptions.  A
+ *  rotor description is a name, a kind and notches (M followed by the
+ *  notch characters for a moving rotor, N for a non-moving rotor, R for a
+ *  reflector), and then cycles such as (ABC), which may be separated by
+ *  whitespace, including line breaks, or not at all.
+ *
+ *  The text is read in one pass, character by character, checking the
+ *  cycles of each rotor as it goes, and the rotors are entered in a
+ *  RotorCatalog, which builds each one only when it is first used.  Errors
+ *  are reported with the line and column at which they occur.
+ *  @author Frederick Fan
+ */
+class ConfigParser {
+
+    /** A parser for the configuration TEXT, which it parses at once. */
+    ConfigParser(String text) {
+        _text = text;
+        parseHeader();
+        _validator = new LineValidator(_alphabet, false);
+        _used = new int[_alphabet.size()];
+        _catalog = new RotorCatalog(_alphabet);
+        while (skipWhitespace() < _text.length()) {
+            parseRotor();
+        }
+    }
+
+    /** Return the alphabet of the configuration. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return the rotors described. */
+    RotorCatalog catalog() {
+        return _catalog;
+    }
+
+    /** Parse the alphabet line, the number of rotor slots, and the number
+     *  of pawls. */
+    private void parseHeader() {
+        skipWhitespace();
+        if (_pos >= _text.length()) {
+            throw syntax(_pos, "configuration file is empty");
+        }
+        int start = _pos;
+        StringBuilder chars = new StringBuilder();
+        while (_pos < _text.length() && _text.charAt(_pos) != '\n') {
+            char c = _text.charAt(_pos);
+            if (c == '(' || c == ')' || c == '*') {
+                throw syntax(_pos, "'%c' cannot be in the alphabet", c);
+            } else if (!Character.isWhitespace(c)) {
+                if (chars.indexOf(String.valueOf(c)) >= 0) {
+                    throw syntax(_pos, "'%c' appears twice in the alphabet",
+                                 c);
+                }
+                chars.append(c);
+            }
+            _pos += 1;
+        }
+        if (chars.length() == 3 && chars.charAt(1) == '-') {
+            if (chars.charAt(0) > chars.charAt(2)) {
+                throw syntax(start, "empty range of characters");
+            }
+            _alphabet = new CharacterRange(chars.charAt(0), chars.charAt(2));
+        } else {
+            _alphabet = new MixedAlphabet(chars.toString());
+        }
+        _numRotors = number("number of rotor slots");
+        int pawlsAt = skipWhitespace();
+        _numPawls = number("number of pawls");
+        if (_numRotors < 2) {
+            throw syntax(pawlsAt, "a machine needs at least 2 rotor slots");
+        } else if (_numPawls >= _numRotors) {
+            throw syntax(pawlsAt, "too many pawls");
+        }
+    }
+
+    /** Parse and return the non-negative number that comes next, which is
+     *  the WHAT. */
+    private int number(String what) {
+        int start = skipWhitespace();
+        int end = skipToken();
+        try {
+            return Integer.parseUnsignedInt(_text.substring(start, end));
+        } catch (NumberFormatException excp) {
+            throw syntax(start, "expected the %s", what);
+        }
+    }
+
+    /** Parse the rotor description that starts at _pos, and add it to
+     *  _catalog. */
+    private void parseRotor() {
+        int start = _pos;
+        if (_text.charAt(_pos) == '(') {
+            throw syntax(_pos, "expected a rotor name");
+        }
+        String name = _text.substring(start, skipToken());
+        int kindAt = skipWhitespace();
+        if (kindAt >= _text.length()) {
+            throw syntax(kindAt, "rotor %s has no kind", name);
+        }
+        char kind = _text.charAt(kindAt);
+        String notches = _text.substring(kindAt + 1, skipToken());
+        _rotorNum += 1;
+        if (kind == 'M') {
+            for (int i = 0; i < notches.length(); i += 1) {
+                if (_validator.index(notches.charAt(i)) < 0) {
+                    throw syntax(kindAt + 1 + i, "notch '%c' not in alphabet",
+                                 notches.charAt(i));
+                }
+            }
+        } else if (kind != 'N' && kind != 'R') {
+            throw syntax(kindAt, "rotor kind must be M, N, or R");
+        } else if (!notches.isEmpty()) {
+            throw syntax(kindAt + 1, "only moving rotors have notches");
+        }
+
+        StringBuilder cycles = new StringBuilder();
+        while (skipWhitespace() < _text.length()
+               && _text.charAt(_pos) == '(') {
+            parseCycle(cycles);
+        }
+        RotorCatalog.Description desc =
+            new RotorCatalog.Description(name, kind, notches,
+                                         cycles.toString(), start);
+        RotorCatalog.Description previous = _catalog.add(desc);
+        if (previous != null) {
+            throw syntax(start, "duplicate rotor name %s (also at line %d)",
+                         name, lineOf(previous.offset));
+        }
+    }
+
+    /** Parse the cycle that starts at _pos, appending it to CYCLES. */
+    private void parseCycle(StringBuilder cycles) {
+        int start = _pos;
+        cycles.append('(');
+        _pos += 1;
+        while (true) {
+            if (_pos >= _text.length()) {
+                throw syntax(start, "unterminated cycle");
+            }
+            char c = _text.charAt(_pos);
+            if (c == ')') {
+                break;
+            } else if (c == '(' || Character.isWhitespace(c)) {
+                throw syntax(start, "unterminated cycle");
+            }
+            int k = _validator.index(c);
+            if (k < 0) {
+                throw syntax(_pos, "'%c' not in alphabet", c);
+            } else if (_used[k] == _rotorNum) {
+                throw syntax(_pos, "'%c' appears twice in a rotor's cycles",
+                             c);
+            }
+            _used[k] = _rotorNum;
+            cycles.append(c);
+            _pos += 1;
+        }
+        if (_pos == start + 1) {
+            throw syntax(start, "empty cycle");
+        }
+        cycles.append(')');
+        _pos += 1;
+    }
+
+    /** Move _pos past any whitespace, and return it. */
+    private int skipWhitespace() {
+        while (_pos < _text.length()
+               && Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        return _pos;
+    }
+
+    /** Move _pos past the token (up to whitespace or an opening
+     *  parenthesis) that starts there, and return it. */
+    private int skipToken() {
+        while (_pos < _text.length()
+               && !Character.isWhitespace(_text.charAt(_pos))
+               && _text.charAt(_pos) != '(') {
+            _pos += 1;
+        }
+        return _pos;
+    }
+
+    /** Return the number of the line containing position POS of the
+     *  text. */
+    private int lineOf(int pos) {
+        int line = 1;
+        for (int i = 0; i < pos; i += 1) {
+            if (_text.charAt(i) == '\n') {
+                line += 1;
+            }
+        }
+        return line;
+    }
+
+    /** Return an exception reporting an error, described by FORMAT and
+     *  ARGS as for String.format, at position POS of the text. */
+    private EnigmaException syntax(int pos, String format, Object... args) {
+        int lineStart = _text.lastIndexOf('\n', pos - 1) + 1;
+        return error("%s at line %d, column %d",
+                     String.format(format, args), lineOf(pos),
+                     pos - lineStart + 1);
+    }
+
+    /** The configuration text. */
+    private final String _text;
+
+    /** Position of the next character of _text to parse. */
+    private int _pos;
+
+    /** The alphabet. */
+    private Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private int _numRotors;
+
+    /** Number of pawls. */
+    private int _numPawls;
+
+    /** Maps characters to alphabet indices. */
+    private final LineValidator _validator;
+
+    /** The rotors described. */
+    private final RotorCatalog _catalog;
+
+    /** Number of the rotor being parsed, counting from 1. */
+    private int _rotorNum;
+
+    /** For each alphabet index, the number of the last rotor whose cycles
+     *  contained that character. */
+    private final int[] _used;
+
+}
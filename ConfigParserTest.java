@@ -0,0 +1,109 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConfigParser class.
+ *  @author Frederick Fan
+ */
+public class ConfigParserTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The start of a configuration with a 5-slot, 3-pawl machine. */
+    static final String HEADER = "A-Z\n 5 3\n";
+
+    /** Check that parsing TEXT fails with the error message EXPECTED. */
+    private void checkError(String text, String expected) {
+        try {
+            new ConfigParser(text);
+            fail(msg("checkError", "no error for %s", text));
+        } catch (EnigmaException excp) {
+            assertEquals(msg("checkError", "wrong message for %s", text),
+                         expected, excp.getMessage());
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkDefault() {
+        ConfigParser config = SessionStoreTest.config();
+        assertEquals(26, config.alphabet().size());
+        assertEquals(5, config.numRotors());
+        assertEquals(3, config.numPawls());
+        assertEquals(12, config.catalog().size());
+        assertEquals('M', config.catalog().kind("iii"));
+        assertEquals('N', config.catalog().kind("Beta"));
+        assertEquals('R', config.catalog().kind("B"));
+        assertEquals("V", config.catalog().get("III").notches());
+    }
+
+    @Test
+    public void checkContinuation() {
+        ConfigParser config =
+            new ConfigParser(HEADER + " I MQ (AELTPHQXRU)\n   (BKNW)(CMOY)"
+                             + "\n\t(DFG) (IV)\n\n     (JZ) (S)\n"
+                             + " B R (AE)\n (BN)\n");
+        assertEquals(2, config.catalog().size());
+        Rotor rotor = config.catalog().get("I");
+        Permutation expected = new Permutation(NAVALA.get("I"), UPPER);
+        for (int p = 0; p < 26; p += 1) {
+            assertEquals(msg("checkContinuation", "rotor I at %d", p),
+                         expected.permute(p), rotor.convertForward(p));
+        }
+        assertEquals(UPPER.toInt('B'),
+                     config.catalog().get("B").convertForward(
+                         UPPER.toInt('N')));
+    }
+
+    @Test
+    public void checkDuplicateNames() {
+        checkError(HEADER + " I MQ (AB)\n II N (CD)\n i N (EF)\n",
+                   "duplicate rotor name i (also at line 3) at line 5, "
+                   + "column 2");
+        checkError(HEADER + " I MQ (AB)\n   (CD)\n\n I N (EF)\n",
+                   "duplicate rotor name I (also at line 3) at line 6, "
+                   + "column 2");
+    }
+
+    @Test
+    public void checkPositions() {
+        checkError("", "configuration file is empty at line 1, column 1");
+        checkError("A-Z*\n 5 3\n", "'*' cannot be in the alphabet at line 1, "
+                   + "column 4");
+        checkError("ABCA\n 5 3\n", "'A' appears twice in the alphabet at "
+                   + "line 1, column 4");
+        checkError("Z-A\n 5 3\n", "empty range of characters at line 1, "
+                   + "column 1");
+        checkError("A-Z\n 5 x\n", "expected the number of pawls at line 2, "
+                   + "column 4");
+        checkError("A-Z\n 3 3\n", "too many pawls at line 2, column 4");
+        checkError(HEADER + " I MQ (AB) (CA)\n",
+                   "'A' appears twice in a rotor's cycles at line 3, "
+                   + "column 14");
+        checkError(HEADER + " I M1 (AB)\n",
+                   "notch '1' not in alphabet at line 3, column 5");
+        checkError(HEADER + " I MQ (AB)\n  (CD)\n  (E\nF)\n",
+                   "unterminated cycle at line 5, column 3");
+        checkError(HEADER + " I MQ (AB)\n  (C5)\n",
+                   "'5' not in alphabet at line 4, column 5");
+        checkError(HEADER + " I MQ (AB)\n II X (CD)\n",
+                   "rotor kind must be M, N, or R at line 4, column 5");
+        checkError(HEADER + " I MQ (AB)\n II NQ (CD)\n",
+                   "only moving rotors have notches at line 4, column 6");
+        checkError(HEADER + " I MQ () (AB)\n", "empty cycle at line 3, "
+                   + "column 7");
+        checkError(HEADER + " (AB)\n",
+                   "expected a rotor name at line 3, column 2");
+    }
+
+}
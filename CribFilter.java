@@ -0,0 +1,204 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static enigma.EnigmaException.*;
+
+/** Finds the places in a ciphertext where a known piece of plaintext (a
+ *  crib) might lie.  Since a machine with a reflector never converts a
+ *  character to itself, a crib cannot lie anywhere that one of its
+ *  characters would line up with the same ciphertext character.
+ *
+ *  Rather than comparing characters one offset at a time, the filter
+ *  keeps, for each character of the alphabet, a bitmap of where it occurs
+ *  in the ciphertext.  Shifting the bitmap of the character at position I
+ *  of a crib right by I gives the set of offsets ruled out by that
+ *  character, so one word operation rules on 64 offsets at once.  Cribs,
+ *  and stretches of long ciphertexts, are examined in parallel.
+ *  @author Frederick Fan
+ */
+class CribFilter {
+
+    /** A possible placement of a crib: CRIB may lie at OFFSET. */
+    static final class Placement {
+
+        /** A placement of CRIB at OFFSET. */
+        Placement(String crib, int offset) {
+            this.crib = crib;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() {
+            return offset + " " + crib;
+        }
+
+        /** The crib. */
+        final String crib;
+
+        /** The position in the ciphertext of the crib's first character. */
+        final int offset;
+    }
+
+    /** A filter for CIPHERTEXT, all of whose characters must be in
+     *  ALPHABET. */
+    CribFilter(Alphabet alphabet, String ciphertext) {
+        _validator = new LineValidator(alphabet, false);
+        _length = ciphertext.length();
+        _words = (_length + WORD_SIZE - 1) / WORD_SIZE;
+        _occurs = new long[alphabet.size()][_words + 1];
+        for (int j = 0; j < _length; j += 1) {
+            _occurs[index(ciphertext.charAt(j))][j >>> WORD_SHIFT] |= 1L << j;
+        }
+    }
+
+    /** Return the alphabet index of C, which must be in the alphabet. */
+    private int index(char c) {
+        int k = _validator.index(c);
+        if (k < 0) {
+            throw error("character '%c' not in alphabet", c);
+        }
+        return k;
+    }
+
+    /** Return the offsets at which CRIB might lie, in increasing order. */
+    IntStream offsets(String crib) {
+        return placements(List.of(crib)).mapToInt(p -> p.offset);
+    }
+
+    /** Return the possible placements of each of CRIBS, ordered by crib
+     *  and then by offset.  The work, split into tasks each covering one
+     *  crib over one stretch of offsets, is spread over all available
+     *  processors. */
+    Stream<Placement> placements(List<String> cribs) {
+        int n = cribs.size();
+        int[][] letters = new int[n][];
+        int[] lasts = new int[n];
+        int[] firstTask = new int[n + 1];
+        for (int c = 0; c < n; c += 1) {
+            String crib = cribs.get(c);
+            letters[c] = new int[crib.length()];
+            for (int i = 0; i < crib.length(); i += 1) {
+                letters[c][i] = index(crib.charAt(i));
+            }
+            lasts[c] = _length - crib.length();
+            int chunks = lasts[c] < 0 ? 0
+                : (lasts[c] / WORD_SIZE + CHUNK_WORDS) / CHUNK_WORDS;
+            firstTask[c + 1] = firstTask[c] + chunks;
+        }
+        return IntStream.range(0, firstTask[n]).parallel().boxed()
+            .flatMap(task -> {
+                    int c = 0;
+                    while (firstTask[c + 1] <= task) {
+                        c += 1;
+                    }
+                    String crib = cribs.get(c);
+                    int[] offsets =
+                        survivors(letters[c],
+                                  (task - firstTask[c]) * CHUNK_WORDS,
+                                  lasts[c]);
+                    return Arrays.stream(offsets)
+                        .mapToObj(offset -> new Placement(crib, offset));
+                });
+    }
+
+    /** Return the offsets no greater than LAST, in the CHUNK_WORDS words
+     *  of offsets starting at word FIRSTWORD, at which the crib whose
+     *  alphabet indices are LETTERS might lie. */
+    private int[] survivors(int[] letters, int firstWord, int last) {
+        int words = Math.min(CHUNK_WORDS, last / WORD_SIZE + 1 - firstWord);
+        long[] ruledOut = new long[words];
+        for (int i = 0; i < letters.length; i += 1) {
+            long[] occurs = _occurs[letters[i]];
+            int shift = i & (WORD_SIZE - 1);
+            int from = firstWord + (i >>> WORD_SHIFT);
+            if (shift == 0) {
+                for (int w = 0; w < words; w += 1) {
+                    ruledOut[w] |= occurs[from + w];
+                }
+            } else {
+                for (int w = 0; w < words; w += 1) {
+                    ruledOut[w] |= (occurs[from + w] >>> shift)
+                        | (occurs[from + w + 1] << (WORD_SIZE - shift));
+                }
+            }
+        }
+        int count = 0;
+        int[] result = new int[words * WORD_SIZE];
+        for (int w = 0; w < words; w += 1) {
+            long open = ~ruledOut[w];
+            while (open != 0) {
+                int offset = (firstWord + w) * WORD_SIZE
+                    + Long.numberOfTrailingZeros(open);
+                if (offset > last) {
+                    break;
+                }
+                result[count] = offset;
+                count += 1;
+                open &= open - 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Print the possible placements of the cribs ARGS[2], ... in the
+     *  ciphertext in the file named ARGS[1], whose alphabet is that of the
+     *  configuration file named ARGS[0].  Whitespace in the ciphertext is
+     *  ignored, and it and the cribs are converted to upper case. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 3) {
+                throw error("Usage: java enigma.CribFilter CONFIG "
+                            + "CIPHERTEXT CRIB...");
+            }
+            Alphabet alphabet = Main.readConfig(args[0]).alphabet();
+            String text;
+            try {
+                text = new String(Files.readAllBytes(Paths.get(args[1])));
+            } catch (IOException excp) {
+                throw error("could not read %s", args[1]);
+            }
+            CribFilter filter =
+                new CribFilter(alphabet,
+                               text.replaceAll("\\s+", "").toUpperCase());
+            List<String> cribs =
+                Arrays.stream(args, 2, args.length)
+                .map(String::toUpperCase).collect(Collectors.toList());
+            filter.placements(cribs).forEachOrdered(System.out::println);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Number of bits in a word of a bitmap. */
+    private static final int WORD_SIZE = 64;
+
+    /** Log base 2 of WORD_SIZE. */
+    private static final int WORD_SHIFT = 6;
+
+    /** Number of words of offsets examined by one parallel task. */
+    private static final int CHUNK_WORDS = 1024;
+
+    /** Maps characters to alphabet indices. */
+    private final LineValidator _validator;
+
+    /** Length of the ciphertext. */
+    private final int _length;
+
+    /** Number of words in a bitmap of ciphertext positions. */
+    private final int _words;
+
+    /** For each alphabet index, a bitmap of where that character occurs
+     *  in the ciphertext, with one spare word of zeros at the end. */
+    private final long[][] _occurs;
+
+}
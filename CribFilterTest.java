@@ -0,0 +1,75 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CribFilter class.
+ *  @author Frederick Fan
+ */
+public class CribFilterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the offsets at which CRIB may lie in CIPHER, found by
+     *  comparing characters one at a time. */
+    private int[] slowOffsets(String cipher, String crib) {
+        return IntStream
+            .rangeClosed(0, cipher.length() - crib.length())
+            .filter(o -> {
+                    for (int i = 0; i < crib.length(); i += 1) {
+                        if (crib.charAt(i) == cipher.charAt(o + i)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                })
+            .toArray();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkShortText() {
+        CribFilter filter = new CribFilter(UPPER, "ABCAB");
+        assertArrayEquals(new int[] { 1, 2 },
+                          filter.offsets("AB").toArray());
+        assertArrayEquals(new int[0], filter.offsets("ABCABC").toArray());
+    }
+
+    @Test
+    public void checkLongText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i += 1) {
+            text.append(UPPER_STRING.charAt((i * 7 + i / 13) % 26));
+        }
+        String cipher = text.toString();
+        CribFilter filter = new CribFilter(UPPER, cipher);
+        for (String crib : List.of("WETTERVORHERSAGE", "KEINEBESONDEREN",
+                                   "X")) {
+            assertArrayEquals(crib, slowOffsets(cipher, crib),
+                              filter.offsets(crib).toArray());
+        }
+    }
+
+    @Test
+    public void checkSeveralCribs() {
+        CribFilter filter = new CribFilter(UPPER, "ABCAB");
+        List<String> found = filter.placements(List.of("AB", "C"))
+            .map(Object::toString).collect(Collectors.toList());
+        assertEquals(List.of("1 AB", "2 AB", "0 C", "1 C", "3 C", "4 C"),
+                     found);
+    }
+
+}
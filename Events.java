@@ -0,0 +1,139 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** Java Flight Recorder events marking the phases of a run of Main, for
+ *  finding which messages and settings lines make a job slow.  They are
+ *  recorded whenever a flight recording is running, whether it was
+ *  started with the JVM (as with -XX:StartFlightRecording=filename=run.jfr)
+ *  or later (as with jcmd PID JFR.start), and then only when they take
+ *  longer than their thresholds, which may be changed in the recording's
+ *  settings.  JfrAnalyzer summarizes a recording.
+ *
+ *  Each event is used in the pattern
+ *      E event = Events.recording() ? new E() : null;
+ *      if (event != null) {
+ *          event.begin();
+ *      }
+ *      ... the work ...
+ *      if (event != null && event.shouldCommit()) {
+ *          ... set the fields ...
+ *          event.commit();
+ *      }
+ *  Loading the first event class starts up much of the flight recorder,
+ *  which takes a good part of a second, so until a recording is started
+ *  no event class is loaded.  Once one is, begin() and shouldCommit()
+ *  decide which events are recorded.
+ *  @author Frederick Fan
+ */
+final class Events {
+
+    /** Return true iff the flight recorder has been started, by a
+     *  recording begun with the JVM or since.  This is checked afresh on
+     *  each call, which costs only the reading of a field. */
+    static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** Reading and parsing a configuration file. */
+    @Name("enigma.Config")
+    @Label("Configuration")
+    @Category("Enigma")
+    @Description("Parsing a machine configuration")
+    @StackTrace(false)
+    @Threshold("0 ms")
+    static final class Config extends Event {
+
+        /** Size of the configuration text. */
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        /** Number of rotor slots. */
+        @Label("Rotor Slots")
+        int rotors;
+
+        /** Number of rotors described. */
+        @Label("Rotors Described")
+        int described;
+    }
+
+    /** Setting up a machine from a settings line. */
+    @Name("enigma.SetUp")
+    @Label("Set Up")
+    @Category("Enigma")
+    @Description("Setting up a machine from a settings line")
+    @StackTrace(false)
+    @Threshold("100 us")
+    static final class SetUp extends Event {
+
+        /** Hash code of the settings line. */
+        @Label("Settings Hash")
+        int settingsHash;
+
+        /** Number of rotor slots. */
+        @Label("Rotor Slots")
+        int rotors;
+    }
+
+    /** Converting and writing one line of a message in Main. */
+    @Name("enigma.Message")
+    @Label("Message Line")
+    @Category("Enigma")
+    @Description("Converting and writing one line of a message")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class Message extends Event {
+
+        /** Number of the line in its input. */
+        @Label("Line")
+        int line;
+
+        /** Number of letters converted. */
+        @Label("Letters")
+        int letters;
+
+        /** Hash code of the settings line in effect. */
+        @Label("Settings Hash")
+        int settingsHash;
+
+        /** Number of rotor slots. */
+        @Label("Rotor Slots")
+        int rotors;
+    }
+
+    /** One bulk conversion by a Machine. */
+    @Name("enigma.Convert")
+    @Label("Conversion")
+    @Category("Enigma")
+    @Description("Converting a run of letters with a machine")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class Convert extends Event {
+
+        /** Number of letters converted. */
+        @Label("Letters")
+        int letters;
+
+        /** Number of rotor slots. */
+        @Label("Rotor Slots")
+        int rotors;
+
+        /** Name of the engine converting. */
+        @Label("Engine")
+        String engine;
+    }
+
+}
@@ -0,0 +1,165 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/** A publisher of the contents of a file, as chunks of characters.  Each
+ *  subscriber gets its own pass over the file, read on an Executor only as
+ *  fast as the subscriber requests chunks.  As with MachineProcessor, a
+ *  chunk is valid only until the subscriber's onNext returns; the same
+ *  buffer is then refilled for the next chunk.
+ *  @author Frederick Fan
+ */
+class FilePublisher implements Flow.Publisher<CharBuffer> {
+
+    /** A publisher of the contents of FILE, decoded with CHARSET, in chunks
+     *  of at most CHUNKSIZE characters, read on EXECUTOR. */
+    FilePublisher(File file, Charset charset, int chunkSize,
+                  Executor executor) {
+        _file = file;
+        _charset = charset;
+        _chunkSize = chunkSize;
+        _executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        Reading reading = new Reading(subscriber);
+        subscriber.onSubscribe(reading);
+    }
+
+    /** One subscriber's pass over my file. */
+    private class Reading implements Flow.Subscription, Runnable {
+
+        /** A pass over my file for SUBSCRIBER. */
+        Reading(Flow.Subscriber<? super CharBuffer> subscriber) {
+            _subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean start;
+            synchronized (this) {
+                if (n <= 0) {
+                    _failure = new IllegalArgumentException(
+                        "non-positive subscription request");
+                }
+                _demand += Math.max(n, 0);
+                if (_demand < 0) {
+                    _demand = Long.MAX_VALUE;
+                }
+                start = !_running && !_done;
+                _running = true;
+            }
+            if (start) {
+                _executor.execute(this);
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            _done = true;
+        }
+
+        /** Send chunks while there is demand, stopping at the end of the
+         *  file, on failure, or on cancellation. */
+        @Override
+        public void run() {
+            while (true) {
+                Throwable failure;
+                synchronized (this) {
+                    failure = _failure;
+                    if (_done || (_demand == 0 && failure == null)) {
+                        _running = false;
+                        if (_done) {
+                            close();
+                        }
+                        return;
+                    }
+                    _demand -= 1;
+                }
+                int n = 0;
+                if (failure == null) {
+                    try {
+                        if (_reader == null) {
+                            _reader = new InputStreamReader(
+                                new FileInputStream(_file), _charset);
+                            _buffer = CharBuffer.allocate(_chunkSize);
+                        }
+                        _buffer.clear();
+                        n = _reader.read(_buffer);
+                        _buffer.flip();
+                    } catch (IOException excp) {
+                        failure = excp;
+                    }
+                }
+                if (failure != null) {
+                    cancel();
+                    close();
+                    _subscriber.onError(failure);
+                    return;
+                } else if (n < 0) {
+                    cancel();
+                    close();
+                    _subscriber.onComplete();
+                    return;
+                }
+                _subscriber.onNext(_buffer);
+            }
+        }
+
+        /** Close my file, if open. */
+        private void close() {
+            try {
+                if (_reader != null) {
+                    _reader.close();
+                    _reader = null;
+                }
+            } catch (IOException excp) {
+                /* Ignore: nothing more will be read. */
+            }
+        }
+
+        /** The recipient of my chunks. */
+        private final Flow.Subscriber<? super CharBuffer> _subscriber;
+
+        /** Source of my chunks, once opened. */
+        private Reader _reader;
+
+        /** The buffer in which each chunk is delivered. */
+        private CharBuffer _buffer;
+
+        /** Number of chunks requested and not yet sent. */
+        private long _demand;
+
+        /** True while a task is sending chunks. */
+        private boolean _running;
+
+        /** True once the pass is over. */
+        private boolean _done;
+
+        /** An error to report to the subscriber, if any. */
+        private Throwable _failure;
+
+    }
+
+    /** The file I publish. */
+    private final File _file;
+
+    /** Encoding of _file. */
+    private final Charset _charset;
+
+    /** Largest number of characters in a chunk. */
+    private final int _chunkSize;
+
+    /** Executor on which files are read. */
+    private final Executor _executor;
+
+}
@@ -0,0 +1,112 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the FilePublisher class.
+ *  @author Frederick Fan
+ */
+public class FilePublisherTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Text of 99 characters, making ten chunks of at most 10. */
+    static final String TEXT =
+        "FROM MY FINGERS TAKE MY SHOULDER AND FROM HIS SHOULDER "
+        + "HIAWATHA TOOK THE CAMERA OF ROSEWOOD MADE OF";
+
+    /** Return a new temporary file containing CONTENTS. */
+    private File file(String contents) throws IOException {
+        File result = File.createTempFile("publisher", ".txt");
+        result.deleteOnExit();
+        Files.write(result.toPath(),
+                    contents.getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    /** Return a publisher of FILE in chunks of 10 characters that reads
+     *  on the thread that requests them. */
+    private FilePublisher publisher(File file) {
+        return new FilePublisher(file, StandardCharsets.UTF_8, 10,
+                                 Runnable::run);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkDemand() throws IOException {
+        MachineProcessorTest.Collector collector =
+            new MachineProcessorTest.Collector(3);
+        publisher(file(TEXT)).subscribe(collector);
+        assertEquals(3, collector.chunks());
+        assertEquals(TEXT.substring(0, 30), collector.text());
+        assertFalse(collector.completed());
+        collector.request(100);
+        assertEquals(10, collector.chunks());
+        assertEquals(TEXT, collector.text());
+        assertTrue(collector.completed());
+        assertFalse(collector.overrun());
+    }
+
+    @Test
+    public void checkCancel() throws IOException {
+        MachineProcessorTest.Collector collector =
+            new MachineProcessorTest.Collector(2);
+        publisher(file(TEXT)).subscribe(collector);
+        collector.cancel();
+        collector.request(5);
+        assertEquals(2, collector.chunks());
+        assertFalse(collector.completed());
+        assertNull(collector.error());
+    }
+
+    @Test
+    public void checkMissingFile() {
+        MachineProcessorTest.Collector collector =
+            new MachineProcessorTest.Collector(1);
+        publisher(new File("no/such/file")).subscribe(collector);
+        assertTrue(collector.error() instanceof IOException);
+        assertEquals(0, collector.chunks());
+    }
+
+    @Test
+    public void checkPipeline() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            FilePublisher publisher =
+                new FilePublisher(file(TEXT), StandardCharsets.UTF_8, 7,
+                                  executor);
+            MachineProcessor processor =
+                new MachineProcessor(MachineTest.naval(), 16, 2, false);
+            MachineProcessorTest.Collector collector =
+                new MachineProcessorTest.Collector(Long.MAX_VALUE);
+            processor.subscribe(collector);
+            publisher.subscribe(processor);
+            collector.await();
+            assertNull(collector.error());
+            Machine machine = MachineTest.naval();
+            StringBuilder expected = new StringBuilder();
+            for (String word : TEXT.split(" ")) {
+                expected.append(expected.length() == 0 ? "" : " ")
+                    .append(machine.convert(word));
+            }
+            assertEquals(expected.toString(), collector.text());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
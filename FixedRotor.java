@@ -13,6 +13,16 @@ class FixedRotor extends Rotor {
         super(name, perm);
     }
 
+    /** A rotor like OTHER, sharing its tables. */
+    FixedRotor(FixedRotor other) {
+        super(other);
+    }
+
+    @Override
+    Rotor copy() {
+        return new FixedRotor(this);
+    }
+
 
 
 }
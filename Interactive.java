@@ -0,0 +1,334 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+
+import static enigma.EnigmaException.*;
+
+/** Converts messages typed at a console, writing out the conversion of
+ *  each line as soon as the line is complete, or, in per-key mode, of
+ *  each character as soon as it is typed (which needs a pipe or a
+ *  terminal not in line mode).  Input is in the form accepted by Main,
+ *  and so is the output, except that an error is reported on the
+ *  standard error and the rest of the offending line ignored, rather than
+ *  ending the session.  Unlike Main, no line is held back waiting for the
+ *  next, and a last line need not be followed by a line terminator.
+ *
+ *  So that the first messages typed are not slowed by class loading and
+ *  JIT compilation, prewarm runs a few hundred thousand characters through
+ *  the same code before the session starts.  For each line (or key), the
+ *  time from when it could first be handled (its arrival, or the flushing
+ *  of the output of the one before it in the same read) to the flushing
+ *  of its output is recorded in a LatencyHistogram.
+ *  @author Frederick Fan
+ */
+class Interactive {
+
+    /** A console converting input with MACHINE, whose configuration has
+     *  been read but which need not be set up, and writing conversions to
+     *  OUTPUT.  Punctuation passes through messages unconverted iff
+     *  PASSTHROUGH, and conversions are written for each character rather
+     *  than each line iff PERKEY. */
+    Interactive(Machine machine, boolean passthrough, boolean perKey,
+                PrintStream output) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _validator = new LineValidator(_alphabet, passthrough);
+        _perKey = perKey;
+        _output = output;
+    }
+
+    /** Run a generated session through my machine, discarding its output,
+     *  so that the code converting messages is compiled before the real
+     *  session begins.  Does nothing if the configuration does not have
+     *  rotors enough to make up a machine. */
+    void prewarm() {
+        String settings = warmupSettings();
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < _alphabet.size(); i += 1) {
+            char c = _alphabet.toChar(i);
+            if (Character.toUpperCase(c) == c) {
+                letters.append(c);
+            }
+        }
+        if (settings == null || letters.length() == 0) {
+            return;
+        }
+        accept(settings);
+        accept('\n');
+        for (int k = 0; k < WARMUP_CHARS; k += 1) {
+            int i = (int) ((long) k * PRIME % letters.length());
+            accept(k % WARMUP_LINE == WARMUP_LINE - 1 ? '\n'
+                   : letters.charAt(i));
+        }
+        accept('\n');
+        _pending.setLength(0);
+        _ready = false;
+        _lineNumber = 0;
+    }
+
+    /** Return a settings line using the first suitable rotors of my
+     *  machine's configuration, or null if there are not enough.  Only
+     *  the rotors it names are built. */
+    private String warmupSettings() {
+        RotorCatalog catalog = _machine.catalog();
+        int numFixed = _machine.numRotors() - _machine.numPawls() - 1;
+        StringBuilder reflector = new StringBuilder();
+        StringBuilder fixed = new StringBuilder();
+        StringBuilder moving = new StringBuilder();
+        int fixedCount = 0, movingCount = 0;
+        for (String name : catalog.names()) {
+            char kind = catalog.kind(name);
+            if (kind == 'R' && reflector.length() == 0) {
+                reflector.append(name);
+            } else if (kind == 'M' && movingCount < _machine.numPawls()) {
+                moving.append(' ').append(name);
+                movingCount += 1;
+            } else if (kind == 'N' && fixedCount < numFixed) {
+                fixed.append(' ').append(name);
+                fixedCount += 1;
+            }
+        }
+        if (reflector.length() == 0 || fixedCount < numFixed
+            || movingCount < _machine.numPawls()) {
+            return null;
+        }
+        StringBuilder posns = new StringBuilder(" ");
+        for (int i = 1; i < _machine.numRotors(); i += 1) {
+            posns.append(_alphabet.toChar(0));
+        }
+        return "* " + reflector + fixed + moving + posns;
+    }
+
+    /** Convert the input read from INPUT until it ends. */
+    void run(Reader input) {
+        char[] buffer = new char[BUFFER_SIZE];
+        while (true) {
+            int len;
+            try {
+                len = input.read(buffer);
+            } catch (IOException excp) {
+                throw error("could not read input: %s", excp.getMessage());
+            }
+            long start = System.nanoTime();
+            if (len < 0) {
+                if (endInput() > 0) {
+                    flush();
+                    _latencies.record(System.nanoTime() - start);
+                }
+                flush();
+                return;
+            }
+            for (int i = 0; i < len; i += 1) {
+                if (accept(buffer[i]) > 0) {
+                    flush();
+                    long now = System.nanoTime();
+                    _latencies.record(now - start);
+                    start = now;
+                }
+            }
+            flush();
+        }
+    }
+
+    /** Write and flush any pending output. */
+    private void flush() {
+        if (_pending.length() > 0) {
+            _output.print(_pending);
+            _pending.setLength(0);
+        }
+        _output.flush();
+    }
+
+    /** Return the latencies recorded so far: one per line, or per key in
+     *  per-key mode. */
+    LatencyHistogram latencies() {
+        return _latencies;
+    }
+
+    /** Accept each character of TEXT, as for accept(char). */
+    private void accept(String text) {
+        for (int i = 0; i < text.length(); i += 1) {
+            accept(text.charAt(i));
+        }
+    }
+
+    /** Accept the input character C, appending any output it produces to
+     *  _pending.  Return the number of lines or keys to be counted in my
+     *  latencies (0 or 1). */
+    private int accept(char c) {
+        if (c == '\r') {
+            return 0;
+        }
+        if (_perKey && !_wholeLine && !(_lineStart && c == '*')) {
+            if (c != '\n' && Character.isWhitespace(c)) {
+                return 0;
+            }
+            _lineStart = c == '\n';
+            return acceptKey(c);
+        }
+        _wholeLine = true;
+        _lineStart = c == '\n';
+        if (c != '\n') {
+            _line.append(c);
+            return 0;
+        }
+        _lineNumber += 1;
+        String line = _line.toString().toUpperCase();
+        _line.setLength(0);
+        _wholeLine = false;
+        try {
+            convertLine(line);
+        } catch (EnigmaException excp) {
+            report(excp);
+        }
+        return 1;
+    }
+
+    /** Convert the characters of the line LINE, or set up my machine if
+     *  it is a settings line, appending the output to _pending. */
+    private void convertLine(String line) {
+        if (line.contains("*")) {
+            _ready = false;
+            Main.setUp(_machine, line);
+            _ready = true;
+        } else if (!_ready && !line.isEmpty()) {
+            throw error("Wrong format of message");
+        } else if (line.isEmpty()) {
+            _pending.append(System.lineSeparator());
+        } else {
+            int len = _validator.validate(line, _lineNumber);
+            _machine.convert(_validator.letters(), len);
+            Main.formatMessageLine(_validator.assemble(), _validator,
+                                   _pending);
+        }
+    }
+
+    /** Accept C, a character of a message in per-key mode.  Return 1 if it
+     *  is to be counted in my latencies, and otherwise 0. */
+    private int acceptKey(char c) {
+        if (c == '\n') {
+            _lineNumber += 1;
+            endLine();
+            return 1;
+        }
+        _column += 1;
+        c = Character.toUpperCase(c);
+        try {
+            switch (_validator.classOf(c)) {
+            case LineValidator.IN_ALPHABET:
+                if (!_ready) {
+                    throw error("Wrong format of message");
+                }
+                if (_group == 5) {
+                    _pending.append(' ');
+                    _group = 0;
+                }
+                _group += 1;
+                _pending.append(_alphabet.toChar(
+                                    _machine.convert(_validator.index(c))));
+                break;
+            case LineValidator.PASSTHROUGH:
+                _pending.append(c);
+                break;
+            default:
+                throw error("illegal character '%c' at line %d, column %d",
+                            c, _lineNumber + 1, _column);
+            }
+        } catch (EnigmaException excp) {
+            report(excp);
+        }
+        return 1;
+    }
+
+    /** Finish a message line in per-key mode, closing its last group of
+     *  letters as Main.formatMessageLine does. */
+    private void endLine() {
+        if (_group == 5) {
+            _pending.append(' ');
+        }
+        _pending.append(System.lineSeparator());
+        _column = 0;
+        _group = 0;
+    }
+
+    /** Finish the last line of input, if it has no line terminator.
+     *  Return the number of lines to be counted in my latencies (0 or
+     *  1). */
+    private int endInput() {
+        if (_wholeLine || _line.length() > 0) {
+            return accept('\n');
+        } else if (_perKey && _column > 0) {
+            endLine();
+        }
+        return 0;
+    }
+
+    /** Report the error EXCP on the standard error. */
+    private void report(EnigmaException excp) {
+        _output.print(_pending);
+        _pending.setLength(0);
+        _output.flush();
+        System.err.printf("Error: %s%n", excp.getMessage());
+    }
+
+    /** Size of the buffer into which input is read. */
+    private static final int BUFFER_SIZE = 1 << 12;
+
+    /** Number of characters converted by prewarm. */
+    private static final int WARMUP_CHARS = 1 << 19;
+
+    /** Length of the lines converted by prewarm, counting the line
+     *  terminator. */
+    private static final int WARMUP_LINE = 64;
+
+    /** Step between the letters chosen for the text converted by
+     *  prewarm. */
+    private static final int PRIME = 7919;
+
+    /** The machine converting messages. */
+    private final Machine _machine;
+
+    /** The alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Checks and classifies the characters of messages. */
+    private final LineValidator _validator;
+
+    /** True iff each key is converted as it is typed. */
+    private final boolean _perKey;
+
+    /** Destination of conversions. */
+    private final PrintStream _output;
+
+    /** Output not yet written to _output. */
+    private final StringBuilder _pending = new StringBuilder();
+
+    /** The line being read, when lines are converted whole. */
+    private final StringBuilder _line = new StringBuilder();
+
+    /** True iff _machine has been set up by a settings line. */
+    private boolean _ready;
+
+    /** True iff the line being read is to be converted whole: any line
+     *  but a message line in per-key mode. */
+    private boolean _wholeLine;
+
+    /** True iff the next character starts a line. */
+    private boolean _lineStart = true;
+
+    /** Number of lines completed. */
+    private int _lineNumber;
+
+    /** Number of characters of the current line read, in per-key mode. */
+    private int _column;
+
+    /** Number of letters in the last group of output on the current
+     *  line, in per-key mode. */
+    private int _group;
+
+    /** Latencies of lines or keys. */
+    private final LatencyHistogram _latencies = new LatencyHistogram();
+
+}
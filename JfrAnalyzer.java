@@ -0,0 +1,155 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static enigma.EnigmaException.*;
+
+/** Summarizes the Enigma events (see Events) in a flight recording of a
+ *  run of Main: the slowest message lines, with their line numbers and
+ *  the settings they were converted under, and for each phase (reading
+ *  the configuration, setting up, converting messages, and the machine's
+ *  bulk conversions), the number of events recorded, their total time,
+ *  and the percentiles of their durations.  Only events slower than
+ *  their thresholds are recorded, so the counts and totals cover just
+ *  the slow events.
+ *  @author Frederick Fan
+ */
+class JfrAnalyzer {
+
+    /** Prefix of the names of Enigma events. */
+    static final String PREFIX = "enigma.";
+
+    /** Name of the event for one message line. */
+    static final String MESSAGE = "enigma.Message";
+
+    /** An analyzer reporting the TOP slowest messages. */
+    JfrAnalyzer(int top) {
+        _top = top;
+    }
+
+    /** Add EVENT to my summary, if it is an Enigma event. */
+    void add(RecordedEvent event) {
+        String name = event.getEventType().getName();
+        if (!name.startsWith(PREFIX)) {
+            return;
+        }
+        long nanos = event.getDuration().toNanos();
+        _phases.computeIfAbsent(name, n -> new LatencyHistogram())
+            .record(nanos);
+        _totals.merge(name, nanos, Long::sum);
+        if (name.equals(MESSAGE)) {
+            _messages.add(event);
+            if (_messages.size() > 2 * _top + SLACK) {
+                trim();
+            }
+        }
+    }
+
+    /** Reduce _messages to the _top slowest, slowest first. */
+    private void trim() {
+        _messages.sort(Comparator.comparing(
+                           (RecordedEvent e) -> e.getDuration()).reversed());
+        while (_messages.size() > _top) {
+            _messages.remove(_messages.size() - 1);
+        }
+    }
+
+    /** Add all the events in the recording in the file named NAME. */
+    void read(String name) {
+        try (RecordingFile file = new RecordingFile(Paths.get(name))) {
+            while (file.hasMoreEvents()) {
+                add(file.readEvent());
+            }
+        } catch (IOException excp) {
+            throw error("could not read recording %s: %s", name,
+                        excp.getMessage());
+        }
+    }
+
+    /** Print my summary on OUT. */
+    void report(PrintStream out) {
+        trim();
+        out.printf("Slowest messages:%n");
+        if (_messages.isEmpty()) {
+            out.printf("  (none recorded)%n");
+        } else {
+            out.printf("  %8s %8s %8s %10s %12s%n", "line", "letters",
+                       "rotors", "settings", "ms");
+        }
+        for (RecordedEvent event : _messages) {
+            out.printf("  %8d %8d %8d   %08x %12.3f%n",
+                       event.getInt("line"), event.getInt("letters"),
+                       event.getInt("rotors"), event.getInt("settingsHash"),
+                       event.getDuration().toNanos() / 1e6);
+        }
+        out.printf("Phases:%n");
+        if (_phases.isEmpty()) {
+            out.printf("  (none recorded)%n");
+        }
+        for (Map.Entry<String, LatencyHistogram> phase
+                 : _phases.entrySet()) {
+            String name = phase.getKey();
+            out.printf("  %s: total %.3f ms%n    %s%n", name,
+                       _totals.get(name) / 1e6,
+                       phase.getValue().summary("events"));
+        }
+    }
+
+    /** Print a summary of the recording named by the last of ARGS, as
+     *  described in the class comment.  An option --top=N sets the number
+     *  of slowest messages listed (by default, 10). */
+    public static void main(String... args) {
+        try {
+            int top = DEFAULT_TOP;
+            int k;
+            for (k = 0; k < args.length - 1; k += 1) {
+                if (args[k].startsWith("--top=")) {
+                    top = Main.intOption(args[k]);
+                } else {
+                    throw error("unknown option %s", args[k]);
+                }
+            }
+            if (k != args.length - 1) {
+                throw error("Usage: java enigma.JfrAnalyzer [--top=N] "
+                            + "RECORDING.jfr");
+            }
+            JfrAnalyzer analyzer = new JfrAnalyzer(top);
+            analyzer.read(args[k]);
+            analyzer.report(System.out);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Default number of slowest messages listed. */
+    private static final int DEFAULT_TOP = 10;
+
+    /** Number of extra messages held before trimming. */
+    private static final int SLACK = 1024;
+
+    /** Number of slowest messages listed. */
+    private final int _top;
+
+    /** The slowest message events seen, in no particular order. */
+    private final List<RecordedEvent> _messages = new ArrayList<>();
+
+    /** Durations of each kind of event, by name. */
+    private final TreeMap<String, LatencyHistogram> _phases =
+        new TreeMap<>();
+
+    /** Total duration in nanoseconds of each kind of event, by name. */
+    private final TreeMap<String, Long> _totals = new TreeMap<>();
+
+}
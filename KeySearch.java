@@ -0,0 +1,589 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+
+import static enigma.EnigmaException.*;
+
+/** A search, spread over several processes, for the keys (rotor order and
+ *  positions; see KeySpace) under which a ciphertext decrypts to
+ *  something that looks like language, as judged by its index of
+ *  coincidence.
+ *
+ *  A coordinator divides the key space into leases, each a range of
+ *  positions for one rotor order, and hands them out over TCP to workers
+ *  (see KeySearchWorker), which are ordinary JVMs that read the same
+ *  configuration and ciphertext.  Each worker sends back the best keys in
+ *  its lease.  A lease whose worker disconnects, or goes quiet for too
+ *  long, is handed to another worker.  The coordinator listens on the
+ *  loopback interface and starts its own workers, but can instead listen
+ *  on another address and serve workers on other hosts.
+ *
+ *  The protocol is line-oriented ASCII.  A worker sends
+ *      HELLO FINGERPRINT
+ *  where FINGERPRINT identifies its configuration and ciphertext.  The
+ *  coordinator answers
+ *      WELCOME TOP
+ *  (or REJECT), and then repeatedly sends
+ *      LEASE ID ORDER START COUNT
+ *  to which the worker answers with any number of
+ *      PROGRESS ID KEYS
+ *  lines, giving the number of keys of the lease searched so far, which
+ *  the coordinator counts in its progress reports; then up to TOP lines
+ *      RESULT ID SCORE ORDER POSITION
+ *  and finally
+ *      FINISHED ID.
+ *  When no work remains, the coordinator sends DONE.
+ *  @author Frederick Fan
+ */
+class KeySearch {
+
+    /** A key and its score. */
+    static final class Result {
+
+        /** The key with rotor order ORDER and positions numbered POSITION,
+         *  scoring SCORE. */
+        Result(double score, long order, long position) {
+            this.score = score;
+            this.order = order;
+            this.position = position;
+        }
+
+        /** The score. */
+        final double score;
+
+        /** The number of the rotor order. */
+        final long order;
+
+        /** The number of the positions. */
+        final long position;
+    }
+
+    /** Orders Results from worst to best; ties go to the later key. */
+    static final Comparator<Result> WORST_FIRST =
+        Comparator.<Result>comparingDouble(r -> r.score)
+        .thenComparing(r -> -r.order).thenComparing(r -> -r.position);
+
+    /** Add RESULT to BEST, the TOP best results so far, ordered worst
+     *  first. */
+    static void offer(PriorityQueue<Result> best, Result result, int top) {
+        if (best.size() < top) {
+            best.add(result);
+        } else if (WORST_FIRST.compare(result, best.peek()) > 0) {
+            best.poll();
+            best.add(result);
+        }
+    }
+
+    /** A range of keys handed to one worker at a time. */
+    private static final class Lease {
+
+        /** Lease number ID, covering COUNT positions of rotor order ORDER
+         *  starting at position START. */
+        Lease(long id, long order, long start, long count) {
+            this.id = id;
+            this.order = order;
+            this.start = start;
+            this.count = count;
+        }
+
+        /** The lease number. */
+        final long id;
+
+        /** The rotor order. */
+        final long order;
+
+        /** The first position. */
+        final long start;
+
+        /** The number of positions. */
+        final long count;
+    }
+
+    /** A coordinator for a search of KEYS, in leases of at most LEASESIZE
+     *  positions, collecting the TOP best keys, and giving up on a worker
+     *  that is silent for TIMEOUT seconds.  Workers must present
+     *  FINGERPRINT. */
+    KeySearch(KeySpace keys, long fingerprint, long leaseSize, int top,
+              int timeout) {
+        _keys = keys;
+        _fingerprint = fingerprint;
+        _leaseSize = leaseSize;
+        _top = top;
+        _timeout = timeout;
+        try {
+            _totalKeys = Math.multiplyExact(keys.numOrders(),
+                                            keys.numPositions());
+        } catch (ArithmeticException excp) {
+            throw error("key space too large");
+        }
+    }
+
+    /** Return the fingerprint of the configuration file named CONFIG and
+     *  the ciphertext file named CIPHERTEXT. */
+    static long fingerprint(String config, String ciphertext) {
+        CRC32 crc = new CRC32();
+        crc.update(readFile(config));
+        crc.update(0);
+        crc.update(readFile(ciphertext));
+        return crc.getValue();
+    }
+
+    /** Return the contents of the file named NAME. */
+    static byte[] readFile(String name) {
+        try {
+            return Files.readAllBytes(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return the letters of the ciphertext in the file named NAME, for
+     *  MACHINE, as alphabet indices.  Whitespace is ignored, and letters
+     *  are converted to upper case. */
+    static int[] readCiphertext(String name, Machine machine) {
+        String text = new String(readFile(name)).replaceAll("\\s+", "")
+            .toUpperCase();
+        LineValidator validator =
+            new LineValidator(machine.alphabet(), false);
+        int len = validator.validate(text, 1);
+        return Arrays.copyOf(validator.letters(), len);
+    }
+
+    /** Accept workers on SERVER until the search is over, and return the
+     *  best keys found, best first.  WORKERS are worker processes started
+     *  on this host; if there are any, and they all exit while there is no
+     *  other worker, the search fails. */
+    List<Result> run(ServerSocket server, List<Process> workers) {
+        Thread acceptor = new Thread(() -> accept(server), "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        synchronized (this) {
+            long reported = 0;
+            while (_doneKeys < _totalKeys) {
+                long now = System.currentTimeMillis();
+                if (now - reported >= REPORT_INTERVAL) {
+                    System.err.printf("searched %d of %d keys%n",
+                                      _doneKeys + _partialKeys, _totalKeys);
+                    reported = now;
+                }
+                if (!workers.isEmpty() && _connections == 0
+                    && workers.stream().noneMatch(Process::isAlive)) {
+                    throw error("all workers exited");
+                }
+                try {
+                    wait(REPORT_INTERVAL);
+                } catch (InterruptedException excp) {
+                    throw error("key search interrupted");
+                }
+            }
+            System.err.printf("searched %d of %d keys; %d leases "
+                              + "reassigned%n",
+                              _doneKeys, _totalKeys, _reassigned);
+        }
+        try {
+            server.close();
+        } catch (IOException excp) {
+            /* Ignore: the search is over. */
+        }
+        ArrayList<Result> result;
+        synchronized (this) {
+            result = new ArrayList<>(_best);
+        }
+        result.sort(WORST_FIRST.reversed());
+        return result;
+    }
+
+    /** Accept connections from workers on SERVER, serving each in its own
+     *  thread, until SERVER is closed. */
+    private void accept(ServerSocket server) {
+        while (true) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException excp) {
+                return;
+            }
+            Thread handler = new Thread(() -> serve(socket), "worker");
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    /** Hand out leases to the worker at the other end of SOCKET until
+     *  there are none left or the worker fails. */
+    private void serve(Socket socket) {
+        Lease lease = null;
+        synchronized (this) {
+            _connections += 1;
+        }
+        try (Socket s = socket) {
+            s.setSoTimeout(_timeout * MILLIS);
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(s.getInputStream(),
+                                      StandardCharsets.US_ASCII));
+            PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(s.getOutputStream(),
+                                       StandardCharsets.US_ASCII), true);
+            String[] hello = fields(in.readLine());
+            if (hello.length != 2 || !hello[0].equals("HELLO")
+                || Long.parseLong(hello[1]) != _fingerprint) {
+                out.println("REJECT");
+                System.err.printf("rejected worker at %s%n",
+                                  s.getRemoteSocketAddress());
+                return;
+            }
+            out.println("WELCOME " + _top);
+            while ((lease = nextLease()) != null) {
+                out.printf("LEASE %d %d %d %d%n", lease.id, lease.order,
+                           lease.start, lease.count);
+                ArrayList<Result> results = new ArrayList<>();
+                while (true) {
+                    String[] reply = fields(in.readLine());
+                    long id = Long.parseLong(reply[1]);
+                    if (id != lease.id) {
+                        throw new IOException("wrong lease");
+                    } else if (reply[0].equals("FINISHED")) {
+                        break;
+                    } else if (reply[0].equals("RESULT")) {
+                        results.add(new Result(Double.parseDouble(reply[2]),
+                                               Long.parseLong(reply[3]),
+                                               Long.parseLong(reply[4])));
+                    } else if (reply[0].equals("PROGRESS")) {
+                        progress(lease, Long.parseLong(reply[2]));
+                    } else {
+                        throw new IOException("bad reply");
+                    }
+                }
+                finish(lease, results);
+                lease = null;
+            }
+            out.println("DONE");
+        } catch (IOException | RuntimeException excp) {
+            if (lease != null) {
+                System.err.printf("lost worker at %s; reassigning lease "
+                                  + "%d%n", socket.getRemoteSocketAddress(),
+                                  lease.id);
+            }
+        } finally {
+            synchronized (this) {
+                if (lease != null && _outstanding.containsKey(lease.id)) {
+                    _pending.addFirst(lease);
+                    _reassigned += 1;
+                    progress(lease, 0);
+                }
+                _connections -= 1;
+                notifyAll();
+            }
+        }
+    }
+
+    /** Return the space-separated fields of LINE, which must have at least
+     *  two. */
+    private static String[] fields(String line) throws IOException {
+        if (line == null) {
+            throw new IOException("connection closed");
+        }
+        String[] result = line.trim().split(" +");
+        if (result.length < 2) {
+            throw new IOException("bad message");
+        }
+        return result;
+    }
+
+    /** Return the next lease to hand out, waiting while all unfinished
+     *  leases are out with workers, or null if the search is over. */
+    private synchronized Lease nextLease() {
+        while (true) {
+            Lease lease = _pending.pollFirst();
+            if (lease == null && _nextOrder < _keys.numOrders()) {
+                long count = Math.min(_leaseSize,
+                                      _keys.numPositions() - _nextStart);
+                lease = new Lease(_nextId, _nextOrder, _nextStart, count);
+                _nextId += 1;
+                _nextStart += count;
+                if (_nextStart == _keys.numPositions()) {
+                    _nextOrder += 1;
+                    _nextStart = 0;
+                }
+                _outstanding.put(lease.id, lease);
+            }
+            if (lease != null || _doneKeys == _totalKeys) {
+                return lease;
+            }
+            try {
+                wait();
+            } catch (InterruptedException excp) {
+                return null;
+            }
+        }
+    }
+
+    /** Record that KEYS of the keys in LEASE have been searched, as the
+     *  worker searching it reports, if it is still outstanding. */
+    private synchronized void progress(Lease lease, long keys) {
+        if (!_outstanding.containsKey(lease.id)) {
+            return;
+        }
+        keys = Math.max(0, Math.min(keys, lease.count));
+        Long previous = keys == 0 ? _progress.remove(lease.id)
+            : _progress.put(lease.id, keys);
+        _partialKeys += keys - (previous == null ? 0 : previous);
+    }
+
+    /** Record that LEASE has been searched, with RESULTS its best keys.
+     *  A lease that was reassigned may be finished twice; the second time
+     *  is ignored. */
+    private synchronized void finish(Lease lease, List<Result> results) {
+        if (_outstanding.remove(lease.id) == null) {
+            return;
+        }
+        _pending.remove(lease);
+        Long partial = _progress.remove(lease.id);
+        _partialKeys -= partial == null ? 0 : partial;
+        for (Result result : results) {
+            offer(_best, result, _top);
+        }
+        _doneKeys += lease.count;
+        notifyAll();
+    }
+
+    /** Have the rotors of MACHINE read their tables in place from the
+     *  RotorTableFile named NAME, first checking its checksum iff
+     *  VERIFY. */
+    static void useTables(Machine machine, String name, boolean verify) {
+        RotorTableFile tables = RotorTableFile.open(new File(name), verify);
+        for (Rotor rotor : machine.allRotors()) {
+            rotor.useTables(tables);
+        }
+    }
+
+    /** Start COUNT worker processes that search the keys of the
+     *  configuration file named CONFIG for the ciphertext in the file named
+     *  CIPHERTEXT, and connect to ADDRESS.  They read their rotors' tables
+     *  from the file named TABLES, unless it is null. */
+    static List<Process> startWorkers(int count, String address,
+                                      String config, String ciphertext,
+                                      String tables) {
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                                "java").toString();
+        ArrayList<String> command = new ArrayList<>();
+        command.addAll(Arrays.asList(java, "-cp",
+                                     System.getProperty("java.class.path"),
+                                     "enigma.KeySearch",
+                                     "--worker=" + address));
+        if (tables != null) {
+            command.add("--tables=" + tables);
+        }
+        command.add(config);
+        command.add(ciphertext);
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        ArrayList<Process> result = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i += 1) {
+                result.add(builder.start());
+            }
+        } catch (IOException excp) {
+            result.forEach(Process::destroy);
+            throw error("could not start worker: %s", excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Search the keys of the configuration file named ARGS[K] for the
+     *  ciphertext in the file named ARGS[K + 1], where ARGS[0 .. K-1] are
+     *  options, and print the best keys found, best first, each with its
+     *  score.  The options are
+     *      --workers=N    Start N worker processes on this host (default:
+     *                     the number of processors; 0 to wait for workers
+     *                     started elsewhere).
+     *      --bind=ADDR    Listen on ADDR (default: the loopback address).
+     *      --port=P       Listen on port P (default: any free port).
+     *      --lease=N      Hand out N positions at a time (default 100000).
+     *      --top=N        Report the N best keys (default 10).
+     *      --timeout=S    Reassign the lease of a worker silent for S
+     *                     seconds (default 30).
+     *      --tables=FILE  Read the rotors' tables in place from FILE, a
+     *                     RotorTableFile for CONFIG, which the coordinator
+     *                     checks and the workers on a host then share.
+     *      --worker=HOST:PORT  Instead, be a worker for the coordinator at
+     *                     HOST:PORT (see KeySearchWorker). */
+    public static void main(String... args) {
+        try {
+            int workers = Runtime.getRuntime().availableProcessors();
+            String bind = null;
+            int port = 0;
+            long leaseSize = DEFAULT_LEASE_SIZE;
+            int top = DEFAULT_TOP;
+            int timeout = DEFAULT_TIMEOUT;
+            String coordinator = null;
+            String tables = null;
+            int k;
+            for (k = 0; k < args.length && args[k].startsWith("--");
+                 k += 1) {
+                String option = args[k];
+                String value = option.substring(option.indexOf('=') + 1);
+                if (option.startsWith("--workers=")) {
+                    workers = option.equals("--workers=0") ? 0
+                        : Main.intOption(option);
+                } else if (option.startsWith("--bind=")) {
+                    bind = value;
+                } else if (option.startsWith("--port=")) {
+                    port = Main.intOption(option);
+                } else if (option.startsWith("--lease=")) {
+                    leaseSize = Main.intOption(option);
+                } else if (option.startsWith("--top=")) {
+                    top = Main.intOption(option);
+                } else if (option.startsWith("--timeout=")) {
+                    timeout = Main.intOption(option);
+                } else if (option.startsWith("--worker=")) {
+                    coordinator = value;
+                } else if (option.startsWith("--tables=")) {
+                    tables = value;
+                } else {
+                    throw error("unknown option %s", option);
+                }
+            }
+            if (args.length - k != 2) {
+                throw error("Usage: java enigma.KeySearch [OPTIONS] CONFIG "
+                            + "CIPHERTEXT");
+            }
+            String config = args[k];
+            String ciphertext = args[k + 1];
+            KeySpace keys = new KeySpace(Main.readConfig(config));
+            if (tables != null) {
+                useTables(keys.machine(), tables, coordinator == null);
+            }
+            long fingerprint = fingerprint(config, ciphertext);
+            if (coordinator != null) {
+                new KeySearchWorker(keys,
+                                    readCiphertext(ciphertext,
+                                                   keys.machine()),
+                                    fingerprint).run(coordinator);
+                return;
+            }
+            KeySearch search =
+                new KeySearch(keys, fingerprint, leaseSize, top, timeout);
+            List<Result> best;
+            try (ServerSocket server = new ServerSocket()) {
+                InetAddress address = bind == null
+                    ? InetAddress.getLoopbackAddress()
+                    : InetAddress.getByName(bind);
+                server.bind(new InetSocketAddress(address, port));
+                String where = address.getHostAddress() + ":"
+                    + server.getLocalPort();
+                System.err.printf("coordinator listening on %s%n", where);
+                List<Process> started =
+                    startWorkers(workers, where, config, ciphertext,
+                                 tables);
+                try {
+                    best = search.run(server, started);
+                } finally {
+                    started.forEach(Process::destroyForcibly);
+                }
+            } catch (IOException excp) {
+                throw error("could not listen: %s", excp.getMessage());
+            }
+            for (Result result : best) {
+                System.out.printf("%.4f %s%n", result.score,
+                                  keys.settings(result.order,
+                                                result.position));
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Milliseconds per second. */
+    private static final int MILLIS = 1000;
+
+    /** Milliseconds between progress reports. */
+    private static final long REPORT_INTERVAL = 1000;
+
+    /** Default number of positions in a lease. */
+    private static final long DEFAULT_LEASE_SIZE = 100000;
+
+    /** Default number of keys reported. */
+    private static final int DEFAULT_TOP = 10;
+
+    /** Default number of seconds a worker may be silent. */
+    private static final int DEFAULT_TIMEOUT = 30;
+
+    /** The keys searched. */
+    private final KeySpace _keys;
+
+    /** Fingerprint that workers must present. */
+    private final long _fingerprint;
+
+    /** Largest number of positions in a lease. */
+    private final long _leaseSize;
+
+    /** Number of best keys kept. */
+    private final int _top;
+
+    /** Seconds a worker may be silent before its lease is reassigned. */
+    private final int _timeout;
+
+    /** Total number of keys. */
+    private final long _totalKeys;
+
+    /** Number of keys in finished leases. */
+    private long _doneKeys;
+
+    /** Number of keys searched so far in outstanding leases, as last
+     *  reported by their workers. */
+    private long _partialKeys;
+
+    /** Keys searched so far in each outstanding lease with progress
+     *  reported, by lease number. */
+    private final HashMap<Long, Long> _progress = new HashMap<>();
+
+    /** Number of the next new lease. */
+    private long _nextId;
+
+    /** Rotor order of the next new lease. */
+    private long _nextOrder;
+
+    /** First position of the next new lease. */
+    private long _nextStart;
+
+    /** Leases handed out and not yet finished, by number. */
+    private final HashMap<Long, Lease> _outstanding = new HashMap<>();
+
+    /** Unfinished leases taken back from failed workers. */
+    private final ArrayDeque<Lease> _pending = new ArrayDeque<>();
+
+    /** The best results so far, worst first. */
+    private final PriorityQueue<Result> _best =
+        new PriorityQueue<>(WORST_FIRST);
+
+    /** Number of workers connected. */
+    private int _connections;
+
+    /** Number of leases reassigned after a worker failed. */
+    private int _reassigned;
+
+}
@@ -0,0 +1,136 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+import static enigma.EnigmaException.*;
+
+/** A worker in a key search (see KeySearch): connects to a coordinator,
+ *  and searches the leases it is given, sending back the best keys in
+ *  each.
+ *  @author Frederick Fan
+ */
+class KeySearchWorker {
+
+    /** A worker searching KEYS for CIPHERTEXT, a sequence of alphabet
+     *  indices, that identifies itself to the coordinator with
+     *  FINGERPRINT. */
+    KeySearchWorker(KeySpace keys, int[] ciphertext, long fingerprint) {
+        _keys = keys;
+        _ciphertext = ciphertext;
+        _fingerprint = fingerprint;
+        _text = new int[ciphertext.length];
+    }
+
+    /** Work for the coordinator at ADDRESS, of the form HOST:PORT, until it
+     *  has no more work. */
+    void run(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            throw error("bad coordinator address %s", address);
+        }
+        try (Socket socket =
+             new Socket(address.substring(0, colon),
+                        Integer.parseInt(address.substring(colon + 1)))) {
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(),
+                                      StandardCharsets.US_ASCII));
+            PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(socket.getOutputStream(),
+                                       StandardCharsets.US_ASCII));
+            out.println("HELLO " + _fingerprint);
+            out.flush();
+            String[] welcome = fields(in.readLine());
+            if (!welcome[0].equals("WELCOME")) {
+                throw error("coordinator at %s refused this worker's "
+                            + "configuration or ciphertext", address);
+            }
+            int top = Integer.parseInt(welcome[1]);
+            while (true) {
+                String[] lease = fields(in.readLine());
+                if (lease[0].equals("DONE")) {
+                    return;
+                } else if (!lease[0].equals("LEASE")) {
+                    throw error("bad message from coordinator");
+                }
+                search(Long.parseLong(lease[1]), Long.parseLong(lease[2]),
+                       Long.parseLong(lease[3]), Long.parseLong(lease[4]),
+                       top, out);
+            }
+        } catch (IOException | NumberFormatException
+                 | ArrayIndexOutOfBoundsException excp) {
+            throw error("lost coordinator at %s", address);
+        }
+    }
+
+    /** Return the space-separated fields of LINE. */
+    private static String[] fields(String line) throws IOException {
+        if (line == null) {
+            throw new IOException("connection closed");
+        }
+        return line.trim().split(" +");
+    }
+
+    /** Search lease number ID, which covers COUNT positions of rotor order
+     *  ORDER from position START, and report progress and the TOP best
+     *  keys to OUT. */
+    private void search(long id, long order, long start, long count,
+                        int top, PrintWriter out) {
+        PriorityQueue<KeySearch.Result> best =
+            new PriorityQueue<>(KeySearch.WORST_FIRST);
+        Machine machine = _keys.machine();
+        _keys.setUp(order, start);
+        long reported = System.currentTimeMillis();
+        for (long k = 0; k < count; k += 1) {
+            machine.setPositions(_keys.positions(start + k));
+            System.arraycopy(_ciphertext, 0, _text, 0, _text.length);
+            machine.convert(_text, _text.length);
+            KeySearch.offer(best,
+                            new KeySearch.Result(
+                                _keys.coincidence(_text, _text.length),
+                                order, start + k),
+                            top);
+            if ((k & (CHECK_INTERVAL - 1)) == 0
+                && System.currentTimeMillis() - reported
+                   >= PROGRESS_INTERVAL) {
+                out.printf("PROGRESS %d %d%n", id, k);
+                out.flush();
+                reported = System.currentTimeMillis();
+            }
+        }
+        ArrayList<KeySearch.Result> results = new ArrayList<>(best);
+        for (KeySearch.Result result : results) {
+            out.printf("RESULT %d %s %d %d%n", id,
+                       Double.toString(result.score), result.order,
+                       result.position);
+        }
+        out.printf("FINISHED %d%n", id);
+        out.flush();
+    }
+
+    /** Number of keys between looks at the clock; a power of 2. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /** Milliseconds between progress reports. */
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    /** The keys searched. */
+    private final KeySpace _keys;
+
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _ciphertext;
+
+    /** Fingerprint of my configuration and ciphertext. */
+    private final long _fingerprint;
+
+    /** Buffer for decryptions. */
+    private final int[] _text;
+
+}
@@ -0,0 +1,175 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The keys that a machine can be set up with, ignoring ring settings and
+ *  the plugboard: a rotor order (a reflector in the first slot, rotors
+ *  that do not rotate in the slots without pawls, and moving rotors in the
+ *  slots with pawls, none used twice) and the positions of the rotors.
+ *  Rotor orders and positions are numbered, so that a range of keys can
+ *  be described by a few numbers, and the same numbering is seen by every
+ *  process that reads the same configuration.
+ *  @author Frederick Fan
+ */
+class KeySpace {
+
+    /** The keys of MACHINE. */
+    KeySpace(Machine machine) {
+        _machine = machine;
+        _size = machine.alphabet().size();
+        _slots = machine.numRotors();
+        for (Rotor rotor : machine.allRotors()) {
+            if (rotor.reflecting()) {
+                _reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                _moving.add(rotor.name());
+            } else {
+                _fixed.add(rotor.name());
+            }
+        }
+        _numFixed = _slots - 1 - machine.numPawls();
+        try {
+            long orders = _reflectors.size();
+            orders = Math.multiplyExact(orders,
+                                        arrangements(_fixed.size(),
+                                                     _numFixed));
+            orders = Math.multiplyExact(orders,
+                                        arrangements(_moving.size(),
+                                                     machine.numPawls()));
+            _numOrders = orders;
+            long posns = 1;
+            for (int i = 1; i < _slots; i += 1) {
+                posns = Math.multiplyExact(posns, _size);
+            }
+            _numPositions = posns;
+        } catch (ArithmeticException excp) {
+            throw error("key space too large");
+        }
+        if (_numOrders == 0) {
+            throw error("no rotor order fits the machine");
+        }
+    }
+
+    /** Return the number of ways of arranging K of N things in order. */
+    private static long arrangements(int n, int k) {
+        long result = 1;
+        for (int i = 0; i < k; i += 1) {
+            result = Math.multiplyExact(result, Math.max(0, n - i));
+        }
+        return result;
+    }
+
+    /** Return the machine whose keys I describe. */
+    Machine machine() {
+        return _machine;
+    }
+
+    /** Return the number of rotor orders. */
+    long numOrders() {
+        return _numOrders;
+    }
+
+    /** Return the number of sets of rotor positions for each order. */
+    long numPositions() {
+        return _numPositions;
+    }
+
+    /** Return the names of the rotors in rotor order ORDER, reflector
+     *  first. */
+    String[] order(long order) {
+        String[] result = new String[_slots];
+        result[0] = _reflectors.get((int) (order % _reflectors.size()));
+        order /= _reflectors.size();
+        ArrayList<String> fixed = new ArrayList<>(_fixed);
+        ArrayList<String> moving = new ArrayList<>(_moving);
+        for (int i = 1; i < _slots; i += 1) {
+            ArrayList<String> pool = i <= _numFixed ? fixed : moving;
+            int n = pool.size();
+            result[i] = pool.remove((int) (order % n));
+            order /= n;
+        }
+        return result;
+    }
+
+    /** Return the rotor positions numbered POSITION, leftmost first, not
+     *  counting the reflector. */
+    int[] positions(long position) {
+        int[] result = new int[_slots - 1];
+        for (int i = result.length - 1; i >= 0; i -= 1) {
+            result[i] = (int) (position % _size);
+            position /= _size;
+        }
+        return result;
+    }
+
+    /** Set my machine up with rotor order ORDER and the positions numbered
+     *  POSITION, with no plugboard and all rings at 0. */
+    void setUp(long order, long position) {
+        _machine.insertRotors(order(order));
+        _machine.setPositions(positions(position));
+        _machine.setPlugboard(null);
+    }
+
+    /** Return the settings line (without plugboard) for rotor order ORDER
+     *  and the positions numbered POSITION. */
+    String settings(long order, long position) {
+        StringBuilder result = new StringBuilder("*");
+        for (String name : order(order)) {
+            result.append(' ').append(name);
+        }
+        result.append(' ');
+        for (int posn : positions(position)) {
+            result.append(_machine.alphabet().toChar(posn));
+        }
+        return result.toString();
+    }
+
+    /** Return the index of coincidence of the first LEN characters of
+     *  TEXT, which are alphabet indices: the chance that two different
+     *  characters picked at random are the same, times the size of the
+     *  alphabet.  Plaintext scores well above 1; random text about 1. */
+    double coincidence(int[] text, int len) {
+        int[] counts = new int[_size];
+        for (int i = 0; i < len; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long pairs = 0;
+        for (int count : counts) {
+            pairs += (long) count * (count - 1);
+        }
+        return len < 2 ? 0.0
+            : (double) pairs * _size / ((long) len * (len - 1));
+    }
+
+    /** Machine whose keys these are. */
+    private final Machine _machine;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _slots;
+
+    /** Number of slots, after the reflector's, holding rotors that do not
+     *  rotate. */
+    private final int _numFixed;
+
+    /** Names of the available reflectors. */
+    private final List<String> _reflectors = new ArrayList<>();
+
+    /** Names of the available rotors that do not rotate. */
+    private final List<String> _fixed = new ArrayList<>();
+
+    /** Names of the available moving rotors. */
+    private final List<String> _moving = new ArrayList<>();
+
+    /** Number of rotor orders. */
+    private final long _numOrders;
+
+    /** Number of sets of positions per rotor order. */
+    private final long _numPositions;
+
+}
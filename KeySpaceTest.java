@@ -0,0 +1,101 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySpace class.
+ *  @author Frederick Fan
+ */
+public class KeySpaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkOrders() {
+        KeySpace keys = new KeySpace(MachineTest.naval());
+        assertEquals(5 * 4 * 3, keys.numOrders());
+        HashSet<String> seen = new HashSet<>();
+        for (long k = 0; k < keys.numOrders(); k += 1) {
+            String[] order = keys.order(k);
+            String id = msg("checkOrders", "order %d", k);
+            assertEquals(id, 5, order.length);
+            assertEquals(id, "B", order[0]);
+            assertEquals(id, "Beta", order[1]);
+            assertEquals(id, 5, new HashSet<>(Arrays.asList(order)).size());
+            for (int i = 2; i < order.length; i += 1) {
+                assertTrue(id, order[i].matches("I|II|III|IV|V"));
+            }
+            assertTrue(id, seen.add(String.join(" ", order)));
+        }
+    }
+
+    @Test
+    public void checkPositions() {
+        KeySpace keys = new KeySpace(MachineTest.naval());
+        assertEquals(26 * 26 * 26 * 26, keys.numPositions());
+        assertArrayEquals(new int[4], keys.positions(0));
+        assertArrayEquals(new int[] { 0, 0, 0, 1 }, keys.positions(1));
+        assertArrayEquals(new int[] { 0, 0, 1, 0 }, keys.positions(26));
+        assertArrayEquals(new int[] { 25, 25, 25, 25 },
+                          keys.positions(keys.numPositions() - 1));
+        for (long p = 0; p < keys.numPositions(); p += 4099) {
+            long number = 0;
+            for (int posn : keys.positions(p)) {
+                assertTrue(posn >= 0 && posn < 26);
+                number = number * 26 + posn;
+            }
+            assertEquals(msg("checkPositions", "position %d", p), p, number);
+        }
+    }
+
+    @Test
+    public void checkSettings() {
+        KeySpace keys = new KeySpace(MachineTest.naval());
+        long position = (23 * 26 + 11) * 26 + 4;
+        for (long order : new long[] { 0, 17, keys.numOrders() - 1 }) {
+            String settings = keys.settings(order, position);
+            assertEquals("* " + String.join(" ", keys.order(order))
+                         + " AXLE", settings);
+            keys.setUp(order, position);
+            Machine machine = keys.machine();
+            assertEquals("AXLE", MachineTest.posns(machine));
+            Machine direct = MachineTest.naval();
+            Main.setUp(direct, settings);
+            assertEquals(msg("checkSettings", "order %d", order),
+                         direct.convert("FROMHISSHOULDERHIAWATHA"),
+                         machine.convert("FROMHISSHOULDERHIAWATHA"));
+        }
+    }
+
+    @Test
+    public void checkCoincidence() {
+        KeySpace keys = new KeySpace(MachineTest.naval());
+        int[] text = new int[52];
+        assertEquals(26.0, keys.coincidence(text, text.length), 1e-9);
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = i % 26;
+        }
+        assertEquals(26.0 * 26 * 2 / (52 * 51),
+                     keys.coincidence(text, text.length), 1e-9);
+        assertEquals(0.0, keys.coincidence(text, 1), 1e-9);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoOrders() {
+        Machine machine = new Machine(UPPER, 5, 1, MachineTest.naval()
+                                      .allRotors());
+        new KeySpace(machine);
+    }
+
+}
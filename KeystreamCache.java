@@ -0,0 +1,263 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** A cache of the substitutions a machine makes under each key, for
+ *  workloads in which many messages are sent under the same settings.
+ *  Under a given key (see Machine.key), the substitution made at the T-th
+ *  character of a message depends only on T, so once the conversion of
+ *  character X at position T has been seen, it can be looked up rather
+ *  than recomputed.  The cache records, for each key, a table indexed by
+ *  position and character, for the first few positions, filled in as
+ *  conversions are made and extended as longer messages arrive.
+ *
+ *  Conversion through the cache goes through a Stream, which keeps track
+ *  of how far into the message it is.  A character found in the table
+ *  costs one lookup and leaves the machine where it is; on a miss, the
+ *  machine is first brought up to the stream's position, starting from
+ *  the nearest of the rotor positions recorded every few hundred
+ *  characters.  Tables are evicted, least recently used first, when their
+ *  total size exceeds a bound.  A cache and its streams are for use by one
+ *  thread.
+ *  @author Frederick Fan
+ */
+class KeystreamCache {
+
+    /** The substitutions recorded for one key. */
+    private static final class Entry {
+
+        /** An entry for a key whose first rotor positions are POSNS,
+         *  taking KEYBYTES bytes for the key itself. */
+        Entry(int[] posns, long keyBytes) {
+            snapshots = new int[1][];
+            snapshots[0] = posns.clone();
+            bytes = ENTRY_BYTES + keyBytes + posns.length * Integer.BYTES;
+        }
+
+        /** For position T and character X, 1 + the conversion of X, or 0
+         *  if it is not yet known, at index T * size + X. */
+        char[] table = new char[0];
+
+        /** Rotor positions before every SNAPSHOT_INTERVAL-th character,
+         *  or null where not yet recorded. */
+        int[][] snapshots;
+
+        /** Approximate number of bytes I use. */
+        long bytes;
+
+        /** True once I have been evicted from the cache. */
+        boolean evicted;
+    }
+
+    /** A machine converting under one key, through my table for it. */
+    final class Stream {
+
+        /** A stream converting with MACHINE, which is set up with the key
+         *  of ENTRY. */
+        private Stream(Machine machine, Entry entry) {
+            _machine = machine;
+            _entry = entry;
+        }
+
+        /** Replace each of the first LEN elements of MSG with its
+         *  conversion, as for Machine.convert(int[], int), continuing from
+         *  where the last conversion through this stream left off.  The
+         *  positions of the machine's rotors are not kept up to date; see
+         *  sync. */
+        void convert(int[] msg, int len) {
+            for (int i = 0; i < len; i += 1) {
+                if (_pos >= _maxLength) {
+                    sync();
+                    msg[i] = _machine.convert(msg[i]);
+                    _at += 1;
+                    _pos += 1;
+                    continue;
+                }
+                int k = (int) _pos * _size + msg[i];
+                char[] table = _entry.table;
+                if (k < table.length && table[k] != 0) {
+                    msg[i] = table[k] - 1;
+                    _hits += 1;
+                } else {
+                    sync();
+                    int c = _machine.convert(msg[i]);
+                    _at += 1;
+                    record(k, c);
+                    msg[i] = c;
+                    _misses += 1;
+                }
+                _pos += 1;
+            }
+        }
+
+        /** Bring the rotors of my machine to where they would be had it
+         *  made all the conversions made through this stream. */
+        void sync() {
+            if (_at == _pos) {
+                return;
+            }
+            if (_pos < _maxLength) {
+                int[][] snapshots = _entry.snapshots;
+                int s = (int) Math.min(_pos / SNAPSHOT_INTERVAL,
+                                       snapshots.length - 1);
+                while (s >= 0 && (long) s * SNAPSHOT_INTERVAL > _at
+                       && snapshots[s] == null) {
+                    s -= 1;
+                }
+                if (s >= 0 && (long) s * SNAPSHOT_INTERVAL > _at) {
+                    _machine.setPositions(snapshots[s]);
+                    _at = (long) s * SNAPSHOT_INTERVAL;
+                }
+            }
+            while (_at < _pos) {
+                long next = (_at / SNAPSHOT_INTERVAL + 1) * SNAPSHOT_INTERVAL;
+                long target = Math.min(next, _pos);
+                _machine.skip(target - _at);
+                _at = target;
+                if (_at % SNAPSHOT_INTERVAL == 0) {
+                    snapshot();
+                }
+            }
+        }
+
+        /** Record that character number K of my table converts to C. */
+        private void record(int k, int c) {
+            if (k >= _entry.table.length) {
+                int len = Math.max(_entry.table.length * 2,
+                                   (int) (_pos + 1) * _size);
+                len = Math.min(len, _maxLength * _size);
+                charge(_entry, (long) (len - _entry.table.length)
+                       * Character.BYTES);
+                _entry.table = Arrays.copyOf(_entry.table, len);
+                evict(_entry);
+            }
+            _entry.table[k] = (char) (c + 1);
+            if (_at % SNAPSHOT_INTERVAL == 0) {
+                snapshot();
+            }
+        }
+
+        /** Record the positions of my machine's rotors, which have made
+         *  _at steps, if _at is a multiple of SNAPSHOT_INTERVAL within my
+         *  table. */
+        private void snapshot() {
+            if (_at >= _maxLength) {
+                return;
+            }
+            int s = (int) (_at / SNAPSHOT_INTERVAL);
+            if (s >= _entry.snapshots.length) {
+                _entry.snapshots = Arrays.copyOf(_entry.snapshots, s + 1);
+            }
+            if (_entry.snapshots[s] == null) {
+                _entry.snapshots[s] = _machine.positions();
+                charge(_entry, _entry.snapshots[s].length * Integer.BYTES);
+            }
+        }
+
+        /** The machine converting. */
+        private final Machine _machine;
+
+        /** The substitutions recorded for my key. */
+        private final Entry _entry;
+
+        /** Number of characters converted through this stream. */
+        private long _pos;
+
+        /** Number of characters by which _machine has advanced. */
+        private long _at;
+    }
+
+    /** A cache of the substitutions made at the first MAXLENGTH
+     *  characters under each key, by machines whose alphabets have SIZE
+     *  characters, holding tables of at most about MAXBYTES bytes in
+     *  all. */
+    KeystreamCache(int size, int maxLength, long maxBytes) {
+        _size = size;
+        _maxLength = Math.min(maxLength, Integer.MAX_VALUE / size);
+        _maxBytes = maxBytes;
+    }
+
+    /** Return a stream converting with MACHINE, which has just been set up
+     *  with a key, using the substitutions recorded for that key. */
+    Stream open(Machine machine) {
+        String key = machine.key();
+        Entry entry = _entries.get(key);
+        if (entry == null) {
+            entry = new Entry(machine.positions(),
+                              key.length() * Character.BYTES);
+            _entries.put(key, entry);
+            _bytes += entry.bytes;
+        }
+        evict(entry);
+        return new Stream(machine, entry);
+    }
+
+    /** Return the number of characters found in the cache. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of characters not found in the cache. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the approximate number of bytes in use by my tables. */
+    long bytes() {
+        return _bytes;
+    }
+
+    /** Record that ENTRY has grown by BYTES bytes. */
+    private void charge(Entry entry, long bytes) {
+        entry.bytes += bytes;
+        if (!entry.evicted) {
+            _bytes += bytes;
+        }
+    }
+
+    /** Evict the least recently used entries other than KEEP until my
+     *  tables are within bounds. */
+    private void evict(Entry keep) {
+        Iterator<Entry> entries = _entries.values().iterator();
+        while (_bytes > _maxBytes && entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry != keep) {
+                _bytes -= entry.bytes;
+                entry.evicted = true;
+                entries.remove();
+            }
+        }
+    }
+
+    /** Number of characters between recorded rotor positions. */
+    private static final int SNAPSHOT_INTERVAL = 256;
+
+    /** Approximate number of bytes of an entry apart from its key, table,
+     *  and snapshots. */
+    private static final int ENTRY_BYTES = 128;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of positions recorded for each key. */
+    private final int _maxLength;
+
+    /** Bound on _bytes. */
+    private final long _maxBytes;
+
+    /** Approximate number of bytes in use. */
+    private long _bytes;
+
+    /** Number of characters found in the cache. */
+    private long _hits;
+
+    /** Number of characters not found in the cache. */
+    private long _misses;
+
+    /** The entries, by key, least recently used first. */
+    private final LinkedHashMap<String, Entry> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+}
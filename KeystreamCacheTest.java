@@ -0,0 +1,82 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeystreamCache class.
+ *  @author Frederick Fan
+ */
+public class KeystreamCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return LEN letters of text, varying with SEED. */
+    private int[] text(int len, int seed) {
+        int[] result = new int[len];
+        for (int i = 0; i < len; i += 1) {
+            result[i] = (i * 7 + seed * 11 + i / 26) % 26;
+        }
+        return result;
+    }
+
+    /** Check that converting messages of the lengths in LENS, alternately
+     *  under the settings AXLE and ZDQV, through a cache of MAXBYTES
+     *  bytes, gives the same results as converting them directly. */
+    private void checkMessages(long maxBytes, int... lens) {
+        KeystreamCache cache = new KeystreamCache(26, 1000, maxBytes);
+        Machine cached = MachineTest.naval();
+        Machine direct = MachineTest.naval();
+        for (int m = 0; m < lens.length; m += 1) {
+            String setting = m % 2 == 0 ? "AXLE" : "ZDQV";
+            cached.setRotors(setting);
+            direct.setRotors(setting);
+            KeystreamCache.Stream stream = cache.open(cached);
+            int[] expected = text(lens[m], m);
+            int[] msg = expected.clone();
+            direct.convert(expected, expected.length);
+            int half = msg.length / 2;
+            stream.convert(msg, half);
+            int[] rest = new int[msg.length - half];
+            System.arraycopy(msg, half, rest, 0, rest.length);
+            stream.convert(rest, rest.length);
+            System.arraycopy(rest, 0, msg, half, rest.length);
+            assertArrayEquals(msg("checkMessages", "message %d", m),
+                              expected, msg);
+            stream.sync();
+            assertArrayEquals(direct.positions(), cached.positions());
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRepeatedKeys() {
+        checkMessages(1 << 20, 300, 40, 700, 800, 1500, 2000, 10);
+    }
+
+    @Test
+    public void checkEviction() {
+        checkMessages(1, 300, 40, 700, 800, 1500, 2000, 10);
+    }
+
+    @Test
+    public void checkHits() {
+        KeystreamCache cache = new KeystreamCache(26, 1000, 1 << 20);
+        for (int m = 0; m < 2; m += 1) {
+            Machine machine = MachineTest.naval();
+            int[] msg = text(500, 0);
+            cache.open(machine).convert(msg, msg.length);
+        }
+        assertEquals(500, cache.misses());
+        assertEquals(500, cache.hits());
+    }
+
+}
@@ -0,0 +1,95 @@
+package enigma;
+
+/** A histogram of latencies, in nanoseconds, for reporting percentiles.
+ *  Latencies below 64ns are counted exactly; above that, each power of 2
+ *  is divided into 32 buckets, so that a reported percentile is within
+ *  about 3% of the true one.  Recording a latency takes constant time and
+ *  no allocation, so that it does not add to the latency it measures.
+ *  @author Frederick Fan
+ */
+class LatencyHistogram {
+
+    /** Record one latency of NANOS nanoseconds. */
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        _counts[index(nanos)] += 1;
+        _count += 1;
+        _max = Math.max(_max, nanos);
+    }
+
+    /** Return the number of latencies recorded. */
+    long count() {
+        return _count;
+    }
+
+    /** Return the largest latency recorded, or 0 if there are none. */
+    long max() {
+        return _max;
+    }
+
+    /** Return the latency, in nanoseconds, that the fraction P of the
+     *  recorded latencies do not exceed (to within the precision of my
+     *  buckets), or 0 if none have been recorded. */
+    long percentile(double p) {
+        long rank = (long) Math.ceil(p * _count);
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i += 1) {
+            seen += _counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), _max);
+            }
+        }
+        return _max;
+    }
+
+    /** Return a one-line summary of my percentiles, in milliseconds,
+     *  describing each latency as one of WHAT. */
+    String summary(String what) {
+        return String.format("%d %s: p50 %.3f ms, p90 %.3f ms, "
+                             + "p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                             _count, what, millis(percentile(0.5)),
+                             millis(percentile(0.9)),
+                             millis(percentile(0.99)),
+                             millis(percentile(0.999)), millis(_max));
+    }
+
+    /** Return NANOS in milliseconds. */
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /** Return the number of the bucket counting latencies of NANOS. */
+    private static int index(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (nanos >>> shift);
+    }
+
+    /** Return the largest latency counted in bucket number I. */
+    private static long upperBound(int i) {
+        if (i < 2 * SUB_BUCKETS) {
+            return i;
+        }
+        int shift = i / SUB_BUCKETS - 1;
+        long top = i % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /** Log base 2 of SUB_BUCKETS. */
+    private static final int SUB_BITS = 5;
+
+    /** Number of buckets into which each power of 2 is divided. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Counts of latencies, by bucket. */
+    private final long[] _counts = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+
+    /** Number of latencies recorded. */
+    private long _count;
+
+    /** Largest latency recorded. */
+    private long _max;
+
+}
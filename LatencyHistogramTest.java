@@ -0,0 +1,81 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the LatencyHistogram class.
+ *  @author Frederick Fan
+ */
+public class LatencyHistogramTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(0.5));
+        assertEquals(0, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void checkExactBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 63; nanos >= 0; nanos -= 1) {
+            histogram.record(nanos);
+        }
+        histogram.record(-5);
+        assertEquals(65, histogram.count());
+        assertEquals(63, histogram.max());
+        assertEquals(0, histogram.percentile(0.01));
+        assertEquals(31, histogram.percentile(0.5));
+        assertEquals(63, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void checkPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long k = 1000; k >= 1; k -= 1) {
+            histogram.record(k * 1000 + 7);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_007, histogram.max());
+        for (double p : new double[] { 0.001, 0.1, 0.5, 0.9, 0.99, 0.999 }) {
+            long exact = Math.round(p * 1000) * 1000 + 7;
+            long reported = histogram.percentile(p);
+            assertTrue(msg("checkPercentiles", "p%s: %d below %d",
+                           p, reported, exact), reported >= exact);
+            assertTrue(msg("checkPercentiles", "p%s: %d too far above %d",
+                           p, reported, exact),
+                       reported <= exact + exact / 32);
+        }
+        assertEquals(1_000_007, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void checkBucketEdges() {
+        for (long nanos : new long[] { 64, 65, 127, 128, 1L << 40,
+                                       (1L << 40) + 1, Long.MAX_VALUE }) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(nanos);
+            histogram.record(nanos);
+            assertEquals(nanos, histogram.percentile(0.5));
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(64);
+        histogram.record(1000);
+        long p50 = histogram.percentile(0.5);
+        assertTrue(msg("checkBucketEdges", "p50 %d", p50),
+                   p50 >= 64 && p50 <= 66);
+    }
+
+}
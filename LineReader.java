@@ -0,0 +1,132 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+import static enigma.EnigmaException.*;
+
+/** A source of lines of text that keeps track of its position, in bytes,
+ *  in the underlying stream, so that a later run can start again from the
+ *  same place.  Lines end with "\n", "\r\n", or "\r"; a last line need not
+ *  end with any of them.  Unlike a Scanner, a LineReader never reads more
+ *  of its stream than it needs to supply the lines asked for.
+ *  @author Frederick Fan
+ */
+class LineReader {
+
+    /** A reader of the lines of IN, decoded with the default charset,
+     *  where the first byte of IN is at position OFFSET. */
+    LineReader(InputStream in, long offset) {
+        _in = in;
+        _offset = offset;
+        _charset = Charset.defaultCharset();
+    }
+
+    /** A reader of the lines of IN, decoded with the default charset. */
+    LineReader(InputStream in) {
+        this(in, 0);
+    }
+
+    /** Return true iff there is another line to read. */
+    boolean hasNextLine() {
+        return fill();
+    }
+
+    /** Return the next line, without its line terminator. */
+    String nextLine() {
+        if (!fill()) {
+            throw new NoSuchElementException("no more lines");
+        }
+        int len = 0;
+        while (fill()) {
+            byte b = _buffer[_pos];
+            _pos += 1;
+            _offset += 1;
+            if (b == '\n') {
+                break;
+            } else if (b == '\r') {
+                if (fill() && _buffer[_pos] == '\n') {
+                    _pos += 1;
+                    _offset += 1;
+                }
+                break;
+            }
+            if (len == _line.length) {
+                byte[] line = new byte[2 * len];
+                System.arraycopy(_line, 0, line, 0, len);
+                _line = line;
+            }
+            _line[len] = b;
+            len += 1;
+        }
+        return new String(_line, 0, len, _charset);
+    }
+
+    /** Return the position in the underlying stream of the start of the
+     *  next line. */
+    long offset() {
+        return _offset;
+    }
+
+    /** Close my stream. */
+    void close() {
+        try {
+            _in.close();
+        } catch (IOException excp) {
+            /* Ignore: nothing more will be read. */
+        }
+    }
+
+    /** Make sure there is unread input in _buffer, if possible, blocking
+     *  only if there is none.  Return false at end of input. */
+    private boolean fill() {
+        if (_pos < _limit) {
+            return true;
+        }
+        if (_eof) {
+            return false;
+        }
+        try {
+            _limit = _in.read(_buffer);
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+        _pos = 0;
+        if (_limit <= 0) {
+            _limit = 0;
+            _eof = true;
+            return false;
+        }
+        return true;
+    }
+
+    /** Size of my input buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Source of my bytes. */
+    private final InputStream _in;
+
+    /** Encoding of my input. */
+    private final Charset _charset;
+
+    /** Buffered bytes of _in. */
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+
+    /** Position of the next unread byte in _buffer. */
+    private int _pos;
+
+    /** Number of valid bytes in _buffer. */
+    private int _limit;
+
+    /** True once _in has reached its end. */
+    private boolean _eof;
+
+    /** Bytes of the line being read. */
+    private byte[] _line = new byte[256];
+
+    /** Position in _in of the next unread byte. */
+    private long _offset;
+
+}
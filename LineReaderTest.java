@@ -0,0 +1,105 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the LineReader class.
+ *  @author Frederick Fan
+ */
+public class LineReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Text with every kind of line terminator, an empty line, and a last
+     *  line with no terminator. */
+    static final String TEXT = "AB\r\nC\rD\n\r\nEF\r\r\nG";
+
+    /** The lines of TEXT. */
+    static final String[] LINES = { "AB", "C", "D", "", "EF", "", "G" };
+
+    /** The offsets of the starts of the lines following each of LINES. */
+    static final long[] OFFSETS = { 4, 6, 8, 10, 13, 15, 16 };
+
+    /** A stream of the bytes of a string that supplies at most one byte
+     *  per read, so that every line terminator straddles two reads. */
+    static class Trickle extends ByteArrayInputStream {
+
+        /** A stream of the bytes of TEXT. */
+        Trickle(String text) {
+            super(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    /** Check that READER supplies LINES, each followed by the offset in
+     *  OFFSETS plus START, and then ends. */
+    private void checkLines(LineReader reader, long start) {
+        for (int i = 0; i < LINES.length; i += 1) {
+            assertTrue(msg("checkLines", "line %d missing", i),
+                       reader.hasNextLine());
+            assertEquals(msg("checkLines", "line %d", i),
+                         LINES[i], reader.nextLine());
+            assertEquals(msg("checkLines", "offset after line %d", i),
+                         start + OFFSETS[i], reader.offset());
+        }
+        assertFalse(reader.hasNextLine());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkOffsets() {
+        checkLines(new LineReader(new ByteArrayInputStream(
+                       TEXT.getBytes(StandardCharsets.UTF_8))), 0);
+        checkLines(new LineReader(new Trickle(TEXT)), 0);
+    }
+
+    @Test
+    public void checkResume() {
+        LineReader reader = new LineReader(new Trickle(TEXT.substring(8)),
+                                           8);
+        assertEquals(8, reader.offset());
+        assertEquals("", reader.nextLine());
+        assertEquals(10, reader.offset());
+        assertEquals("EF", reader.nextLine());
+        assertEquals(13, reader.offset());
+    }
+
+    @Test
+    public void checkLongLine() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 100_000; i += 1) {
+            line.append((char) ('A' + i % 26));
+        }
+        LineReader reader = new LineReader(new ByteArrayInputStream(
+            (line + "\r\nZ").getBytes(StandardCharsets.UTF_8)));
+        assertEquals(line.toString(), reader.nextLine());
+        assertEquals(line.length() + 2, reader.offset());
+        assertEquals("Z", reader.nextLine());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void checkEnd() {
+        LineReader reader = new LineReader(new ByteArrayInputStream(
+            "AB\n".getBytes(StandardCharsets.UTF_8)));
+        reader.nextLine();
+        reader.nextLine();
+    }
+
+}
@@ -0,0 +1,206 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Checks and classifies whole lines of input in a single pass, so that
+ *  converting them afterwards needs no per-character checks.  Each
+ *  character is classified through a table precomputed from the alphabet
+ *  as in the alphabet, whitespace (which is dropped), passthrough (which
+ *  is copied to the output unconverted), or illegal.  Punctuation passes
+ *  through only when requested; otherwise it is illegal.
+ *  @author Frederick Fan
+ */
+class LineValidator {
+
+    /** Class of characters in the alphabet. */
+    static final byte IN_ALPHABET = 0;
+    /** Class of whitespace characters. */
+    static final byte WHITESPACE = 1;
+    /** Class of characters copied through unconverted. */
+    static final byte PASSTHROUGH = 2;
+    /** Class of all other characters. */
+    static final byte ILLEGAL = 3;
+
+    /** A validator for lines of characters in ALPHABET.  Punctuation that
+     *  is not in ALPHABET passes through iff PASSTHROUGH. */
+    LineValidator(Alphabet alphabet, boolean passthrough) {
+        _passthrough = passthrough;
+        int limit = ASCII_LIMIT;
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            limit = Math.max(limit, alphabet.toChar(i) + 1);
+        }
+        _classes = new byte[limit];
+        _indices = new int[limit];
+        _symbols = new char[alphabet.size()];
+        for (int c = 0; c < limit; c += 1) {
+            _indices[c] = -1;
+            if (Character.isWhitespace(c)) {
+                _classes[c] = WHITESPACE;
+            } else if (passthrough && isPunctuation(c)) {
+                _classes[c] = PASSTHROUGH;
+            } else {
+                _classes[c] = ILLEGAL;
+            }
+        }
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            char c = alphabet.toChar(i);
+            _symbols[i] = c;
+            _classes[c] = IN_ALPHABET;
+            _indices[c] = i;
+        }
+    }
+
+    /** Return true iff C is a punctuation character. */
+    private static boolean isPunctuation(int c) {
+        switch (Character.getType(c)) {
+        case Character.CONNECTOR_PUNCTUATION:
+        case Character.DASH_PUNCTUATION:
+        case Character.START_PUNCTUATION:
+        case Character.END_PUNCTUATION:
+        case Character.INITIAL_QUOTE_PUNCTUATION:
+        case Character.FINAL_QUOTE_PUNCTUATION:
+        case Character.OTHER_PUNCTUATION:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Return the class of C. */
+    byte classOf(char c) {
+        if (c < _classes.length) {
+            return _classes[c];
+        }
+        return Character.isWhitespace(c) ? WHITESPACE : ILLEGAL;
+    }
+
+    /** Return true iff punctuation passes through my lines. */
+    boolean passthrough() {
+        return _passthrough;
+    }
+
+    /** Return the index of C in my alphabet, or -1 if it is not in it. */
+    int index(char c) {
+        return c < _indices.length ? _indices[c] : -1;
+    }
+
+    /** Classify the characters of LINE, which is line number LINENUM of
+     *  its input, recording the alphabet indices of its letters in
+     *  letters() and where passthrough characters fall among them.
+     *  Returns the number of letters.  Reports the line and column of the
+     *  first illegal character, if any. */
+    int validate(String line, int lineNum) {
+        int n = line.length();
+        if (_line.length < n) {
+            _line = new char[n];
+        }
+        line.getChars(0, n, _line, 0);
+        return validate(_line, 0, n, lineNum);
+    }
+
+    /** Validate the line held in LINE[START .. END-1], as for
+     *  validate(String, int). */
+    int validate(char[] line, int start, int end, int lineNum) {
+        int n = end - start;
+        if (_letters.length < n) {
+            _letters = new int[n];
+            _layout = new int[n];
+        }
+        _count = 0;
+        _length = 0;
+        for (int i = start; i < end; i += 1) {
+            char c = line[i];
+            switch (classOf(c)) {
+            case IN_ALPHABET:
+                _letters[_count] = _indices[c];
+                _count += 1;
+                _layout[_length] = -1;
+                _length += 1;
+                break;
+            case WHITESPACE:
+                break;
+            case PASSTHROUGH:
+                _layout[_length] = c;
+                _length += 1;
+                break;
+            default:
+                throw error("illegal character '%c' at line %d, column %d",
+                            c, lineNum, i - start + 1);
+            }
+        }
+        return _count;
+    }
+
+    /** Return the alphabet indices of the letters of the last line
+     *  validated.  Only the first validate() elements are meaningful;
+     *  they may be replaced, for example by their conversions, before
+     *  calling assemble(). */
+    int[] letters() {
+        return _letters;
+    }
+
+    /** Return the last line validated, less whitespace, with its letters
+     *  replaced by the characters of my alphabet indexed by letters(). */
+    String assemble() {
+        if (_chars.length < _length) {
+            _chars = new char[_layout.length];
+        }
+        assemble(_chars, 0);
+        return new String(_chars, 0, _length);
+    }
+
+    /** Return the number of characters in the last line validated, less
+     *  whitespace. */
+    int width() {
+        return _length;
+    }
+
+    /** Store the last line validated, as for assemble(), in OUT starting
+     *  at POS, which must leave room for width() characters. */
+    void assemble(char[] out, int pos) {
+        for (int i = 0, k = 0; i < _length; i += 1) {
+            if (_layout[i] < 0) {
+                out[pos + i] = _symbols[_letters[k]];
+                k += 1;
+            } else {
+                out[pos + i] = (char) _layout[i];
+            }
+        }
+    }
+
+    /** Characters below this limit always have table entries. */
+    private static final int ASCII_LIMIT = 128;
+
+    /** True iff punctuation passes through my lines. */
+    private final boolean _passthrough;
+
+    /** Class of each character, by character code. */
+    private final byte[] _classes;
+
+    /** Alphabet index of each character (-1 if none), by character
+     *  code. */
+    private final int[] _indices;
+
+    /** The characters of my alphabet, by index. */
+    private final char[] _symbols;
+
+    /** Alphabet indices of the letters of the last line validated. */
+    private int[] _letters = new int[0];
+
+    /** Number of letters in the last line validated. */
+    private int _count;
+
+    /** For each non-whitespace character of the last line validated, -1
+     *  for a letter, or the character itself if it passes through. */
+    private int[] _layout = new int[0];
+
+    /** Number of non-whitespace characters in the last line validated. */
+    private int _length;
+
+    /** Buffer for the characters of a line given as a String. */
+    private char[] _line = new char[0];
+
+    /** Buffer for assemble(). */
+    private char[] _chars = new char[0];
+
+}
@@ -0,0 +1,122 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the LineValidator class and the
+ *  grouping of its output.
+ *  @author Frederick Fan
+ */
+public class LineValidatorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Line separator. */
+    static final String NL = System.lineSeparator();
+
+    /** Return MSG grouped by Main.formatMessageLine with a validator for
+     *  upper-case letters, passing punctuation through iff PASSTHROUGH. */
+    private String format(String msg, boolean passthrough) {
+        StringBuilder result = new StringBuilder();
+        Main.formatMessageLine(msg, new LineValidator(UPPER, passthrough),
+                               result);
+        return result.toString();
+    }
+
+    /** Return the output of Main converting INPUT with the configuration
+     *  default.conf and options OPTIONS. */
+    private String run(String input, String... options) throws IOException {
+        File in = File.createTempFile("validator", ".in");
+        File out = File.createTempFile("validator", ".out");
+        in.deleteOnExit();
+        out.deleteOnExit();
+        Files.write(in.toPath(), input.getBytes(StandardCharsets.UTF_8));
+        String[] args = new String[options.length + 3];
+        System.arraycopy(options, 0, args, 0, options.length);
+        args[options.length] = "default.conf";
+        args[options.length + 1] = in.getPath();
+        args[options.length + 2] = out.getPath();
+        Main main = new Main(args);
+        try {
+            main.process();
+        } finally {
+            main.close();
+        }
+        return new String(Files.readAllBytes(out.toPath()),
+                          StandardCharsets.UTF_8);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkValidate() {
+        LineValidator validator = new LineValidator(UPPER, true);
+        assertEquals(10, validator.validate(" HELLO, WORLD!\t", 3));
+        assertEquals(12, validator.width());
+        assertEquals(UPPER.toInt('H'), validator.letters()[0]);
+        assertEquals(UPPER.toInt('D'), validator.letters()[9]);
+        assertEquals("HELLO,WORLD!", validator.assemble());
+        try {
+            validator.validate("HELLO, W0RLD", 7);
+            fail("illegal character not reported");
+        } catch (EnigmaException excp) {
+            assertEquals("illegal character '0' at line 7, column 9",
+                         excp.getMessage());
+        }
+        try {
+            new LineValidator(UPPER, false).validate("AB, C", 2);
+            fail("punctuation accepted without passthrough");
+        } catch (EnigmaException excp) {
+            assertEquals("illegal character ',' at line 2, column 3",
+                         excp.getMessage());
+        }
+    }
+
+    @Test
+    public void checkGroups() {
+        assertEquals("ILBDA AMTAZ " + NL, format("ILBDAAMTAZ", false));
+        assertEquals("ILBDA AM" + NL, format("ILBDAAM", false));
+        assertEquals(NL, format("", true));
+        assertEquals("ILBDA, AMTAZ! " + NL, format("ILBDA,AMTAZ!", true));
+        assertEquals("\"IL-BDA\" AM" + NL, format("\"IL-BDA\"AM", true));
+        assertEquals("...ILBDA... A" + NL, format("...ILBDA...A", true));
+        assertEquals("ILBDA AMTAZ " + NL, format("ILBDAAMTAZ", true));
+    }
+
+    @Test
+    public void checkEngines() throws IOException {
+        String input = "* B BETA I II III AAAA\nHELLO, WORLD!\n\n"
+            + "\"HELLO\" WORLD...\n";
+        String expected = "ILBDA, AMTAZ! " + NL + NL
+            + "\"XTEYN\" TZOMG... " + NL;
+        assertEquals(expected, run(input, "--passthrough"));
+        assertEquals(expected, run(input, "--passthrough", "--pipeline"));
+        assertEquals(expected, run(input, "--passthrough", "--parallel=4"));
+    }
+
+    @Test
+    public void checkConvertLine() {
+        Machine machine = MachineTest.naval();
+        try {
+            machine.convert("FROM HIS SH0ULDER", 12);
+            fail("illegal character not reported");
+        } catch (EnigmaException excp) {
+            assertEquals("illegal character '0' at line 12, column 12",
+                         excp.getMessage());
+        }
+    }
+
+}
@@ -12,16 +12,52 @@ import java.util.Collection;
  */
 class Machine {
 
+    /** Ways of carrying out a conversion. */
+    enum Engine {
+        /** Pass each character through every rotor, forward and back. */
+        DIRECT,
+        /** Keep the composition of the reflector and all but the
+         *  rightmost rotor as a single table, recomposed (from the
+         *  leftmost rotor that moved) only when one of those rotors
+         *  moves, and check for notches only the rotors that have moved.
+         *  Worthwhile when there are many slots and the left-hand rotors
+         *  seldom move. */
+        STACKED,
+        /** Keep the tables of all the slots, the rotor positions, and the
+         *  trips (see Stepping) in a few flat arrays, and convert with
+         *  loops that touch no Rotor objects, specialized for machines of
+         *  4 and 5 slots.  The rotors' positions are brought up to date after
+         *  each conversion. */
+        FLAT
+    }
+
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorCatalog(allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are in
+     *  CATALOG. */
+    Machine(Alphabet alpha, int numRotors, int pawls, RotorCatalog catalog) {
+        this(alpha, numRotors, pawls, catalog, Engine.DIRECT);
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are in
+     *  CATALOG, converting with ENGINE. */
+    Machine(Alphabet alpha, int numRotors, int pawls, RotorCatalog catalog,
+            Engine engine) {
         _alphabet = alpha;
         _numRotors = numRotors;
         _numPawls = pawls;
-        _rotors = allRotors;
-
+        _rotors = catalog;
+        _validator = new LineValidator(alpha, false);
+        setPlugboard(null);
+        _engine = engine;
     }
 
     /** Return the number of rotor slots I have. */
@@ -36,41 +72,190 @@ class Machine {
 
     }
 
+    /** Return the way my rotors drive one another. */
+    Stepping.Model stepping() {
+        return _model;
+    }
+
+    /** Have my rotors drive one another according to MODEL.  The default
+     *  is Stepping.Model.ENIGMA. */
+    void setStepping(Stepping.Model model) {
+        _model = model;
+        if (_stepping != null) {
+            _stepping = new Stepping(model, rotorMapping, _numPawls);
+            _flatForward = null;
+            rotorsChanged();
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the engine I use to convert characters. */
+    Engine engine() {
+        return _engine;
+    }
+
+    /** Use ENGINE to convert characters. */
+    void setEngine(Engine engine) {
+        _engine = engine;
+        _flatForward = null;
+        rotorsChanged();
+    }
+
+    /** Return the catalog of the rotors available to me. */
+    RotorCatalog catalog() {
+        return _rotors;
+    }
+
+    /** Return all the rotors available to me. */
+    Collection<Rotor> allRotors() {
+        return _rotors.rotors();
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
-     *  Initially, all rotors are set at their 0 setting. */
+     *  Initially, all rotors are set at their 0 setting, with ring
+     *  setting 0. */
 
     void insertRotors(String[] rotors) {
         rotorMapping = new ArrayList<Rotor>(_numRotors);
         for (int i = 0; i < rotors.length; i++) {
-            for (Rotor rotor: _rotors) {
-                if (rotor.name().equalsIgnoreCase(rotors[i])) {
-                    rotor.set(0);
-                    rotorMapping.add(rotor);
-                }
+            Rotor rotor = _rotors.get(rotors[i]);
+            if (rotor == null) {
+                throw new EnigmaException("No rotor named " + rotors[i]);
             }
+            rotor.set(0);
+            rotor.setRing(0);
+            rotorMapping.add(rotor);
         }
         if (rotorMapping.size() != numRotors()) {
             throw new EnigmaException("Number of Rotors no match");
         }
+        _stepping = new Stepping(_model, rotorMapping, _numPawls);
+        _flatForward = null;
+        rotorsChanged();
 
     }
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 upper-case letters. The first letter refers to the
      *  leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
+        if (setting.length() != rotorMapping.size() - 1) {
+            throw new EnigmaException("Initial setting has wrong length");
+        }
         for (int i = 1; i < rotorMapping.size(); i++) {
-            if (!_alphabet.contains(setting.charAt(i - 1))) {
+            int posn = _validator.index(setting.charAt(i - 1));
+            if (posn < 0) {
                 throw new EnigmaException("Initial setting out of bound");
             }
-            rotorMapping.get(i).set(setting.charAt(i - 1));
+            rotorMapping.get(i).set(posn);
         }
+        rotorsChanged();
     }
 
-    /** Set the plugboard to PLUGBOARD. */
+    /** Return the current positions of my rotors, leftmost first, not
+     *  counting the reflector. */
+    int[] positions() {
+        int[] result = new int[rotorMapping.size() - 1];
+        for (int i = 1; i < rotorMapping.size(); i++) {
+            result[i - 1] = rotorMapping.get(i).setting();
+        }
+        return result;
+    }
+
+    /** Set the positions of my rotors to POSNS, as returned by
+     *  positions(). */
+    void setPositions(int[] posns) {
+        if (posns.length != rotorMapping.size() - 1) {
+            throw new EnigmaException("Wrong number of rotor positions");
+        }
+        for (int i = 1; i < rotorMapping.size(); i++) {
+            if (posns[i - 1] < 0 || posns[i - 1] >= _alphabet.size()) {
+                throw new EnigmaException("Rotor position out of bound");
+            }
+            rotorMapping.get(i).set(posns[i - 1]);
+        }
+        rotorsChanged();
+    }
+
+    /** Set the ring settings of my rotors according to RINGS, which must
+     *  be a string of numRotors()-1 characters of my alphabet, the first
+     *  referring to the leftmost rotor (not counting the reflector).  Ring
+     *  settings are 0 until set. */
+    void setRings(String rings) {
+        if (rings.length() != rotorMapping.size() - 1) {
+            throw new EnigmaException("Ring setting has wrong length");
+        }
+        for (int i = 1; i < rotorMapping.size(); i++) {
+            int ring = _validator.index(rings.charAt(i - 1));
+            if (ring < 0) {
+                throw new EnigmaException("Ring setting out of bound");
+            }
+            rotorMapping.get(i).setRing(ring);
+        }
+        _flatForward = null;
+        rotorsChanged();
+    }
+
+    /** Return a string identifying my state: my stepping model, the
+     *  rotors in my slots, with their positions, ring settings, and a hash
+     *  of their wirings and notches, and my plugboard.  Two machines with
+     *  the same key convert the same messages in the same way, however
+     *  their settings were written, and almost certainly even if their
+     *  rotors were described by different configurations. */
+    String key() {
+        StringBuilder result = new StringBuilder(_model.name()).append(' ');
+        int size = _alphabet.size();
+        for (Rotor rotor : rotorMapping) {
+            CompiledRotor tables = rotor.compiled();
+            int wiring = 1;
+            for (int x = 0; x < size; x += 1) {
+                wiring = HASH_MULTIPLIER * wiring + tables.forward(0, x);
+                wiring = HASH_MULTIPLIER * wiring
+                    + (tables.atNotch(x) ? 1 : 0);
+            }
+            result.append(rotor.name().toUpperCase()).append(' ')
+                .append(rotor.setting()).append(' ').append(rotor.ring())
+                .append(' ').append(Integer.toHexString(wiring))
+                .append(' ');
+        }
+        for (int p : _plugTable) {
+            result.append(p).append(',');
+        }
+        return result.toString();
+    }
+
+    /** Set the plugboard to PLUGBOARD, or to no plugboard if PLUGBOARD
+     *  is null. */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        _plugTable = new int[_alphabet.size()];
+        for (int i = 0; i < _plugTable.length; i += 1) {
+            _plugTable[i] = plugboard == null ? i : plugboard.permute(i);
+        }
+
+    }
 
+    /** Return the character (as an alphabet index) plugged to C, or C if
+     *  it is not plugged. */
+    int plug(int c) {
+        return _plugTable[c];
+    }
+
+    /** Plug C and D together (or, if C == D, unplug C), first unplugging
+     *  whatever each was plugged to.  This changes my plugboard in place,
+     *  without building a Permutation, for searches that try many
+     *  plugboards; the plugboard stays an involution. */
+    void setPlug(int c, int d) {
+        int oldC = _plugTable[c], oldD = _plugTable[d];
+        _plugTable[oldC] = oldC;
+        _plugTable[oldD] = oldD;
+        _plugTable[c] = d;
+        _plugTable[d] = c;
+        _plugboard = null;
     }
 
     /** Returns the result of converting the input character C (as an
@@ -78,76 +263,357 @@ class Machine {
 
      *  the machine. */
     int convert(int c) {
+        if (_engine == Engine.FLAT) {
+            _single[0] = c;
+            convertFlat(_single, 1);
+            return _single[0];
+        }
+        step();
+
+        int transProcess = _plugTable[c];
+
+        if (_engine == Engine.STACKED) {
+            Rotor fast = rotorMapping.get(_numRotors - 1);
+            transProcess = fast.convertForward(transProcess);
+            transProcess = stack()[transProcess];
+            transProcess = fast.convertBackward(transProcess);
+            return _plugTable[transProcess];
+        }
 
-        boolean[] checkNotch = new boolean[numRotors()];
         for (int i = _numRotors - 1; i >= 0; i--) {
-            if (rotorMapping.get(i).atNotch()) {
-                checkNotch[i] = true;
+            transProcess = rotorMapping.get(i).convertForward(transProcess);
+        }
+
+
+        for (int j = 1; j < _numRotors; j++) {
+            transProcess = rotorMapping.get(j).convertBackward(transProcess);
+        }
+
+
+        return _plugTable[transProcess];
+    }
+
+    /** Advance my rotors as for one keystroke, without converting
+     *  anything.  The rotors that move are looked up in _stepping from
+     *  _trips, which is brought up to date only for the rotors that
+     *  moved. */
+    private void step() {
+        Stepping stepping = _stepping;
+        if (!_tripsValid) {
+            _trips = 0;
+            for (int k = 1; k < _numRotors; k += 1) {
+                _trips |= stepping.trips(k, rotorMapping.get(k).setting());
             }
+            _tripsValid = true;
         }
+        long moves = stepping.advance(_trips);
+        _trips &= ~moves;
+        int moved = _numRotors;
+        for (long m = moves; m != 0; m &= m - 1) {
+            moved = _numRotors - 1 - Long.numberOfTrailingZeros(m);
+            Rotor rotor = rotorMapping.get(moved);
+            rotor.advance();
+            _trips |= stepping.trips(moved, rotor.setting());
+        }
+        _stackValid = Math.min(_stackValid, moved);
+    }
 
-        Rotor first = rotorMapping.get(_numRotors - 1);
-        first.advance();
-        for (int i = _numRotors - 1; i >= 1; i--) {
-            Rotor rotorFront = rotorMapping.get(i);
-            Rotor rotorBehind = rotorMapping.get(i - 1);
+    /** Advance my rotors as for COUNT keystrokes, without converting
+     *  anything.  This is how far the machine would be after converting
+     *  COUNT characters, found at a fraction of the cost. */
+    void skip(long count) {
+        for (long k = 0; k < count; k += 1) {
+            step();
+        }
+    }
 
-            if (checkNotch[i] && rotorBehind.rotates()) {
-                rotorBehind.advance();
-                if (!rotorFront.equals(first)) {
-                    rotorFront.advance();
+    /** Record that my rotors may have been changed other than by
+     *  stepping, so that nothing cached about them can be trusted. */
+    private void rotorsChanged() {
+        _stackValid = 0;
+        _tripsValid = false;
+    }
+
+    /** Return the table giving, for each character entering the second
+     *  rotor from the right, the character leaving it after passing
+     *  through it, all the rotors to its left, the reflector, and back.
+     *  Only the levels of _stack above those still valid are
+     *  recomposed. */
+    private int[] stack() {
+        int top = _numRotors - 2;
+        int size = _alphabet.size();
+        if (_stack == null || _stack.length != top + 1
+            || _stack[0].length != size) {
+            _stack = new int[top + 1][size];
+            _stackValid = 0;
+        }
+        for (int k = _stackValid; k <= top; k += 1) {
+            Rotor rotor = rotorMapping.get(k);
+            int[] level = _stack[k];
+            if (k == 0) {
+                for (int x = 0; x < size; x += 1) {
+                    level[x] = rotor.convertForward(x);
+                }
+            } else {
+                int[] below = _stack[k - 1];
+                for (int x = 0; x < size; x += 1) {
+                    level[x] =
+                        rotor.convertBackward(below[rotor.convertForward(x)]);
                 }
             }
         }
+        _stackValid = top + 1;
+        return _stack[top];
+    }
 
+    /** Replace each of the first LEN elements of MSG, which must be
+     *  indices in the range 0..alphabet size - 1, with its conversion,
+     *  updating the state of the rotors accordingly.  MSG is assumed to
+     *  have been checked already (see LineValidator), so that no checks
+     *  are made here. */
+    void convert(int[] msg, int len) {
+        Events.Convert event =
+            Events.recording() ? new Events.Convert() : null;
+        if (event != null) {
+            event.begin();
+        }
+        if (_engine == Engine.FLAT) {
+            convertFlat(msg, len);
+        } else {
+            for (int i = 0; i < len; i += 1) {
+                msg[i] = convert(msg[i]);
+            }
+        }
+        if (event != null && event.shouldCommit()) {
+            event.letters = len;
+            event.rotors = _numRotors;
+            event.engine = _engine.name();
+            event.commit();
+        }
+    }
 
-        int transProcess = c;
-        int checkRange = _plugboard.getCycle().indexOf(_alphabet.toChar(c));
-        if (_plugboard != null
-                && checkRange != -1) {
-            transProcess = _plugboard.permute(c);
+    /** Set up the arrays of the FLAT engine: build the tables of my slots
+     *  if they are out of date, and take the positions of my rotors. */
+    private void loadFlat() {
+        int size = _alphabet.size();
+        if (_flatForward == null) {
+            _flatShifted = (long) _numRotors * size * size <= FLAT_LIMIT;
+            int rows = _flatShifted ? size : 1;
+            _flatForward = new int[_numRotors * rows * size];
+            _flatBackward = new int[_numRotors * rows * size];
+            _flatPosns = new int[_numRotors];
+            for (int k = 0; k < _numRotors; k += 1) {
+                Rotor rotor = rotorMapping.get(k);
+                CompiledRotor tables = rotor.compiled();
+                for (int posn = 0; posn < rows; posn += 1) {
+                    int row = (k * rows + posn) * size;
+                    for (int x = 0; x < size; x += 1) {
+                        _flatForward[row + x] = tables.forward(posn, x);
+                        _flatBackward[row + x] = tables.backward(posn, x);
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < _numRotors; k += 1) {
+            _flatPosns[k] = rotorMapping.get(k).setting();
         }
+    }
 
-        for (int i = _numRotors - 1; i >= 0; i--) {
-            Rotor ins = rotorMapping.get(i);
-            transProcess = rotorMapping.get(i).convertForward(transProcess);
+    /** Set the positions of my rotors from the FLAT engine's. */
+    private void storeFlat() {
+        for (int k = 0; k < _numRotors; k += 1) {
+            rotorMapping.get(k).set(_flatPosns[k]);
         }
+        rotorsChanged();
+    }
 
+    /** Convert the first LEN elements of MSG in place with the FLAT
+     *  engine, as for convert(int[], int). */
+    private void convertFlat(int[] msg, int len) {
+        loadFlat();
+        if (_flatShifted && _numRotors == 4) {
+            convertFlat4(msg, len);
+        } else if (_flatShifted && _numRotors == 5) {
+            convertFlat5(msg, len);
+        } else {
+            convertFlatN(msg, len);
+        }
+        storeFlat();
+    }
 
-        for (int j = 1; j < _numRotors; j++) {
-            Rotor ins1 = rotorMapping.get(j);
-            transProcess = rotorMapping.get(j).convertBackward(transProcess);
+    /** Return the position following POSN in an alphabet of SIZE
+     *  characters. */
+    private static int next(int posn, int size) {
+        return posn + 1 == size ? 0 : posn + 1;
+    }
+
+    /** Return the result of passing X through slot K, at position POSN,
+     *  according to TABLE (_flatForward or _flatBackward), in an alphabet
+     *  of SIZE characters. */
+    private int pass(int[] table, int k, int posn, int x, int size) {
+        if (_flatShifted) {
+            return table[(k * size + posn) * size + x];
         }
+        int i = x + posn;
+        if (i >= size) {
+            i -= size;
+        }
+        int r = table[k * size + i] - posn;
+        return r < 0 ? r + size : r;
+    }
 
+    /** Convert the first LEN elements of MSG in place with the FLAT engine,
+     *  for any number of slots. */
+    private void convertFlatN(int[] msg, int len) {
+        int size = _alphabet.size();
+        int last = _numRotors - 1;
+        int[] fwd = _flatForward, bwd = _flatBackward, plug = _plugTable;
+        int[] posns = _flatPosns;
+        Stepping stepping = _stepping;
+        long[] trip = stepping.tripTable();
+        long trips = 0;
+        for (int k = 1; k <= last; k += 1) {
+            trips |= trip[k * size + posns[k]];
+        }
+        for (int m = 0; m < len; m += 1) {
+            long moves = stepping.advance(trips);
+            trips &= ~moves;
+            for (long b = moves; b != 0; b &= b - 1) {
+                int k = last - Long.numberOfTrailingZeros(b);
+                posns[k] = next(posns[k], size);
+                trips |= trip[k * size + posns[k]];
+            }
+            int x = plug[msg[m]];
+            for (int k = last; k >= 0; k -= 1) {
+                x = pass(fwd, k, posns[k], x, size);
+            }
+            for (int k = 1; k <= last; k += 1) {
+                x = pass(bwd, k, posns[k], x, size);
+            }
+            msg[m] = plug[x];
+        }
+    }
 
-        char f = _alphabet.toChar(transProcess);
-        int checkRange1 = _plugboard.getCycle().indexOf(f);
-        if (_plugboard != null
-                && checkRange1 != -1) {
-            transProcess = _plugboard.permute(transProcess);
+    /** Convert the first LEN elements of MSG in place with the FLAT engine
+     *  for a machine of 4 slots whose tables are kept for every position,
+     *  keeping the positions, and the offsets of the rows of the tables
+     *  for them, in locals. */
+    private void convertFlat4(int[] msg, int len) {
+        int n = _alphabet.size();
+        int[] fwd = _flatForward, bwd = _flatBackward, plug = _plugTable;
+        Stepping stepping = _stepping;
+        long[] trip = stepping.tripTable();
+        int p0 = _flatPosns[0], p1 = _flatPosns[1], p2 = _flatPosns[2],
+            p3 = _flatPosns[3];
+        for (int m = 0; m < len; m += 1) {
+            long moves = stepping.advance(trip[n + p1] | trip[2 * n + p2]
+                                          | trip[3 * n + p3]);
+            if ((moves & 1) != 0) {
+                p3 = next(p3, n);
+            }
+            if ((moves & 2) != 0) {
+                p2 = next(p2, n);
+            }
+            if ((moves & 4) != 0) {
+                p1 = next(p1, n);
+            }
+            int o0 = p0 * n, o1 = (n + p1) * n, o2 = (2 * n + p2) * n,
+                o3 = (3 * n + p3) * n;
+            int x = plug[msg[m]];
+            x = fwd[o3 + x];
+            x = fwd[o2 + x];
+            x = fwd[o1 + x];
+            x = fwd[o0 + x];
+            x = bwd[o1 + x];
+            x = bwd[o2 + x];
+            x = bwd[o3 + x];
+            msg[m] = plug[x];
         }
+        _flatPosns[0] = p0;
+        _flatPosns[1] = p1;
+        _flatPosns[2] = p2;
+        _flatPosns[3] = p3;
+    }
 
-        return transProcess;
+    /** Convert the first LEN elements of MSG in place with the FLAT engine
+     *  for a machine of 5 slots, as for convertFlat4. */
+    private void convertFlat5(int[] msg, int len) {
+        int n = _alphabet.size();
+        int[] fwd = _flatForward, bwd = _flatBackward, plug = _plugTable;
+        Stepping stepping = _stepping;
+        long[] trip = stepping.tripTable();
+        int p0 = _flatPosns[0], p1 = _flatPosns[1], p2 = _flatPosns[2],
+            p3 = _flatPosns[3], p4 = _flatPosns[4];
+        for (int m = 0; m < len; m += 1) {
+            long moves = stepping.advance(trip[n + p1] | trip[2 * n + p2]
+                                          | trip[3 * n + p3]
+                                          | trip[4 * n + p4]);
+            if ((moves & 1) != 0) {
+                p4 = next(p4, n);
+            }
+            if ((moves & 2) != 0) {
+                p3 = next(p3, n);
+            }
+            if ((moves & 4) != 0) {
+                p2 = next(p2, n);
+            }
+            if ((moves & 8) != 0) {
+                p1 = next(p1, n);
+            }
+            int o0 = p0 * n, o1 = (n + p1) * n, o2 = (2 * n + p2) * n,
+                o3 = (3 * n + p3) * n, o4 = (4 * n + p4) * n;
+            int x = plug[msg[m]];
+            x = fwd[o4 + x];
+            x = fwd[o3 + x];
+            x = fwd[o2 + x];
+            x = fwd[o1 + x];
+            x = fwd[o0 + x];
+            x = bwd[o1 + x];
+            x = bwd[o2 + x];
+            x = bwd[o3 + x];
+            x = bwd[o4 + x];
+            msg[m] = plug[x];
+        }
+        _flatPosns[0] = p0;
+        _flatPosns[1] = p1;
+        _flatPosns[2] = p2;
+        _flatPosns[3] = p3;
+        _flatPosns[4] = p4;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        char[] messages = new char[msg.length()];
-        for (int i = 0; i < messages.length; i++) {
-            messages[i] = msg.charAt(i);
-        }
+        return convert(msg, 1);
+    }
 
+    /** Returns the encoding/decoding of MSG, line number LINENUM of its
+     *  input, updating the state of the rotors accordingly.  Errors in
+     *  MSG are reported at line LINENUM. */
+    String convert(String msg, int lineNum) {
+        int len = _validator.validate(msg, lineNum);
+        convert(_validator.letters(), len);
+        return _validator.assemble();
+    }
 
-        for (int j = 0; j < messages.length; j++) {
-            int c = convert(_alphabet.toInt(messages[j]));
-            messages[j] = _alphabet.toChar(c);
+    /** Return a new machine like me, with the same rotors in the same
+     *  positions, plugboard, and engine, that can be used independently
+     *  of me (by another thread, for instance). */
+    Machine copy() {
+        Machine result =
+            new Machine(_alphabet, _numRotors, _numPawls, _rotors);
+        result.rotorMapping = new ArrayList<Rotor>(_numRotors);
+        for (Rotor rotor : rotorMapping) {
+            result.rotorMapping.add(rotor.copy());
         }
-
-        String transMsg = new String(messages);
-
-        return transMsg;
+        result._plugboard = _plugboard;
+        result._plugTable = _plugTable.clone();
+        result._model = _model;
+        result._stepping = _stepping;
+        result.setEngine(_engine);
+        return result;
     }
+
     /** Returns rotorMapping. */
     ArrayList<Rotor> rotorMapping() {
         return rotorMapping;
@@ -159,6 +625,65 @@ class Machine {
     /** Number of rotors. **/
     private Permutation _plugboard;
 
+    /** The plugboard as a table from alphabet indices to alphabet
+     *  indices. */
+    private int[] _plugTable;
+
+    /** Classifies characters of my alphabet. */
+    private final LineValidator _validator;
+
+    /** The engine I use to convert characters. */
+    private Engine _engine;
+
+    /** For the STACKED engine, _stack[K] is the composition of rotors
+     *  0 .. K (K forward, down to the reflector, and back out of K). */
+    private int[][] _stack;
+
+    /** Number of levels of _stack that are up to date. */
+    private int _stackValid;
+
+    /** The way my rotors drive one another. */
+    private Stepping.Model _model = Stepping.Model.ENIGMA;
+
+    /** My stepping model, compiled for the rotors in my slots, or null
+     *  before any are inserted. */
+    private Stepping _stepping;
+
+    /** The mask of the rotors at their trip positions (see Stepping),
+     *  when _tripsValid. */
+    private long _trips;
+
+    /** True iff _trips is up to date. */
+    private boolean _tripsValid;
+
+    /** Multiplier for the hashes of wirings in key(). */
+    private static final int HASH_MULTIPLIER = 31;
+
+    /** Largest number of entries in a table of the FLAT engine holding
+     *  the conversions of every slot at every position. */
+    private static final long FLAT_LIMIT = 1 << 20;
+
+    /** For the FLAT engine, the forward tables of my slots, one after
+     *  another, or null if they must be rebuilt.  If _flatShifted, the
+     *  table of each slot has a row for every position, and otherwise
+     *  only the row for position 0. */
+    private int[] _flatForward;
+
+    /** For the FLAT engine, the inverses of the tables in
+     *  _flatForward. */
+    private int[] _flatBackward;
+
+    /** True iff _flatForward and _flatBackward have a row for every
+     *  position. */
+    private boolean _flatShifted;
+
+    /** For the FLAT engine, the position of the rotor in each slot. */
+    private int[] _flatPosns;
+
+    /** A message of one character, for converting single characters
+     *  with the FLAT engine. */
+    private final int[] _single = new int[1];
+
     /** Total number of rotors. */
     private int _numRotors;
 
@@ -166,7 +691,7 @@ class Machine {
     private int _numPawls;
 
     /** All possible rotors that can be used. */
-    private Collection<Rotor> _rotors;
+    private RotorCatalog _rotors;
 
     /** The arraylist of rotors that are available to use. */
     private ArrayList<Rotor> rotorMapping = new ArrayList<Rotor>(_numRotors);
@@ -0,0 +1,313 @@
+package enigma;
+
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Flow;
+
+import static enigma.EnigmaException.*;
+
+/** A reactive stage that converts streams of characters with a Machine.
+ *  Characters of the machine's alphabet are converted, advancing the
+ *  machine.  Whitespace is copied through unchanged, since a stream has
+ *  no lines to regroup it into, and so is punctuation when passthrough is
+ *  requested, as for Main's --passthrough.  Any other character is an
+ *  error, as in Main: upstream is cancelled, and downstream receives an
+ *  EnigmaException giving the character's offset in the stream in place
+ *  of the output not yet delivered.  Incoming
+ *  chunks, however small, are collected into batches of a fixed size, so
+ *  that downstream sees few, full buffers, and upstream is asked for
+ *  chunks only while there is downstream demand or free buffer space.
+ *
+ *  Buffers passed to onNext, in either direction, belong to their sender:
+ *  they are valid only until onNext returns, after which the sender may
+ *  reuse them.  Subscribers that need the characters later must copy
+ *  them.
+ *  @author Frederick Fan
+ */
+class MachineProcessor implements Flow.Processor<CharBuffer, CharBuffer> {
+
+    /** A processor that converts with MACHINE, which must already be set
+     *  up, emitting batches of BATCHSIZE characters, and holding at most
+     *  about BUFFERS batches that downstream has not yet requested.
+     *  Punctuation is copied through iff PASSTHROUGH. */
+    MachineProcessor(Machine machine, int batchSize, int buffers,
+                     boolean passthrough) {
+        _machine = machine;
+        _batchSize = batchSize;
+        _buffers = buffers;
+        _validator = new LineValidator(machine.alphabet(), passthrough);
+        _symbols = new char[machine.alphabet().size()];
+        for (int i = 0; i < _symbols.length; i += 1) {
+            _symbols[i] = machine.alphabet().toChar(i);
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        synchronized (this) {
+            if (_downstream == null) {
+                _downstream = subscriber;
+                subscriber = null;
+            }
+        }
+        if (subscriber != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+            subscriber.onError(new IllegalStateException(
+                "a MachineProcessor allows only one subscriber"));
+            return;
+        }
+        _downstream.onSubscribe(new Downstream());
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (_upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(CharBuffer chunk) {
+        Flow.Subscription cancel = null;
+        synchronized (this) {
+            if (_completed) {
+                return;
+            }
+            _outstanding -= 1;
+            while (chunk.hasRemaining()) {
+                if (_current == null) {
+                    _current = _free.isEmpty()
+                        ? CharBuffer.allocate(_batchSize) : _free.pop();
+                }
+                char c = chunk.get();
+                if (_validator.classOf(c) == LineValidator.ILLEGAL) {
+                    _ready.clear();
+                    _error = error("illegal character '%c' at offset %d",
+                                   c, _offset);
+                    _completed = true;
+                    cancel = _upstream;
+                    break;
+                }
+                int k = _validator.index(c);
+                _current.put(k < 0 ? c : _symbols[_machine.convert(k)]);
+                _offset += 1;
+                if (!_current.hasRemaining()) {
+                    _current.flip();
+                    _ready.add(_current);
+                    _current = null;
+                }
+            }
+        }
+        if (cancel != null) {
+            cancel.cancel();
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable err) {
+        synchronized (this) {
+            if (_completed) {
+                return;
+            }
+            _ready.clear();
+            _error = err;
+            _completed = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            if (_completed) {
+                return;
+            }
+            if (_current != null && _current.position() > 0) {
+                _current.flip();
+                _ready.add(_current);
+                _current = null;
+            }
+            _completed = true;
+        }
+        drain();
+    }
+
+    /** Deliver ready batches for which there is demand, signal completion
+     *  when everything has been delivered, and request more input when
+     *  there is room for it.  Only one thread drains at a time; a thread
+     *  that finds another draining leaves it a note to look again. */
+    private void drain() {
+        synchronized (this) {
+            if (_draining) {
+                _missed = true;
+                return;
+            }
+            _draining = true;
+        }
+        while (true) {
+            CharBuffer batch = null;
+            Flow.Subscription request = null;
+            long amount = 0;
+            boolean finish = false;
+            synchronized (this) {
+                if (_downstream == null || _cancelled) {
+                    _draining = false;
+                    return;
+                }
+                if (_demand > 0 && !_ready.isEmpty()) {
+                    batch = _ready.poll();
+                    _demand -= 1;
+                } else if (_ready.isEmpty() && _completed) {
+                    if (_finished) {
+                        _draining = false;
+                        return;
+                    }
+                    _finished = finish = true;
+                } else if (_upstream != null && !_completed
+                           && _outstanding == 0
+                           && (_demand > 0 || _ready.size() < _buffers)) {
+                    request = _upstream;
+                    amount = PREFETCH;
+                    _outstanding = PREFETCH;
+                } else if (_missed) {
+                    _missed = false;
+                    continue;
+                } else {
+                    _draining = false;
+                    return;
+                }
+            }
+            if (batch != null) {
+                _downstream.onNext(batch);
+                synchronized (this) {
+                    batch.clear();
+                    _free.push(batch);
+                }
+            } else if (request != null) {
+                request.request(amount);
+            } else if (finish) {
+                if (_error != null) {
+                    _downstream.onError(_error);
+                } else {
+                    _downstream.onComplete();
+                }
+            }
+        }
+    }
+
+    /** The subscription through which my subscriber controls me. */
+    private class Downstream implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                Flow.Subscription upstream;
+                synchronized (MachineProcessor.this) {
+                    upstream = _upstream;
+                }
+                if (upstream != null) {
+                    upstream.cancel();
+                }
+                onError(new IllegalArgumentException(
+                    "non-positive subscription request"));
+                return;
+            }
+            synchronized (MachineProcessor.this) {
+                _demand += n;
+                if (_demand < 0) {
+                    _demand = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription upstream;
+            synchronized (MachineProcessor.this) {
+                _cancelled = true;
+                upstream = _upstream;
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+    }
+
+    /** Number of chunks requested from upstream at a time. */
+    private static final long PREFETCH = 16;
+
+    /** The machine doing the conversion. */
+    private final Machine _machine;
+
+    /** Number of characters in a full batch. */
+    private final int _batchSize;
+
+    /** Number of full batches I hold before I stop requesting input. */
+    private final int _buffers;
+
+    /** Maps characters to alphabet indices. */
+    private final LineValidator _validator;
+
+    /** The characters of the machine's alphabet, by index. */
+    private final char[] _symbols;
+
+    /** Source of my input, once subscribed. */
+    private Flow.Subscription _upstream;
+
+    /** Recipient of my output, once subscribed. */
+    private Flow.Subscriber<? super CharBuffer> _downstream;
+
+    /** Batch being filled, or null. */
+    private CharBuffer _current;
+
+    /** Full batches waiting for demand. */
+    private final ArrayDeque<CharBuffer> _ready = new ArrayDeque<>();
+
+    /** Batches available for reuse. */
+    private final ArrayDeque<CharBuffer> _free = new ArrayDeque<>();
+
+    /** Number of batches requested by downstream and not yet sent. */
+    private long _demand;
+
+    /** Number of chunks requested from upstream and not yet received. */
+    private long _outstanding;
+
+    /** True once upstream has completed or failed. */
+    private boolean _completed;
+
+    /** Number of characters converted or copied so far. */
+    private long _offset;
+
+    /** The failure reported by upstream, or found in its input, if
+     *  any. */
+    private Throwable _error;
+
+    /** True once downstream has been told of completion or failure. */
+    private boolean _finished;
+
+    /** True once downstream has cancelled. */
+    private boolean _cancelled;
+
+    /** True while some thread is in drain(). */
+    private boolean _draining;
+
+    /** True if drain() was called while another thread was draining. */
+    private boolean _missed;
+
+}
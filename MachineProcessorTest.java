@@ -0,0 +1,272 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the MachineProcessor class.
+ *  @author Frederick Fan
+ */
+public class MachineProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A subscriber that collects the characters it receives, requesting
+     *  only as many chunks as it is told to. */
+    static class Collector implements Flow.Subscriber<CharBuffer> {
+
+        /** A subscriber that requests INITIAL chunks when subscribed. */
+        Collector(long initial) {
+            _initial = initial;
+        }
+
+        /** Request N more chunks. */
+        void request(long n) {
+            Flow.Subscription subscription;
+            synchronized (this) {
+                _demand += n;
+                subscription = _subscription;
+            }
+            subscription.request(n);
+        }
+
+        /** Cancel my subscription. */
+        void cancel() {
+            _subscription.cancel();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (this) {
+                _subscription = subscription;
+            }
+            if (_initial > 0) {
+                request(_initial);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(CharBuffer chunk) {
+            if (_demand == 0) {
+                _overrun = true;
+            }
+            _demand -= 1;
+            _chunks += 1;
+            _text.append(chunk);
+        }
+
+        @Override
+        public synchronized void onError(Throwable err) {
+            _error = err;
+            _done.countDown();
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            _completed = true;
+            _done.countDown();
+        }
+
+        /** Wait until I have been told of completion or failure. */
+        void await() throws InterruptedException {
+            assertTrue("no completion", _done.await(4, TimeUnit.SECONDS));
+        }
+
+        /** Return the characters received so far. */
+        synchronized String text() {
+            return _text.toString();
+        }
+
+        /** Return the number of chunks received so far. */
+        synchronized int chunks() {
+            return _chunks;
+        }
+
+        /** Return true iff I have been sent more chunks than I asked
+         *  for. */
+        synchronized boolean overrun() {
+            return _overrun;
+        }
+
+        /** Return true iff I have been told of completion. */
+        synchronized boolean completed() {
+            return _completed;
+        }
+
+        /** Return the failure I have been told of, if any. */
+        synchronized Throwable error() {
+            return _error;
+        }
+
+        /** Number of chunks to request when subscribed. */
+        private final long _initial;
+
+        /** My subscription. */
+        private Flow.Subscription _subscription;
+
+        /** Chunks requested and not yet received. */
+        private long _demand;
+
+        /** Number of chunks received. */
+        private int _chunks;
+
+        /** True iff more chunks arrived than were requested. */
+        private boolean _overrun;
+
+        /** True iff completed. */
+        private boolean _completed;
+
+        /** The failure reported, if any. */
+        private Throwable _error;
+
+        /** Characters received. */
+        private final StringBuilder _text = new StringBuilder();
+
+        /** Released on completion or failure. */
+        private final CountDownLatch _done = new CountDownLatch(1);
+    }
+
+    /** A subscription recording what is asked of it, through which the
+     *  tests feed a processor directly. */
+    static class Upstream implements Flow.Subscription {
+
+        @Override
+        public synchronized void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+        }
+
+        /** Total number of chunks requested. */
+        long requested;
+
+        /** True once cancelled. */
+        boolean cancelled;
+    }
+
+    /** Return a processor converting with the naval machine in batches of
+     *  4, holding at most 2 unrequested batches, subscribed to UPSTREAM
+     *  and subscribed to by DOWNSTREAM.  Punctuation passes through iff
+     *  PASSTHROUGH. */
+    private MachineProcessor processor(Upstream upstream,
+                                       Collector downstream,
+                                       boolean passthrough) {
+        MachineProcessor result =
+            new MachineProcessor(MachineTest.naval(), 4, 2, passthrough);
+        result.subscribe(downstream);
+        result.onSubscribe(upstream);
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkDemand() {
+        Upstream upstream = new Upstream();
+        Collector collector = new Collector(1);
+        MachineProcessor processor = processor(upstream, collector, false);
+        assertTrue(upstream.requested > 0);
+        processor.onNext(CharBuffer.wrap("HELLO WORLD"));
+        assertEquals(1, collector.chunks());
+        collector.request(5);
+        assertEquals(2, collector.chunks());
+        processor.onComplete();
+        assertEquals(3, collector.chunks());
+        assertTrue(collector.completed());
+        assertFalse(collector.overrun());
+        Machine machine = MachineTest.naval();
+        String expected = machine.convert("HELLO") + " "
+            + machine.convert("WORLD");
+        assertEquals(expected, collector.text());
+    }
+
+    @Test
+    public void checkBackpressure() {
+        Upstream upstream = new Upstream();
+        Collector collector = new Collector(0);
+        MachineProcessor processor = processor(upstream, collector, false);
+        long requested = upstream.requested;
+        for (long k = 0; k < requested; k += 1) {
+            processor.onNext(CharBuffer.wrap("ABCD"));
+        }
+        assertEquals(0, collector.chunks());
+        assertEquals(requested, upstream.requested);
+        collector.request(requested + 1);
+        assertEquals(requested, collector.chunks());
+        assertTrue(upstream.requested > requested);
+        assertFalse(collector.overrun());
+    }
+
+    @Test
+    public void checkIllegalCharacter() {
+        Upstream upstream = new Upstream();
+        Collector collector = new Collector(10);
+        MachineProcessor processor = processor(upstream, collector, false);
+        processor.onNext(CharBuffer.wrap("HELLO, WORLD"));
+        assertTrue(collector.error() instanceof EnigmaException);
+        assertTrue(upstream.cancelled);
+        assertFalse(collector.completed());
+        upstream = new Upstream();
+        collector = new Collector(10);
+        processor = processor(upstream, collector, true);
+        processor.onNext(CharBuffer.wrap("HELLO, WORLD"));
+        processor.onComplete();
+        assertTrue(collector.completed());
+        Machine machine = MachineTest.naval();
+        assertEquals(machine.convert("HELLO") + ", "
+                     + machine.convert("WORLD"), collector.text());
+    }
+
+    @Test
+    public void checkError() {
+        Upstream upstream = new Upstream();
+        Collector collector = new Collector(0);
+        MachineProcessor processor = processor(upstream, collector, false);
+        processor.onNext(CharBuffer.wrap("HELLO"));
+        IOException failure = new IOException("disk on fire");
+        processor.onError(failure);
+        processor.onComplete();
+        assertSame(failure, collector.error());
+        assertFalse(collector.completed());
+        assertEquals(0, collector.chunks());
+    }
+
+    @Test
+    public void checkCancel() {
+        Upstream upstream = new Upstream();
+        Collector collector = new Collector(10);
+        MachineProcessor processor = processor(upstream, collector, false);
+        processor.onNext(CharBuffer.wrap("ABCD"));
+        collector.cancel();
+        assertTrue(upstream.cancelled);
+        processor.onNext(CharBuffer.wrap("EFGH"));
+        processor.onComplete();
+        assertEquals(1, collector.chunks());
+        assertFalse(collector.completed());
+    }
+
+    @Test
+    public void checkSecondSubscriber() {
+        Upstream upstream = new Upstream();
+        MachineProcessor processor =
+            processor(upstream, new Collector(1), false);
+        Collector second = new Collector(1);
+        processor.subscribe(second);
+        assertTrue(second.error() instanceof IllegalStateException);
+    }
+
+}
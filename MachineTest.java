@@ -0,0 +1,261 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Frederick Fan
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with the naval rotors, set up with reflector B and
+     *  rotors Beta, III, IV, and I at AXLE, with plugboard (YF) (ZH). */
+    static Machine naval() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        String[][] moving = {
+            { "I", "Q" }, { "II", "E" }, { "III", "V" }, { "IV", "J" },
+            { "V", "Z" },
+        };
+        for (String[] desc : moving) {
+            rotors.add(new MovingRotor(desc[0],
+                                       new Permutation(NAVALA.get(desc[0]),
+                                                       UPPER),
+                                       desc[1]));
+        }
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(NAVALA.get("Beta"),
+                                                  UPPER)));
+        rotors.add(new Reflector("B",
+                                 new Permutation(NAVALA.get("B"), UPPER)));
+        Machine machine = new Machine(UPPER, 5, 3, rotors);
+        machine.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        machine.setRotors("AXLE");
+        machine.setPlugboard(new Permutation("(YF) (ZH)", UPPER));
+        return machine;
+    }
+
+    /** Return the positions of the rotors of MACHINE as a string of
+     *  upper-case letters, leftmost first. */
+    static String posns(Machine machine) {
+        StringBuilder result = new StringBuilder();
+        for (int p : machine.positions()) {
+            result.append((char) ('A' + p));
+        }
+        return result.toString();
+    }
+
+    /** Return where the rotors Beta, I, II, and III of a machine with
+     *  PAWLS pawls, stepping by MODEL, are after one keystroke from
+     *  POSNS. */
+    static String step(Stepping.Model model, int pawls, String posns) {
+        Machine machine = new Machine(UPPER, 5, pawls, naval().allRotors());
+        machine.setStepping(model);
+        machine.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        machine.setRotors(posns);
+        machine.skip(1);
+        return posns(machine);
+    }
+
+    /** Cycles of the M3's reflector B (not the thin reflector B of the
+     *  naval rotors). */
+    static final String UKWB =
+        "(AY) (BR) (CU) (DH) (EQ) (FS) (GL) (IP) (JX) (KN) (MO) (TZ) (VW)";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkConvert() {
+        Machine machine = naval();
+        machine.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        machine.setRotors("AAAA");
+        machine.setPlugboard(null);
+        assertEquals("ILBDAAMTAZ", machine.convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void checkStackedEngine() {
+        Machine direct = naval();
+        Machine stacked = naval();
+        stacked.setEngine(Machine.Engine.STACKED);
+        for (int i = 0; i < 20000; i += 1) {
+            int c = (i * 7 + i / 26) % 26;
+            assertEquals(msg("checkStackedEngine", "wrong conversion at %d", i),
+                         direct.convert(c), stacked.convert(c));
+        }
+        assertArrayEquals(direct.positions(), stacked.positions());
+        stacked.setRotors("ZDQV");
+        direct.setRotors("ZDQV");
+        assertEquals(direct.convert("HIAWATHA"), stacked.convert("HIAWATHA"));
+    }
+
+    @Test
+    public void checkFlatEngine() {
+        Machine direct = naval();
+        Machine flat = naval();
+        flat.setEngine(Machine.Engine.FLAT);
+        int[] text = new int[20000];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = (i * 7 + i / 26) % 26;
+        }
+        int[] expected = text.clone();
+        direct.convert(expected, expected.length);
+        flat.convert(text, text.length);
+        assertArrayEquals(expected, text);
+        assertArrayEquals(direct.positions(), flat.positions());
+        assertEquals(direct.convert(3), flat.convert(3));
+        Machine copy = flat.copy();
+        copy.skip(100);
+        direct.skip(100);
+        assertEquals(direct.convert("HIAWATHA"), copy.convert("HIAWATHA"));
+        direct = new Machine(UPPER, 4, 3, naval().allRotors());
+        flat = new Machine(UPPER, 4, 3, naval().allRotors());
+        flat.setEngine(Machine.Engine.FLAT);
+        for (Machine machine : new Machine[] { direct, flat }) {
+            machine.insertRotors(new String[] { "B", "III", "IV", "I" });
+            machine.setRotors("QDV");
+        }
+        assertEquals(direct.convert("FROMHISSHOULDER"),
+                     flat.convert("FROMHISSHOULDER"));
+    }
+
+    @Test
+    public void checkStepping() {
+        Stepping.Model enigma = Stepping.Model.ENIGMA;
+        assertEquals("AADV", step(enigma, 3, "AADU"));
+        assertEquals("AAEW", step(enigma, 3, "AADV"));
+        assertEquals("ABFX", step(enigma, 3, "AAEW"));
+        assertEquals("ABFW", step(enigma, 3, "AAEV"));
+        assertEquals("AAFW", step(enigma, 2, "AAEV"));
+        assertEquals("AAEV", step(enigma, 1, "AAEU"));
+        assertEquals("AAEU", step(enigma, 0, "AAEU"));
+        Stepping.Model odometer = Stepping.Model.ODOMETER;
+        assertEquals("AAEX", step(odometer, 3, "AAEW"));
+        assertEquals("ABFW", step(odometer, 3, "AAEV"));
+        Stepping.Model gear = Stepping.Model.GEAR;
+        assertEquals("AAFV", step(gear, 3, "AAEU"));
+        assertEquals("ABEV", step(gear, 3, "AADU"));
+        for (Stepping.Model model : Stepping.Model.values()) {
+            Machine direct = naval();
+            Machine flat = naval();
+            direct.setStepping(model);
+            flat.setStepping(model);
+            flat.setEngine(Machine.Engine.FLAT);
+            int[] text = new int[20000];
+            int[] expected = text.clone();
+            direct.convert(expected, expected.length);
+            flat.convert(text, text.length);
+            assertArrayEquals(expected, text);
+            assertArrayEquals(direct.positions(), flat.positions());
+        }
+    }
+
+    @Test
+    public void checkFlatThenSkip() {
+        for (Machine.Engine engine : Machine.Engine.values()) {
+            Machine direct = naval();
+            Machine other = naval();
+            other.setEngine(engine);
+            for (Machine machine : new Machine[] { direct, other }) {
+                machine.insertRotors(new String[] {
+                    "B", "Beta", "I", "II", "III" });
+                machine.setRotors("AADU");
+                machine.skip(1);
+                machine.convert(new int[] { 0 }, 1);
+                machine.skip(1);
+            }
+            assertEquals(msg("checkFlatThenSkip", "%s engine", engine),
+                         posns(direct), posns(other));
+        }
+    }
+
+    @Test
+    public void checkSetPlug() {
+        Machine table = naval();
+        table.setPlugboard(null);
+        table.setPlug(0, 4);
+        table.setPlug(4, 0);
+        table.setPlug(2, 3);
+        table.setPlug(3, 5);
+        table.setPlug(1, 6);
+        table.setPlug(1, 1);
+        table.setPlug(24, 5);
+        assertEquals(4, table.plug(0));
+        assertEquals(2, table.plug(2));
+        assertEquals(6, table.plug(6));
+        assertEquals(24, table.plug(5));
+        Machine cycles = naval();
+        cycles.setPlugboard(new Permutation("(AE) (DX)", UPPER));
+        table.setPlug(3, 23);
+        table.setPlug(5, 5);
+        table.setPlug(24, 24);
+        assertEquals(cycles.convert("FROMHISSHOULDER"),
+                     table.convert("FROMHISSHOULDER"));
+    }
+
+    @Test
+    public void checkRings() {
+        String[][] vectors = {
+            { "AAA", "BDZGO" }, { "BBB", "EWTYX" },
+        };
+        ArrayList<Rotor> rotors = new ArrayList<>(naval().allRotors());
+        rotors.add(new Reflector("UKWB", new Permutation(UKWB, UPPER)));
+        for (Machine.Engine engine : Machine.Engine.values()) {
+            for (String[] vector : vectors) {
+                Machine machine = new Machine(UPPER, 4, 3, rotors);
+                machine.setEngine(engine);
+                Main.setUp(machine, "* UKWB I II III AAA " + vector[0]);
+                assertEquals(msg("checkRings", "%s, rings %s", engine,
+                                 vector[0]),
+                             vector[1], machine.convert("AAAAA"));
+            }
+        }
+        Machine machine = naval();
+        machine.setRings("AAAA");
+        String plain = machine.convert("FROMHISSHOULDER");
+        machine.setRotors("AXLE");
+        assertEquals(plain, machine.convert("FROMHISSHOULDER"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRingsLength() {
+        naval().setRings("AAA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRingsLengthSetUp() {
+        Main.setUp(naval(), "* B Beta III IV I AXLE AAAAA (YF) (ZH)");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkReflectorRing() {
+        new Reflector("B", new Permutation(NAVALA.get("B"), UPPER))
+            .setRing(1);
+    }
+
+    @Test
+    public void checkCopyAndSkip() {
+        Machine machine = naval();
+        Machine copy = machine.copy();
+        String cipher = machine.convert("FROMHISSHOULDERHIAWATHA");
+        assertEquals(cipher, copy.convert("FROMHISSHOULDERHIAWATHA"));
+        Machine skipped = naval();
+        skipped.skip(5000 + cipher.length());
+        int[] text = new int[5000];
+        machine.convert(text, text.length);
+        assertArrayEquals(machine.positions(), skipped.positions());
+        assertEquals(machine.convert("TAKEWAY"), skipped.convert("TAKEWAY"));
+    }
+
+}
@@ -2,13 +2,20 @@ package enigma;
 
 
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.function.Function;
 
 import static enigma.EnigmaException.*;
 
@@ -18,17 +25,68 @@ import static enigma.EnigmaException.*;
 public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
-     *  specified by ARGS, where 1 <= ARGS.length <= 3.
-     *  ARGS[0] is the name of a configuration file.
-     *  ARGS[1] is optional; when present, it names an input file
+     *  specified by ARGS, which consists of options (arguments beginning
+     *  with "--") and 1 to 3 file names.
+     *  The first file name is the name of a configuration file.
+     *  The second is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
-     *  input.  ARGS[2] is optional; when present, it names an output
+     *  input.  The third is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  The options are
+     *      --passthrough  Copy punctuation in messages to the output
+     *                     unconverted, rather than reporting an error.
+     *      --checkpoint[=N]  Every N input lines (default 10000), record
+     *                     how far processing has got in the file OUTPUT.ckpt,
+     *                     where OUTPUT is the output file.
+     *      --resume       Resume from the checkpoint in OUTPUT.ckpt, rather
+     *                     than starting from the beginning.
+     *      --engine=E     Convert with engine E: "direct" (the default),
+     *                     "stacked", or "flat" (see Machine.Engine).
+     *      --stepping=S   Have the rotors drive one another by model S:
+     *                     "enigma" (the default), "odometer", or "gear"
+     *                     (see Stepping.Model).
+     *      --parallel[=N]  Convert long messages on all processors, in
+     *                     chunks of about N letters (default 1048576); see
+     *                     ParallelConverter.
+     *      --interactive[=keys]  Convert each line of the standard input
+     *                     as soon as it is complete (or each key as soon
+     *                     as it is typed), after warming up, and report
+     *                     latencies on the standard error; see
+     *                     Interactive.
+     *      --decompress[=F]  Decompress the input, in format F (see
+     *                     Compression.Format; default gzip).  Without
+     *                     this option, an input file ending in .gz is
+     *                     decompressed as gzip, and one ending in .zz or
+     *                     .deflate as zlib.
+     *      --compress[=F]  Likewise, compress the output.
+     *      --pipeline[=N]  Read, convert, and write on separate threads,
+     *                     passing batches of about N characters (default
+     *                     65536); see Pipeline.
+     *      --wait=W       With --pipeline, have threads wait for each other
+     *                     by W: "spin", "yield", or "park" (the default);
+     *                     see RingBuffer.Wait.
+     *      --keystream-cache[=M]  Remember the substitutions made at each
+     *                     position under each key, in at most M megabytes
+     *                     (default 64), and look them up when a key is used
+     *                     again; see KeystreamCache.
+     *      --result-cache[=M]  Remember the conversion of each message
+     *                     line under each key, in at most M megabytes
+     *                     (default 64), and reuse it when the same line is
+     *                     sent under the same key again, reporting hits and
+     *                     misses on the standard error; see ResultCache.
+     *      --result-cache-dir=D  Likewise, and also keep conversions in
+     *                     directory D, for use by later runs. */
     public static void main(String... args) {
         try {
-            new Main(args).process();
+            Main main = new Main(args);
+            try {
+                main.process();
+            } finally {
+                main.close();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -38,37 +96,288 @@ public final class Main {
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        this(args, null);
+    }
+
+    /** Check ARGS and open the necessary files (see comment on main), but
+     *  if MACHINES is not null, take the machine it returns for the name
+     *  of the configuration file in ARGS, rather than reading the file. */
+    Main(String[] args, Function<String, Machine> machines) {
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                setOption(arg);
+            } else {
+                files.add(arg);
+            }
+        }
+        args = files.toArray(new String[files.size()]);
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
+        _files = args;
 
-        _config = getInput(args[0]);
+        if (machines == null) {
+            _config = getInput(args[0]);
+        } else {
+            _machine = machines.apply(args[0]);
+            _alphabet = _machine.alphabet();
+        }
+
+        if (_interactive && (args.length > 1 || _chunkSize > 0
+                             || _resume || _checkpointInterval > 0)) {
+            throw error("--interactive reads the standard input and writes "
+                        + "the standard output, and cannot be used with "
+                        + "input or output files, --parallel or checkpoints");
+        }
+        if (_batchSize > 0 && (_interactive || _chunkSize > 0 || _resume
+                               || _checkpointInterval > 0)) {
+            throw error("--pipeline cannot be used with --interactive, "
+                        + "--parallel, or checkpoints");
+        }
+        if (_cacheMegabytes > 0
+            && (_interactive || _chunkSize > 0 || _batchSize > 0)) {
+            throw error("--keystream-cache cannot be used with "
+                        + "--interactive, --parallel, or --pipeline");
+        }
+        if (_resultDirectory != null && _resultMegabytes == 0) {
+            _resultMegabytes = DEFAULT_CACHE_MEGABYTES;
+        }
+        if (_resultMegabytes > 0
+            && (_interactive || _chunkSize > 0 || _batchSize > 0
+                || _cacheMegabytes > 0)) {
+            throw error("--result-cache cannot be used with --interactive, "
+                        + "--parallel, --pipeline, or --keystream-cache");
+        }
+        if (_inputFormat == null) {
+            _inputFormat = args.length > 1 ? Compression.formatOf(args[1])
+                : Compression.Format.NONE;
+        }
+        if (_outputFormat == null) {
+            _outputFormat = args.length > 2 ? Compression.formatOf(args[2])
+                : Compression.Format.NONE;
+        }
+        if ((_resume || _checkpointInterval > 0)
+            && (_inputFormat != Compression.Format.NONE
+                || _outputFormat != Compression.Format.NONE)) {
+            throw error("checkpoints cannot be used with compressed files");
+        }
+        if (_resume && _checkpointInterval == 0) {
+            _checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        }
+        if (_checkpointInterval > 0) {
+            if (_chunkSize > 0) {
+                throw error("--parallel cannot be used with checkpoints");
+            }
+            if (args.length < 3) {
+                throw error("checkpoints need input and output files");
+            }
+            _checkpointFile = new File(args[2] + ".ckpt");
+            if (_resume) {
+                _resumeFrom = Checkpoint.read(_checkpointFile);
+            }
+        }
 
-        if (args.length > 1) {
-            _input = getInput(args[1]);
+        if (args.length > 1 && _inputFormat != Compression.Format.NONE) {
+            _input = getCompressedInput(args[1]);
+        } else if (args.length > 1) {
+            long start = _resumeFrom == null ? 0 : _resumeFrom.inputOffset();
+            _input = getLineInput(args[1], start);
         } else {
-            _input = new Scanner(System.in);
+            _stdin = new LineReader(Compression.input(System.in,
+                                                      _inputFormat));
+            _input = _stdin;
         }
 
-        if (args.length > 2) {
+        if (args.length > 2 && _checkpointFile != null) {
+            long start = _resumeFrom == null ? 0 : _resumeFrom.outputOffset();
+            _output = getCheckpointedOutput(args[2], start);
+        } else if (args.length > 2) {
             _output = getOutput(args[2]);
+        } else if (_outputFormat != Compression.Format.NONE) {
+            _output =
+                new PrintStream(Compression.output(System.out, _outputFormat));
         } else {
             _output = System.out;
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Return the names of my configuration file, and of my input and
+     *  output files if given, in that order. */
+    String[] files() {
+        return _files;
+    }
+
+    /** Record the option OPTION (see comment on main). */
+    private void setOption(String option) {
+        switch (option) {
+        case "--passthrough":
+            _passthrough = true;
+            break;
+        case "--checkpoint":
+            _checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+            break;
+        case "--resume":
+            _resume = true;
+            break;
+        case "--parallel":
+            _chunkSize = DEFAULT_CHUNK_SIZE;
+            break;
+        case "--decompress":
+            _inputFormat = Compression.Format.GZIP;
+            break;
+        case "--compress":
+            _outputFormat = Compression.Format.GZIP;
+            break;
+        case "--pipeline":
+            _batchSize = DEFAULT_BATCH_SIZE;
+            break;
+        case "--keystream-cache":
+            _cacheMegabytes = DEFAULT_CACHE_MEGABYTES;
+            break;
+        case "--result-cache":
+            _resultMegabytes = DEFAULT_CACHE_MEGABYTES;
+            break;
+        case "--interactive":
+            _interactive = true;
+            break;
+        case "--interactive=keys":
+            _interactive = true;
+            _perKey = true;
+            break;
+        default:
+            if (option.startsWith("--checkpoint=")) {
+                _checkpointInterval = intOption(option);
+            } else if (option.startsWith("--parallel=")) {
+                _chunkSize = intOption(option);
+            } else if (option.startsWith("--pipeline=")) {
+                _batchSize = intOption(option);
+            } else if (option.startsWith("--keystream-cache=")) {
+                _cacheMegabytes = intOption(option);
+            } else if (option.startsWith("--result-cache=")) {
+                _resultMegabytes = intOption(option);
+            } else if (option.startsWith("--result-cache-dir=")) {
+                _resultDirectory = new File(
+                    option.substring("--result-cache-dir=".length()));
+            } else if (option.startsWith("--wait=")) {
+                try {
+                    _wait = RingBuffer.Wait.valueOf(
+                        option.substring("--wait=".length()).toUpperCase());
+                } catch (IllegalArgumentException excp) {
+                    throw error("unknown wait strategy in option %s", option);
+                }
+            } else if (option.startsWith("--decompress=")) {
+                _inputFormat = Compression.format(
+                    option.substring("--decompress=".length()));
+            } else if (option.startsWith("--compress=")) {
+                _outputFormat = Compression.format(
+                    option.substring("--compress=".length()));
+            } else if (option.startsWith("--stepping=")) {
+                _stepping = Stepping.model(
+                    option.substring("--stepping=".length()));
+            } else if (option.startsWith("--engine=")) {
+                try {
+                    _engine = Machine.Engine.valueOf(
+                        option.substring("--engine=".length()).toUpperCase());
+                } catch (IllegalArgumentException excp) {
+                    throw error("unknown engine in option %s", option);
+                }
+            } else {
+                throw error("unknown option %s", option);
+            }
+        }
+    }
+
+    /** Return the positive integer value of OPTION, which has the form
+     *  --NAME=VALUE. */
+    static int intOption(String option) {
+        try {
+            int value =
+                Integer.parseInt(option.substring(option.indexOf('=') + 1));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to report the error. */
+        }
+        throw error("bad value in option %s", option);
+    }
+
+    /** A Main that has no files open, for use by readConfig(String). */
+    private Main() {
+    }
+
+    /** Return an Enigma machine configured from the configuration file
+     *  named NAME, without opening any message files. */
+    static Machine readConfig(String name) {
+        Main main = new Main();
+        main._config = main.getInput(name);
+        return main.readConfig();
+    }
+
+    /** Return the contents of the file named NAME. */
+    private String getInput(String name) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(name)));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a LineReader reading from the file named NAME, starting
+     *  START bytes into it. */
+    private LineReader getLineInput(String name, long start) {
+        try {
+            FileInputStream in = new FileInputStream(name);
+            in.getChannel().position(start);
+            return new LineReader(in, start);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a LineReader reading the file named NAME, decompressed
+     *  according to _inputFormat. */
+    private LineReader getCompressedInput(String name) {
+        try {
+            return new LineReader(
+                Compression.input(new FileInputStream(name), _inputFormat));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a PrintStream writing to the file named NAME, keeping its
+     *  first START bytes and discarding the rest, and record the file in
+     *  _outputFile so that checkpoints can find how much has been
+     *  written. */
+    private PrintStream getCheckpointedOutput(String name, long start) {
         try {
-            return new Scanner(new File(name));
+            try (FileChannel file =
+                 FileChannel.open(Paths.get(name), StandardOpenOption.WRITE,
+                                  StandardOpenOption.CREATE)) {
+                if (file.size() < start) {
+                    throw error("%s is shorter than its checkpoint says",
+                                name);
+                }
+                file.truncate(start);
+            }
+            _outputFile = new FileOutputStream(name, true);
+            return new PrintStream(new BufferedOutputStream(_outputFile));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
+    /** Return a PrintStream writing to the file named NAME, compressed
+     *  according to _outputFormat. */
     private PrintStream getOutput(String name) {
         try {
+            if (_outputFormat != Compression.Format.NONE) {
+                return new PrintStream(
+                    Compression.output(new FileOutputStream(name),
+                                       _outputFormat));
+            }
             return new PrintStream(new File(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
@@ -78,156 +387,224 @@ public final class Main {
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() {
-        Machine enigma1 = readConfig();
-
-        String next = _input.nextLine();
-
-        while (_input.hasNextLine()) {
-            String settings = next;
-
-            if (!next.contains("*")) {
-                throw new EnigmaException("Wrong format of message");
+    void process() {
+        Machine enigma1 = _machine != null ? _machine : readConfig();
+        enigma1.setEngine(_engine);
+        enigma1.setStepping(_stepping);
+        _validator = new LineValidator(_alphabet, _passthrough);
+        if (_interactive) {
+            Interactive console =
+                new Interactive(enigma1, _passthrough, _perKey, _output);
+            console.prewarm();
+            console.run(new InputStreamReader(System.in));
+            if (console.latencies().count() > 0) {
+                System.err.println(console.latencies().summary(
+                                       _perKey ? "keys" : "lines"));
             }
+            return;
+        }
+        if (_batchSize > 0) {
+            new Pipeline(_validator, _batchSize, _wait)
+                .run(enigma1, _input, _output);
+            return;
+        }
 
-
-
-
-
+        String settings = null;
+        if (_resumeFrom != null) {
+            settings = _resumeFrom.settings();
             setUp(enigma1, settings);
-            if (!enigma1.rotorMapping().get(0).reflecting()) {
-                throw new EnigmaException("Reflector first");
-            }
+            enigma1.setPositions(_resumeFrom.positions());
+            _lineNumber = _resumeFrom.lineNumber();
+        }
 
+        KeystreamCache cache = null;
+        KeystreamCache.Stream stream = null;
+        if (_cacheMegabytes > 0) {
+            cache = new KeystreamCache(_alphabet.size(), KEYSTREAM_LENGTH,
+                                       (long) _cacheMegabytes << 20);
+            if (settings != null) {
+                stream = cache.open(enigma1);
+            }
+        }
 
+        ResultCache results = null;
+        String key = null;
+        if (_resultMegabytes > 0) {
+            StringBuilder namespace = new StringBuilder();
+            for (int i = 0; i < _alphabet.size(); i += 1) {
+                namespace.append(_alphabet.toChar(i));
+            }
+            namespace.append(_passthrough ? " passthrough" : "");
+            results = new ResultCache((long) _resultMegabytes << 20,
+                                      _resultDirectory, namespace.toString());
+            if (settings != null) {
+                key = enigma1.key();
+            }
+        }
 
-            next = _input.nextLine().toUpperCase();
-            while (!next.contains("*")) {
-                if (!next.isEmpty()) {
-                    String concateLine = next.replace(" ", "");
-                    String conversion = enigma1.convert(concateLine);
-                    printMessageLine(conversion);
+        ParallelConverter parallel = null;
+        if (_chunkSize > 0) {
+            parallel = new ParallelConverter(
+                _alphabet, _passthrough, _chunkSize,
+                Runtime.getRuntime().availableProcessors(), _output);
+        }
+        try {
+            while (_input.hasNextLine()) {
+                String next = nextLine().toUpperCase();
+                if (next.contains("*")) {
                     if (_input.hasNextLine()) {
-                        next = _input.nextLine().toUpperCase();
-                    } else {
-                        break;
+                        if (parallel != null) {
+                            parallel.endChunk();
+                        }
+                        setUp(enigma1, next);
+                        settings = next;
+                        if (cache != null) {
+                            stream = cache.open(enigma1);
+                        }
+                        if (results != null) {
+                            key = enigma1.key();
+                        }
                     }
-                } else {
-                    _output.println();
+                } else if (settings == null) {
                     if (_input.hasNextLine()) {
-                        next = _input.nextLine().toUpperCase();
+                        throw new EnigmaException("Wrong format of message");
+                    }
+                } else if (parallel != null) {
+                    int len = next.isEmpty() ? 0
+                        : _validator.validate(next, _lineNumber);
+                    parallel.add(enigma1, next, len);
+                } else if (next.isEmpty()) {
+                    _output.println();
+                } else {
+                    Events.Message event =
+                        Events.recording() ? new Events.Message() : null;
+                    if (event != null) {
+                        event.begin();
+                    }
+                    int len = 0;
+                    String lineKey = null;
+                    ResultCache.Result result = null;
+                    if (results != null) {
+                        lineKey = ResultCache.key(key, enigma1, next);
+                        result = results.get(lineKey);
+                    }
+                    if (result != null) {
+                        enigma1.setPositions(result.positions);
+                        printMessageLine(result.output);
                     } else {
-                        break;
+                        len = _validator.validate(next, _lineNumber);
+                        if (stream != null) {
+                            stream.convert(_validator.letters(), len);
+                        } else {
+                            enigma1.convert(_validator.letters(), len);
+                        }
+                        String output = _validator.assemble();
+                        if (results != null) {
+                            results.put(lineKey,
+                                        new ResultCache.Result(
+                                            output, enigma1.positions()));
+                        }
+                        printMessageLine(output);
+                    }
+                    if (event != null && event.shouldCommit()) {
+                        event.line = _lineNumber;
+                        event.letters = len;
+                        event.settingsHash = settings.hashCode();
+                        event.rotors = enigma1.numRotors();
+                        event.commit();
                     }
                 }
+                if (settings != null && _checkpointFile != null
+                    && _lineNumber % _checkpointInterval == 0) {
+                    if (stream != null) {
+                        stream.sync();
+                    }
+                    checkpoint(enigma1, settings);
+                }
             }
-
-        }
-
-    }
-
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-
-
-
-
-    private Machine readConfig() {
-        try {
-            String next = _config.nextLine();
-            String alphabet = next.replace(" ", "");
-            if (alphabet.contains("(")
-                    || alphabet.contains(")")
-                    || alphabet.contains("*")
-                    || alphabet.contains("[0-9]")) {
-                throw new EnigmaException("Wrong message format");
-            }
-
-            if (next.contains("-")) {
-                char q = alphabet.charAt(alphabet.length() - 1);
-                _alphabet = new CharacterRange(alphabet.charAt(0), q);
-            } else {
-                _alphabet = new MixedAlphabet(alphabet);
-            }
-
-
-
-            if (!_config.hasNextInt()) {
-                throw new EnigmaException("Wrong message format");
+        } finally {
+            if (parallel != null) {
+                parallel.finish();
             }
-            int numRotors = _config.nextInt();
-
-
-            if (!_config.hasNextInt()) {
-                throw new EnigmaException("Wrong message format");
+            if (results != null) {
+                System.err.println("result cache: " + results.summary());
             }
-            int numPawls = _config.nextInt();
-
+        }
+        _output.flush();
+        if (_checkpointFile != null) {
+            _checkpointFile.delete();
+        }
+    }
 
-            nextToken = _config.next();
-            while (_config.hasNext()) {
-                _name = "";
-                cycle = "";
-                notches = "";
-                _allrotors.add(readRotor());
+    /** Close my input and output, unless they are the standard input and
+     *  output, and report an error if any output could not be written. */
+    void close() {
+        if (_input != null && _input != _stdin) {
+            _input.close();
+        }
+        if (_output != null && _output != System.out) {
+            _output.close();
+            if (_output.checkError()) {
+                throw error("could not write output");
             }
-            return new Machine(_alphabet, numRotors, numPawls, _allrotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
         }
     }
 
-
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Record in _checkpointFile that all input up to the current line has
+     *  been processed, leaving M in the message set up by SETTINGS. */
+    private void checkpoint(Machine M, String settings) {
+        _output.flush();
+        long written;
         try {
-
-            _name = _name.concat(nextToken);
-
-
-            nextToken = _config.next();
-            notches = notches.concat(nextToken);
-
-
-
-            nextToken = _config.next();
-            while (nextToken.contains("(")) {
-                cycle = cycle.concat(nextToken);
-                if (cycle.charAt(cycle.length() - 1) != ')') {
-                    throw new EnigmaException("Wrong format");
-                }
-                if (!_config.hasNext()) {
-                    break;
-                } else {
-                    nextToken = _config.next();
-                }
-            }
-            Permutation perm = new Permutation(cycle, _alphabet);
-
-
-
-            if (notches.charAt(0) == 'M') {
-                return new MovingRotor(_name, perm, notches.substring(1));
-            } else if (notches.charAt(0) == 'N') {
-                return new FixedRotor(_name, perm);
-            } else {
-                return new Reflector(_name, perm);
-            }
-
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+            _outputFile.getChannel().force(false);
+            written = _outputFile.getChannel().position();
+        } catch (IOException excp) {
+            throw error("could not write output");
         }
+        new Checkpoint(_input.offset(), written, _lineNumber, settings,
+                       M.positions()).write(_checkpointFile);
     }
 
+    /** Return the next line of _input, counting it in _lineNumber. */
+    private String nextLine() {
+        _lineNumber += 1;
+        return _input.nextLine();
+    }
 
+    /** Return an Enigma machine configured from the contents of
+     *  configuration file _config (see ConfigParser). */
+    private Machine readConfig() {
+        Events.Config event =
+            Events.recording() ? new Events.Config() : null;
+        if (event != null) {
+            event.begin();
+        }
+        ConfigParser parser = new ConfigParser(_config);
+        _alphabet = parser.alphabet();
+        if (event != null && event.shouldCommit()) {
+            event.bytes = _config.length();
+            event.rotors = parser.numRotors();
+            event.described = parser.catalog().size();
+            event.commit();
+        }
+        return new Machine(_alphabet, parser.numRotors(), parser.numPawls(),
+                           parser.catalog(), _engine);
+    }
 
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+     *  which must have the format specified in the assignment, optionally
+     *  followed by the rotors' ring settings in the same form as their
+     *  initial positions, before any plugboard cycles. */
+    static void setUp(Machine M, String settings) {
+        Events.SetUp event =
+            Events.recording() ? new Events.SetUp() : null;
+        if (event != null) {
+            event.begin();
+        }
         String[] splitsetting = settings.split(" ");
-        rotors = new String[M.numRotors()];
+        String[] rotors = new String[M.numRotors()];
 
-        if (splitsetting.length - 1 < M.numRotors()) {
+        if (splitsetting.length < M.numRotors() + 2) {
             throw new EnigmaException("Insufficient  settings");
         }
 
@@ -248,59 +625,179 @@ public final class Main {
         M.insertRotors(rotors);
         M.setRotors(splitsetting[M.numRotors() + 1]);
 
+        int plugs = rotors.length + 2;
+        if (plugs < splitsetting.length
+            && !splitsetting[plugs].startsWith("(")) {
+            M.setRings(splitsetting[plugs]);
+            plugs += 1;
+        }
 
         String keySwap = "";
-        for (int i = rotors.length + 2; i < splitsetting.length; i++) {
+        for (int i = plugs; i < splitsetting.length; i++) {
             keySwap = keySwap.concat(splitsetting[i] + " ");
         }
-        Permutation plugboard = new Permutation(keySwap, _alphabet);
+        Permutation plugboard = new Permutation(keySwap, M.alphabet());
         M.setPlugboard(plugboard);
-        String swap = keySwap;
+        if (!M.rotorMapping().get(0).reflecting()) {
+            throw new EnigmaException("Reflector first");
+        }
+        if (event != null && event.shouldCommit()) {
+            event.settingsHash = settings.hashCode();
+            event.rotors = M.numRotors();
+            event.commit();
+        }
 
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
+    /** Print MSG, a line checked by _validator, in groups of five letters
+     *  (except that the last group may have fewer letters). */
     private void printMessageLine(String msg) {
-        int remainder = msg.length() % 5;
-        int divides = msg.length() - remainder;
-        int start = 0;
-        for (int i = 5; i <= divides; i += 5) {
-            _output.print(msg.substring(start, i));
-            _output.print(" ");
-            start += 5;
-        }
-        _output.println(msg.substring(divides, remainder + divides));
+        StringBuilder line = new StringBuilder(msg.length() * 6 / 5 + 2);
+        formatMessageLine(msg, _validator, line);
+        _output.print(line);
+    }
 
+    /** Append MSG to OUT in groups of five letters, each followed by a
+     *  blank, and then the rest of MSG and a line separator.  Only
+     *  characters in the alphabet of VALIDATOR count as letters; any
+     *  passthrough characters stay attached to the letters before them,
+     *  ahead of the blank. */
+    static void formatMessageLine(String msg, LineValidator validator,
+                                  StringBuilder out) {
+        if (!validator.passthrough()) {
+            int remainder = msg.length() % 5;
+            int divides = msg.length() - remainder;
+            int start = 0;
+            for (int i = 5; i <= divides; i += 5) {
+                out.append(msg, start, i);
+                out.append(' ');
+                start += 5;
+            }
+            out.append(msg, divides, remainder + divides);
+        } else {
+            int group = 0;
+            for (int i = 0; i < msg.length(); i += 1) {
+                char c = msg.charAt(i);
+                if (validator.classOf(c) == LineValidator.IN_ALPHABET) {
+                    if (group == 5) {
+                        out.append(' ');
+                        group = 0;
+                    }
+                    group += 1;
+                }
+                out.append(c);
+            }
+            if (group == 5) {
+                out.append(' ');
+            }
+        }
+        out.append(System.lineSeparator());
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private LineReader _input;
+
+    /** Text of the machine configuration. */
+    private String _config;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Names of the configuration, input, and output files, as far as
+     *  given. */
+    private String[] _files;
+
+    /** The machine to use, if not to be configured from _config. */
+    private Machine _machine;
+
+    /** The reader of the standard input, if it is _input. */
+    private LineReader _stdin;
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
-    /** ArrayList for all the rotors available to use. */
-    private ArrayList<Rotor> _allrotors = new ArrayList<Rotor>();
+    /** Checks and classifies the characters of message lines. */
+    private LineValidator _validator;
+
+    /** True iff punctuation passes through messages unconverted. */
+    private boolean _passthrough;
+
+    /** Number of letters in a chunk for --parallel when none is
+     *  given. */
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /** Number of letters in a chunk of a message converted in parallel, or
+     *  0 if messages are converted one line at a time. */
+    private int _chunkSize;
+
+    /** Format of the input. */
+    private Compression.Format _inputFormat;
+
+    /** Format of the output. */
+    private Compression.Format _outputFormat;
+
+    /** Number of characters in a batch for --pipeline when none is
+     *  given. */
+    private static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    /** Number of characters in a batch passed between the stages of a
+     *  Pipeline, or 0 if there is to be no pipeline. */
+    private int _batchSize;
+
+    /** How the threads of a Pipeline wait for each other. */
+    private RingBuffer.Wait _wait = RingBuffer.Wait.PARK;
+
+    /** Size of a cache in megabytes when none is given. */
+    private static final int DEFAULT_CACHE_MEGABYTES = 64;
+
+    /** Number of characters at the start of each message whose
+     *  substitutions are kept in the keystream cache. */
+    private static final int KEYSTREAM_LENGTH = 1 << 16;
+
+    /** Size of the keystream cache in megabytes, or 0 if there is to be
+     *  none. */
+    private int _cacheMegabytes;
+
+    /** Size of the result cache in megabytes, or 0 if there is to be
+     *  none. */
+    private int _resultMegabytes;
+
+    /** Directory of the result cache's disk tier, or null for none. */
+    private File _resultDirectory;
+
+    /** True iff messages are read from a console; see Interactive. */
+    private boolean _interactive;
+
+    /** True iff, with _interactive, each key is converted as it is
+     *  typed. */
+    private boolean _perKey;
+
+    /** Engine with which to convert messages. */
+    private Machine.Engine _engine = Machine.Engine.DIRECT;
+
+    /** The way in which the rotors drive one another. */
+    private Stepping.Model _stepping = Stepping.Model.ENIGMA;
+
+    /** Number of lines read from _input so far. */
+    private int _lineNumber;
+
+    /** Number of input lines between checkpoints when none is given. */
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
 
-    /** Next string which is the Next token of _config. */
-    private String nextToken;
+    /** Number of input lines between checkpoints, or 0 if there are to be
+     *  no checkpoints. */
+    private int _checkpointInterval;
 
-    /** Name of current rotor. */
-    private String _name;
+    /** File holding the latest checkpoint, or null if there are to be no
+     *  checkpoints. */
+    private File _checkpointFile;
 
-    /** String for cycle for readRotor to append. */
-    private String cycle;
+    /** True iff this run resumes from the latest checkpoint. */
+    private boolean _resume;
 
-    /** String for notches for current rotor. */
-    private String notches;
+    /** The checkpoint from which this run resumes, if any. */
+    private Checkpoint _resumeFrom;
 
-    /** Set up rotors that are available to use. */
-    private String[] rotors;
+    /** The output file, when checkpointing. */
+    private FileOutputStream _outputFile;
 }
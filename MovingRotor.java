@@ -18,14 +18,25 @@ class MovingRotor extends Rotor {
 
     }
 
+    /** A rotor like OTHER, sharing its tables. */
+    private MovingRotor(MovingRotor other) {
+        super(other);
+        _notches = other._notches;
+    }
+
     @Override
     boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (this.setting() == alphabet().toInt(_notches.charAt(i))) {
-                return true;
-            }
-        }
-        return false;
+        return compiled().atNotch(setting());
+    }
+
+    @Override
+    String notches() {
+        return _notches;
+    }
+
+    @Override
+    Rotor copy() {
+        return new MovingRotor(this);
     }
 
     @Override
@@ -37,9 +48,7 @@ class MovingRotor extends Rotor {
 
     @Override
     void advance() {
-        /** Question why I cannot use _setting += 1 **/
-        this.set((this.setting() + 1) % (this.permutation().alphabet().size()));
-
+        set(compiled().next(setting()));
     }
 
 
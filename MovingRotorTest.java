@@ -71,5 +71,32 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkCopy() {
+        setRotor("I", NAVALA, "Q");
+        rotor.setRing(3);
+        rotor.set(16);
+        Rotor copy = rotor.copy();
+        assertTrue(copy instanceof MovingRotor);
+        assertSame(rotor.compiled(), copy.compiled());
+        assertEquals("Q", copy.notches());
+        assertEquals(3, copy.ring());
+        assertEquals(16, copy.setting());
+        assertTrue(copy.atNotch());
+        copy.advance();
+        assertEquals(17, copy.setting());
+        assertEquals(16, rotor.setting());
+        Rotor reflector =
+            new Reflector("B", new Permutation(NAVALA.get("B"), UPPER));
+        Rotor reflectorCopy = reflector.copy();
+        assertTrue(reflectorCopy.reflecting());
+        assertSame(reflector.compiled(), reflectorCopy.compiled());
+        Rotor fixed =
+            new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"), UPPER));
+        Rotor fixedCopy = fixed.copy();
+        assertFalse(fixedCopy.rotates() || fixedCopy.reflecting());
+        assertSame(fixed.compiled(), fixedCopy.compiled());
+    }
+
 
 }
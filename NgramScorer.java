@@ -0,0 +1,244 @@
+package enigma;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static enigma.EnigmaException.*;
+
+/** Scores how much a text, given as alphabet indices, looks like the
+ *  language of a training corpus: the sum, over the N-grams (runs of N
+ *  consecutive characters) of the text, of the base-10 logarithm of each
+ *  N-gram's frequency in the corpus.  Higher scores are better.
+ *
+ *  The logarithms are kept in one float array indexed by the N-gram read
+ *  as an N-digit number in base alphabet size, so scoring does no
+ *  allocation and one table lookup per character.  Since a search that
+ *  changes a few characters of a long text at a time (as swapping a pair
+ *  of plugboard letters does) need only rescore the N-grams that overlap
+ *  them, scoreChange does just that.
+ *  @author Frederick Fan
+ */
+class NgramScorer {
+
+    /** A scorer of N-grams in ALPHABET whose logarithmic frequencies are
+     *  LOGS, as described in the class comment. */
+    NgramScorer(Alphabet alphabet, int n, float[] logs) {
+        _size = alphabet.size();
+        _n = n;
+        _logs = logs;
+        if (logs.length != tableSize(_size, n)) {
+            throw error("wrong size of %d-gram table", n);
+        }
+        long stride = 1;
+        for (int i = 1; i < n; i += 1) {
+            stride *= _size;
+        }
+        _stride = (int) stride;
+    }
+
+    /** Return the number of N-grams in an alphabet of SIZE characters, if
+     *  a table of them is of reasonable size. */
+    private static int tableSize(int size, int n) {
+        if (n < 1) {
+            throw error("bad n-gram length %d", n);
+        }
+        long result = 1;
+        for (int i = 0; i < n; i += 1) {
+            result *= size;
+            if (result > MAX_TABLE) {
+                throw error("%d-gram table too large", n);
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return a scorer of N-grams in ALPHABET trained on the text read
+     *  from CORPUS, which is read once, in a single pass.  Letters of
+     *  CORPUS are converted to upper case, and characters not in ALPHABET
+     *  are skipped.  N-grams that never occur get the score of one that
+     *  occurs FLOOR times. */
+    static NgramScorer train(Alphabet alphabet, int n, Reader corpus) {
+        int size = alphabet.size();
+        int[] counts = new int[tableSize(size, n)];
+        LineValidator validator = new LineValidator(alphabet, false);
+        char[] buffer = new char[BUFFER_SIZE];
+        int modulus = counts.length / size;
+        int gram = 0;
+        long letters = 0;
+        long total = 0;
+        try {
+            int len;
+            while ((len = corpus.read(buffer)) >= 0) {
+                for (int i = 0; i < len; i += 1) {
+                    int c = validator.index(buffer[i]);
+                    if (c < 0) {
+                        c = validator.index(Character.toUpperCase(buffer[i]));
+                        if (c < 0) {
+                            continue;
+                        }
+                    }
+                    gram = (gram % modulus) * size + c;
+                    letters += 1;
+                    if (letters >= n) {
+                        counts[gram] += 1;
+                        total += 1;
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not read corpus: %s", excp.getMessage());
+        }
+        if (total == 0) {
+            throw error("corpus has no %d-grams", n);
+        }
+        float[] logs = new float[counts.length];
+        float floor = (float) Math.log10(FLOOR / total);
+        for (int g = 0; g < counts.length; g += 1) {
+            logs[g] = counts[g] == 0 ? floor
+                : (float) Math.log10((double) counts[g] / total);
+        }
+        return new NgramScorer(alphabet, n, logs);
+    }
+
+    /** Return the N of my N-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the logarithmic frequency of the N-gram GRAM, as an index
+     *  into my table. */
+    float log(int gram) {
+        return _logs[gram];
+    }
+
+    /** Return the score of the first LEN characters of TEXT, which are
+     *  alphabet indices. */
+    double score(int[] text, int len) {
+        if (len < _n) {
+            return 0.0;
+        }
+        int gram = 0;
+        for (int i = 0; i < _n - 1; i += 1) {
+            gram = gram * _size + text[i];
+        }
+        double result = 0.0;
+        for (int i = _n - 1; i < len; i += 1) {
+            gram = (gram % _stride) * _size + text[i];
+            result += _logs[gram];
+        }
+        return result;
+    }
+
+    /** Return the change in score of the first LEN characters of TEXT
+     *  caused by changing the COUNT characters at POSITIONS, which are in
+     *  increasing order.  TEXT holds the new characters; the old
+     *  character at POSITIONS[k] was OLD[k].  Only the N-grams that
+     *  overlap a changed position are examined. */
+    double scoreChange(int[] text, int len, int[] positions, int[] old,
+                       int count) {
+        double result = 0.0;
+        int next = 0;
+        for (int k = 0; k < count; k += 1) {
+            int first = Math.max(Math.max(positions[k] - _n + 1, 0), next);
+            int last = Math.min(positions[k], len - _n);
+            for (int start = first; start <= last; start += 1) {
+                int newGram = 0;
+                int oldGram = 0;
+                int j = k;
+                while (j > 0 && positions[j - 1] >= start) {
+                    j -= 1;
+                }
+                for (int i = start; i < start + _n; i += 1) {
+                    int c = text[i];
+                    newGram = newGram * _size + c;
+                    if (j < count && positions[j] == i) {
+                        c = old[j];
+                        j += 1;
+                    }
+                    oldGram = oldGram * _size + c;
+                }
+                result += _logs[newGram] - _logs[oldGram];
+            }
+            next = Math.max(next, last + 1);
+        }
+        return result;
+    }
+
+    /** Print the score of the text in the file named ARGS[3] (or of the
+     *  standard input), in the alphabet of the configuration file named
+     *  ARGS[0], by ARGS[1]-grams trained on the corpus in the file named
+     *  ARGS[2]. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 3 || args.length > 4) {
+                throw error("Usage: java enigma.NgramScorer CONFIG N CORPUS "
+                            + "[TEXT]");
+            }
+            Alphabet alphabet = Main.readConfig(args[0]).alphabet();
+            int n;
+            try {
+                n = Integer.parseInt(args[1]);
+            } catch (NumberFormatException excp) {
+                throw error("bad n-gram length %s", args[1]);
+            }
+            NgramScorer scorer;
+            try (Reader corpus =
+                 new InputStreamReader(new FileInputStream(args[2]))) {
+                scorer = train(alphabet, n, corpus);
+            } catch (IOException excp) {
+                throw error("could not read %s", args[2]);
+            }
+            String text;
+            try {
+                text = new String(args.length == 4
+                                  ? Files.readAllBytes(Paths.get(args[3]))
+                                  : System.in.readAllBytes());
+            } catch (IOException excp) {
+                throw error("could not read text");
+            }
+            LineValidator validator = new LineValidator(alphabet, false);
+            int[] letters = new int[text.length()];
+            int len = 0;
+            for (int i = 0; i < text.length(); i += 1) {
+                int c = validator.index(Character.toUpperCase(text.charAt(i)));
+                if (c >= 0) {
+                    letters[len] = c;
+                    len += 1;
+                }
+            }
+            double score = scorer.score(letters, len);
+            System.out.printf("%.4f (%d letters, %.4f per %d-gram)%n", score,
+                              len, len < n ? 0.0 : score / (len - n + 1), n);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Size of the buffer in which the corpus is read. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Count assumed for N-grams missing from the corpus. */
+    private static final double FLOOR = 0.01;
+
+    /** Largest number of entries in a table. */
+    private static final long MAX_TABLE = 1 << 28;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Length of my N-grams. */
+    private final int _n;
+
+    /** Number of (N-1)-grams. */
+    private final int _stride;
+
+    /** Logarithmic frequencies of N-grams, indexed by N-gram. */
+    private final float[] _logs;
+
+}
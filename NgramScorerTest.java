@@ -0,0 +1,78 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the NgramScorer class.
+ *  @author Frederick Fan
+ */
+public class NgramScorerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small training corpus. */
+    private static final String CORPUS =
+        "Should you ask me, whence these stories?\n"
+        + "Whence these legends and traditions,\n"
+        + "With the odors of the forest,\n"
+        + "With the dew and damp of meadows.";
+
+    /** Return the alphabet indices of the upper-case letters of S. */
+    private int[] letters(String s) {
+        int[] result = new int[s.length()];
+        for (int i = 0; i < s.length(); i += 1) {
+            result[i] = UPPER.toInt(s.charAt(i));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkTraining() {
+        NgramScorer scorer =
+            NgramScorer.train(UPPER, 2, new StringReader(CORPUS));
+        int total = CORPUS.replaceAll("[^A-Za-z]", "").length() - 1;
+        int th = UPPER.toInt('T') * 26 + UPPER.toInt('H');
+        assertEquals(Math.log10(7.0 / total), scorer.log(th), 1e-5);
+        assertEquals(Math.log10(0.01 / total),
+                     scorer.log(UPPER.toInt('Q') * 27), 1e-5);
+        assertEquals(Math.log10(7.0 / total)
+                     + scorer.log(UPPER.toInt('H') * 26 + UPPER.toInt('T')),
+                     scorer.score(letters("THTH"), 3), 1e-4);
+    }
+
+    @Test
+    public void checkScoreChange() {
+        NgramScorer scorer =
+            NgramScorer.train(UPPER, 4, new StringReader(CORPUS));
+        Random random = new Random(61);
+        int[] text = new int[200];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = random.nextInt(26);
+        }
+        int[] positions = { 0, 2, 3, 50, 52, 197, 199 };
+        int[] old = new int[positions.length];
+        double before = scorer.score(text, text.length);
+        for (int k = 0; k < positions.length; k += 1) {
+            old[k] = text[positions[k]];
+            text[positions[k]] = (old[k] + 1 + k) % 26;
+        }
+        assertEquals(scorer.score(text, text.length) - before,
+                     scorer.scoreChange(text, text.length, positions, old,
+                                        positions.length),
+                     1e-3);
+    }
+
+}
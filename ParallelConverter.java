@@ -0,0 +1,199 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** Converts the lines of long messages on several threads.  Consecutive
+ *  lines of a message are gathered into chunks of about a given number of
+ *  letters.  Since a machine's stepping does not depend on what it
+ *  converts, the state of the machine at the start of the next chunk is
+ *  found just by stepping it (Machine.skip) past the letters of the
+ *  current one, which is much cheaper than converting them.  Each chunk
+ *  is then converted, and its output formatted, on a copy of the machine
+ *  in its starting state, while later chunks are gathered.  A single line
+ *  of more than a chunk's worth of letters is split in the same way: each
+ *  piece of a chunk's length is converted on a copy of the machine
+ *  stepped to the piece's start, and the line is formatted once all its
+ *  pieces are done.  Chunks are written in order, so the output is the
+ *  same as converting the lines one at a time.
+ *  @author Frederick Fan
+ */
+class ParallelConverter {
+
+    /** A converter for lines of messages in ALPHABET, passing punctuation
+     *  through iff PASSTHROUGH, in chunks of about CHUNKSIZE letters, on
+     *  THREADS threads, writing to OUTPUT. */
+    ParallelConverter(Alphabet alphabet, boolean passthrough, int chunkSize,
+                      int threads, PrintStream output) {
+        _alphabet = alphabet;
+        _passthrough = passthrough;
+        _chunkSize = chunkSize;
+        _maxPending = 2 * threads;
+        _output = output;
+        _executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "converter");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /** Add LINE, a line of the current message containing LETTERS letters
+     *  (as counted by a LineValidator), to be converted by MACHINE, and
+     *  advance MACHINE past them.  An empty LINE is copied as an empty
+     *  line. */
+    void add(Machine machine, String line, int letters) {
+        if (letters > _chunkSize) {
+            endChunk();
+            addLongLine(machine, line);
+            return;
+        }
+        if (_machine == null) {
+            _machine = machine.copy();
+        }
+        _lines.add(line);
+        _letters += letters;
+        machine.skip(letters);
+        if (_letters >= _chunkSize) {
+            endChunk();
+        }
+    }
+
+    /** End the current chunk, if any, and start it converting.  Lines
+     *  added later start a new chunk, from the state their machine is
+     *  in then. */
+    void endChunk() {
+        if (_machine == null) {
+            return;
+        }
+        while (_pending.size() >= _maxPending) {
+            writeOldest();
+        }
+        Machine machine = _machine;
+        ArrayList<String> lines = _lines;
+        _pending.add(_executor.submit(() -> convert(machine, lines)));
+        _machine = null;
+        _lines = new ArrayList<>();
+        _letters = 0;
+    }
+
+    /** Start converting LINE, which has more than a chunk's worth of
+     *  letters, in pieces of a chunk each, and advance MACHINE past it. */
+    private void addLongLine(Machine machine, String line) {
+        while (_pending.size() >= _maxPending) {
+            writeOldest();
+        }
+        LineValidator validator = new LineValidator(_alphabet, _passthrough);
+        int len = validator.validate(line, 0);
+        int[] letters = validator.letters();
+        ArrayList<CompletableFuture<Void>> pieces = new ArrayList<>();
+        for (int start = 0; start < len; start += _chunkSize) {
+            int from = start;
+            int to = (int) Math.min(len, (long) start + _chunkSize);
+            Machine piece = machine.copy();
+            machine.skip(to - from);
+            pieces.add(CompletableFuture.runAsync(
+                           () -> convert(piece, letters, from, to),
+                           _executor));
+        }
+        _pending.add(CompletableFuture.allOf(
+                         pieces.toArray(new CompletableFuture<?>[0]))
+                     .thenApply(done -> {
+                             StringBuilder result = new StringBuilder();
+                             Main.formatMessageLine(validator.assemble(),
+                                                    validator, result);
+                             return result.toString();
+                         }));
+    }
+
+    /** Convert LETTERS[FROM .. TO-1] in place with MACHINE. */
+    private static void convert(Machine machine, int[] letters, int from,
+                                int to) {
+        int[] piece = new int[to - from];
+        System.arraycopy(letters, from, piece, 0, piece.length);
+        machine.convert(piece, piece.length);
+        System.arraycopy(piece, 0, letters, from, piece.length);
+    }
+
+    /** Convert and write everything added so far, and stop my threads. */
+    void finish() {
+        try {
+            endChunk();
+            while (!_pending.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            _executor.shutdownNow();
+        }
+    }
+
+    /** Wait for the oldest chunk being converted, and write it. */
+    private void writeOldest() {
+        try {
+            _output.print(_pending.poll().get());
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("conversion failed: %s", excp.getCause());
+        } catch (InterruptedException excp) {
+            throw error("conversion interrupted");
+        }
+    }
+
+    /** Return the output for LINES, converted in order by MACHINE. */
+    private String convert(Machine machine, ArrayList<String> lines) {
+        LineValidator validator = new LineValidator(_alphabet, _passthrough);
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                result.append(System.lineSeparator());
+            } else {
+                int len = validator.validate(line, 0);
+                machine.convert(validator.letters(), len);
+                Main.formatMessageLine(validator.assemble(), validator,
+                                       result);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Alphabet of the messages. */
+    private final Alphabet _alphabet;
+
+    /** True iff punctuation passes through messages unconverted. */
+    private final boolean _passthrough;
+
+    /** Number of letters after which a chunk ends. */
+    private final int _chunkSize;
+
+    /** Largest number of chunks converting or awaiting output. */
+    private final int _maxPending;
+
+    /** Destination of the output. */
+    private final PrintStream _output;
+
+    /** Threads on which chunks are converted. */
+    private final ExecutorService _executor;
+
+    /** Output of the chunks started, oldest first. */
+    private final ArrayDeque<Future<String>> _pending = new ArrayDeque<>();
+
+    /** Copy of the machine at the start of the current chunk, or null if
+     *  there is no current chunk. */
+    private Machine _machine;
+
+    /** Lines of the current chunk. */
+    private ArrayList<String> _lines = new ArrayList<>();
+
+    /** Number of letters in the current chunk. */
+    private long _letters;
+
+}
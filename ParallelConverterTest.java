@@ -0,0 +1,86 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ParallelConverter class.
+ *  @author Frederick Fan
+ */
+public class ParallelConverterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the output of converting LINES with the naval machine, in
+     *  chunks of CHUNKSIZE letters on THREADS threads, and check that the
+     *  machine is left past all their letters. */
+    private String convert(int chunkSize, int threads, String... lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream output = new PrintStream(bytes, true);
+        ParallelConverter converter =
+            new ParallelConverter(UPPER, true, chunkSize, threads, output);
+        Machine machine = MachineTest.naval();
+        Machine direct = MachineTest.naval();
+        LineValidator validator = new LineValidator(UPPER, true);
+        for (String line : lines) {
+            int letters = line.isEmpty() ? 0 : validator.validate(line, 0);
+            converter.add(machine, line, letters);
+            direct.skip(letters);
+        }
+        converter.finish();
+        assertArrayEquals(direct.positions(), machine.positions());
+        return bytes.toString();
+    }
+
+    /** Return the output of converting LINES one at a time with the naval
+     *  machine, as Main does. */
+    private String direct(String... lines) {
+        Machine machine = MachineTest.naval();
+        LineValidator validator = new LineValidator(UPPER, true);
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                result.append(System.lineSeparator());
+            } else {
+                int len = validator.validate(line, 0);
+                machine.convert(validator.letters(), len);
+                Main.formatMessageLine(validator.assemble(), validator,
+                                       result);
+            }
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkLongLines() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i += 1) {
+            text.append((char) ('A' + (i * 7 + i / 26) % 26));
+            if (i % 11 == 10) {
+                text.append(i % 3 == 0 ? ", " : " ");
+            }
+        }
+        String[] lines = {
+            "HIAWATHA", text.toString(), "", "FROM HIS SHOULDER", "AB",
+            text.substring(0, 40),
+        };
+        String expected = direct(lines);
+        for (int chunkSize : new int[] { 1, 7, 64, 1000 }) {
+            assertEquals(msg("checkLongLines", "chunks of %d", chunkSize),
+                         expected, convert(chunkSize, 3, lines));
+        }
+    }
+
+}
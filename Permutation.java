@@ -71,7 +71,7 @@ class Permutation {
 
     char permute(char p) {
         char pstart = '(';
-        char result = '*';
+        char result = p;
         if (_cycles.equals("")) {
             return p;
         } else {
@@ -94,7 +94,7 @@ class Permutation {
     /** Return the result of applying the inverse of this permutation to C. */
     int invert(char c) {
         char cend = ')';
-        char result = '*';
+        char result = c;
 
         if (_cycles.equals("")) {
             return c;
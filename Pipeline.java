@@ -0,0 +1,319 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Converts an input stream in three stages, each on its own thread: a
+ *  reader, which reads and upper-cases lines; a converter, which sets up
+ *  the machine and converts and formats messages exactly as Main does;
+ *  and a writer, which writes the results.  The stages pass batches of
+ *  characters, allocated once, through RingBuffers, so that reading and
+ *  writing overlap with converting while the output stays in order.
+ *
+ *  An error in a message stops the reader, but the output of the lines
+ *  before it is written, as by Main, before the error is reported.
+ *  @author Frederick Fan
+ */
+class Pipeline {
+
+    /** Lines of input, upper-cased, one after another. */
+    private static final class InputBatch {
+
+        /** Append LINE. */
+        void add(String line) {
+            int len = line.length();
+            if (_length + len > chars.length) {
+                chars = Arrays.copyOf(chars, 2 * (_length + len));
+            }
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, 2 * count);
+            }
+            line.getChars(0, len, chars, _length);
+            _length += len;
+            ends[count] = _length;
+            count += 1;
+        }
+
+        /** Make me empty. */
+        void clear() {
+            _length = 0;
+            count = 0;
+            end = false;
+        }
+
+        /** Return the number of characters in my lines. */
+        int length() {
+            return _length;
+        }
+
+        /** The characters of the lines. */
+        char[] chars = new char[INITIAL_CHARS];
+
+        /** The end in chars of each line. */
+        int[] ends = new int[INITIAL_LINES];
+
+        /** Number of lines. */
+        int count;
+
+        /** True iff the last of my lines is the last of the input. */
+        boolean end;
+
+        /** Number of characters in chars in use. */
+        private int _length;
+    }
+
+    /** Characters of output. */
+    private static final class OutputBatch {
+
+        /** Make room for LEN more characters. */
+        void reserve(int len) {
+            if (length + len > chars.length) {
+                chars = Arrays.copyOf(chars, 2 * (length + len));
+            }
+        }
+
+        /** Append C, for which there must be room. */
+        void append(char c) {
+            chars[length] = c;
+            length += 1;
+        }
+
+        /** The characters. */
+        char[] chars = new char[INITIAL_CHARS];
+
+        /** Number of characters in chars in use. */
+        int length;
+
+        /** True iff I hold the last of the output. */
+        boolean end;
+    }
+
+    /** A pipeline checking messages with VALIDATOR, passing batches of
+     *  about BATCHSIZE characters between its stages, whose threads wait
+     *  for each other as WAIT says. */
+    Pipeline(LineValidator validator, int batchSize, RingBuffer.Wait wait) {
+        _validator = validator;
+        _batchSize = batchSize;
+        _inputs = new RingBuffer<>(SLOTS, InputBatch::new, wait);
+        _outputs = new RingBuffer<>(SLOTS, OutputBatch::new, wait);
+    }
+
+    /** Convert the lines of INPUT with MACHINE, writing the results to
+     *  OUTPUT, as described in the class comment. */
+    void run(Machine machine, LineReader input, PrintStream output) {
+        Thread reader = new Thread(() -> read(input), "reader");
+        Thread writer = new Thread(() -> write(output), "writer");
+        reader.start();
+        writer.start();
+        convert(machine);
+        try {
+            reader.join();
+            writer.join();
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        }
+        if (_error != null) {
+            throw _error;
+        }
+    }
+
+    /** Record EXCP as the error ending the run, unless there already is
+     *  one, and stop all stages. */
+    private synchronized void fail(RuntimeException excp) {
+        if (_error == null) {
+            _error = excp;
+        }
+        _inputs.abort();
+        _outputs.abort();
+    }
+
+    /** The reader stage: read the lines of INPUT into batches. */
+    private void read(LineReader input) {
+        try {
+            boolean more = input.hasNextLine();
+            while (true) {
+                InputBatch batch = _inputs.claim();
+                if (batch == null) {
+                    return;
+                }
+                batch.clear();
+                while (more && batch.length() < _batchSize) {
+                    batch.add(input.nextLine().toUpperCase());
+                    more = input.hasNextLine();
+                }
+                batch.end = !more;
+                _inputs.publish();
+                if (!more) {
+                    return;
+                }
+            }
+        } catch (RuntimeException excp) {
+            fail(excp);
+        }
+    }
+
+    /** The converter stage: convert the batches of input with MACHINE into
+     *  batches of output. */
+    private void convert(Machine machine) {
+        _out = _outputs.claim();
+        if (_out == null) {
+            return;
+        }
+        _out.length = 0;
+        try {
+            boolean end = false;
+            while (!end) {
+                InputBatch batch = _inputs.take();
+                if (batch == null) {
+                    return;
+                }
+                int start = 0;
+                for (int i = 0; i < batch.count; i += 1) {
+                    _lineNumber += 1;
+                    convertLine(machine, batch.chars, start, batch.ends[i],
+                                batch.end && i == batch.count - 1);
+                    start = batch.ends[i];
+                }
+                end = batch.end;
+                _inputs.release();
+            }
+        } catch (EnigmaException excp) {
+            synchronized (this) {
+                if (_error == null) {
+                    _error = excp;
+                }
+            }
+            _inputs.abort();
+        } catch (RuntimeException excp) {
+            fail(excp);
+            return;
+        }
+        _out.end = true;
+        _outputs.publish();
+    }
+
+    /** Convert the line in LINE[START .. END-1] with MACHINE, as Main
+     *  does, appending the result to _out.  LAST is true iff it is the
+     *  last line of the input. */
+    private void convertLine(Machine machine, char[] line, int start,
+                             int end, boolean last) {
+        boolean settings = false;
+        for (int i = start; i < end && !settings; i += 1) {
+            settings = line[i] == '*';
+        }
+        if (settings) {
+            if (!last) {
+                Main.setUp(machine, new String(line, start, end - start));
+                _setUp = true;
+            }
+        } else if (!_setUp) {
+            if (!last) {
+                throw error("Wrong format of message");
+            }
+        } else {
+            int letters = _validator.validate(line, start, end, _lineNumber);
+            machine.convert(_validator.letters(), letters);
+            int width = _validator.width();
+            if (_line.length < width) {
+                _line = new char[2 * width];
+            }
+            _validator.assemble(_line, 0);
+            _out.reserve(width + width / GROUP + SEPARATOR.length());
+            int group = 0;
+            for (int i = 0; i < width; i += 1) {
+                char c = _line[i];
+                if (_validator.classOf(c) == LineValidator.IN_ALPHABET) {
+                    if (group == GROUP) {
+                        _out.append(' ');
+                        group = 0;
+                    }
+                    group += 1;
+                }
+                _out.append(c);
+            }
+            if (group == GROUP) {
+                _out.append(' ');
+            }
+            for (int i = 0; i < SEPARATOR.length(); i += 1) {
+                _out.append(SEPARATOR.charAt(i));
+            }
+            if (_out.length >= _batchSize) {
+                _outputs.publish();
+                _out = _outputs.claim();
+                if (_out == null) {
+                    throw error("interrupted");
+                }
+                _out.length = 0;
+            }
+        }
+    }
+
+    /** The writer stage: write the batches of output to OUTPUT. */
+    private void write(PrintStream output) {
+        try {
+            while (true) {
+                OutputBatch batch = _outputs.take();
+                if (batch == null) {
+                    return;
+                }
+                if (batch.length > 0) {
+                    output.print(new String(batch.chars, 0, batch.length));
+                }
+                boolean end = batch.end;
+                batch.end = false;
+                _outputs.release();
+                if (end) {
+                    output.flush();
+                    return;
+                }
+            }
+        } catch (RuntimeException excp) {
+            fail(excp);
+        }
+    }
+
+    /** Number of batches each ring buffer holds. */
+    private static final int SLOTS = 8;
+
+    /** Initial capacity of a batch, in characters. */
+    private static final int INITIAL_CHARS = 1 << 12;
+
+    /** Initial capacity of a batch, in lines. */
+    private static final int INITIAL_LINES = 64;
+
+    /** Number of letters in a group of output. */
+    private static final int GROUP = 5;
+
+    /** The line separator written after each line of output. */
+    private static final String SEPARATOR = System.lineSeparator();
+
+    /** Checks and classifies the characters of messages. */
+    private final LineValidator _validator;
+
+    /** Size of a batch, in characters. */
+    private final int _batchSize;
+
+    /** Passes input from the reader to the converter. */
+    private final RingBuffer<InputBatch> _inputs;
+
+    /** Passes output from the converter to the writer. */
+    private final RingBuffer<OutputBatch> _outputs;
+
+    /** The batch of output being filled by the converter. */
+    private OutputBatch _out;
+
+    /** The message line being formatted by the converter. */
+    private char[] _line = new char[0];
+
+    /** Number of the line being converted. */
+    private int _lineNumber;
+
+    /** True once the machine has been set up by a settings line. */
+    private boolean _setUp;
+
+    /** The error that ended the run, or null. */
+    private volatile RuntimeException _error;
+
+}
@@ -0,0 +1,442 @@
+package enigma;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** Recovers the plugboard of a ciphertext, given the rest of its key
+ *  (reflector, rotor order, positions, and ring settings), by
+ *  hill-climbing.  Starting from a random plugboard, each climb tries
+ *  every change that plugs two letters together (unplugging whatever they
+ *  were plugged to) or unplugs a pair, keeping any that makes the
+ *  decryption score better as language (see NgramScorer), until none
+ *  does.  Since a climb can stop on a plugboard that is good only
+ *  locally, many climbs are made from different random starts, spread
+ *  over several threads, and the best plugboard found is reported.
+ *
+ *  Each thread has a machine of its own, set up once, and tries a
+ *  plugboard by changing the machine's plugboard table in place (see
+ *  Machine.setPlug) and decrypting again with the FLAT engine.  Only the
+ *  letters of the decryption that change are rescored.  Restart K uses a
+ *  random generator seeded from the seed and K, so a search gives the
+ *  same result however many threads it runs on.
+ *  @author Frederick Fan
+ */
+class PlugboardSearch {
+
+    /** A plugboard and its score. */
+    static final class Result {
+
+        /** The plugboard PLUGS, as a table of alphabet indices, found by
+         *  restart number RESTART, scoring SCORE. */
+        Result(double score, int[] plugs, int restart) {
+            this.score = score;
+            this.plugs = plugs;
+            this.restart = restart;
+        }
+
+        /** The score. */
+        final double score;
+
+        /** The plugboard. */
+        final int[] plugs;
+
+        /** The number of the restart that found it. */
+        final int restart;
+    }
+
+    /** A search for the plugboard of CIPHERTEXT (alphabet indices), given
+     *  MACHINE, set up with the rest of its key, scoring decryptions with
+     *  SCORER, for plugboards of at most PAIRS pairs, with random starts
+     *  determined by SEED. */
+    PlugboardSearch(Machine machine, int[] ciphertext, NgramScorer scorer,
+                    int pairs, long seed) {
+        _machine = machine;
+        _ciphertext = ciphertext;
+        _scorer = scorer;
+        _pairs = pairs;
+        _seed = seed;
+    }
+
+    /** Climb from RESTARTS random starts on THREADS threads, reporting
+     *  progress on the standard error about once a second, and return the
+     *  best plugboard found. */
+    Result run(int restarts, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        ArrayList<Future<?>> tasks = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int t = 0; t < threads; t += 1) {
+                tasks.add(executor.submit(() -> {
+                    Climber climber = new Climber();
+                    for (int k = next.getAndIncrement(); k < restarts;
+                         k = next.getAndIncrement()) {
+                        climber.climb(k);
+                    }
+                }));
+            }
+            long reported = 0;
+            for (Future<?> task : tasks) {
+                while (true) {
+                    try {
+                        task.get(REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException excp) {
+                        long now = System.nanoTime();
+                        if (now - reported >= REPORT_INTERVAL * MILLION) {
+                            report(start, restarts);
+                            reported = now;
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException excp) {
+            throw error("plugboard search interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("plugboard search failed: %s", excp.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        report(start, restarts);
+        return _best;
+    }
+
+    /** Report on the standard error the progress of a search of RESTARTS
+     *  restarts that started at System.nanoTime() START. */
+    private void report(long start, int restarts) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Result best = _best;
+        System.err.printf("%d of %d restarts, best %s, %.0f plugboards/s%n",
+                          _finished.get(), restarts,
+                          best == null ? "none"
+                          : String.format("%.4f", best.score),
+                          _evaluations.sum() / Math.max(seconds, 1e-9));
+    }
+
+    /** Record RESULT if it is the best so far.  Ties go to the earlier
+     *  restart, so that the result does not depend on timing. */
+    private synchronized void offer(Result result) {
+        Result best = _best;
+        if (best == null || result.score > best.score
+            || (result.score == best.score
+                && result.restart < best.restart)) {
+            _best = result;
+        }
+    }
+
+    /** The state of one thread of the search. */
+    final class Climber {
+
+        /** A climber with a machine of its own. */
+        Climber() {
+            _mach = _machine.copy();
+            _mach.setEngine(Machine.Engine.FLAT);
+            _start = _mach.positions();
+            _size = _mach.alphabet().size();
+            int len = _ciphertext.length;
+            _plain = new int[len];
+            _trial = new int[len];
+            _changed = new int[len];
+            _old = new int[len];
+        }
+
+        /** Climb from the random start of restart number K, and offer the
+         *  result, scored afresh so that the changes summed while climbing
+         *  leave no rounding error. */
+        void climb(int k) {
+            SplittableRandom random = new SplittableRandom(_seed + k);
+            int[] start = new int[_size];
+            for (int c = 0; c < _size; c += 1) {
+                start[c] = c;
+            }
+            int pairs = _pairs == 0 ? 0 : random.nextInt(_pairs + 1);
+            for (int i = 0; i < pairs; i += 1) {
+                int c = random.nextInt(_size), d = random.nextInt(_size);
+                if (start[c] == c && start[d] == d) {
+                    start[c] = d;
+                    start[d] = c;
+                }
+            }
+            setPlugs(start);
+            double score = _scorer.score(_plain, _plain.length);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int c = 0; c < _size; c += 1) {
+                    for (int d = c + 1; d < _size; d += 1) {
+                        double change = tryPlug(c, d);
+                        if (change > EPSILON) {
+                            score += change;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+            score = _scorer.score(_plain, _plain.length);
+            int[] plugs = new int[_size];
+            for (int c = 0; c < _size; c += 1) {
+                plugs[c] = _mach.plug(c);
+            }
+            offer(new Result(score, plugs, k));
+            _finished.incrementAndGet();
+        }
+
+        /** Plug C and D together, or unplug them if they are plugged
+         *  together, if the plugboard would still have at most _pairs
+         *  pairs, and keep the change if it improves the score of the
+         *  decryption.  Return the change in score if it is kept, and
+         *  otherwise 0. */
+        double tryPlug(int c, int d) {
+            int oldC = _mach.plug(c), oldD = _mach.plug(d);
+            if (oldC == d) {
+                _mach.setPlug(c, c);
+            } else if (oldC == c && oldD == d && pairs() >= _pairs) {
+                return 0.0;
+            } else {
+                _mach.setPlug(c, d);
+            }
+            decrypt(_trial);
+            int count = 0;
+            for (int i = 0; i < _trial.length; i += 1) {
+                if (_trial[i] != _plain[i]) {
+                    _changed[count] = i;
+                    _old[count] = _plain[i];
+                    count += 1;
+                }
+            }
+            double change =
+                _scorer.scoreChange(_trial, _trial.length, _changed, _old,
+                                    count);
+            if (change > EPSILON) {
+                int[] tmp = _plain;
+                _plain = _trial;
+                _trial = tmp;
+                return change;
+            }
+            _mach.setPlug(c, oldC);
+            _mach.setPlug(d, oldD);
+            return 0.0;
+        }
+
+        /** Set my machine's plugboard to PLUGS, a table of alphabet
+         *  indices that is its own inverse, and decrypt the ciphertext
+         *  with it. */
+        void setPlugs(int[] plugs) {
+            for (int c = 0; c < _size; c += 1) {
+                _mach.setPlug(c, plugs[c]);
+            }
+            decrypt(_plain);
+        }
+
+        /** Return the character plugged to C on my machine. */
+        int plug(int c) {
+            return _mach.plug(c);
+        }
+
+        /** Return the decryption with my machine's current plugboard. */
+        int[] plain() {
+            return _plain;
+        }
+
+        /** Return the number of pairs on my machine's plugboard. */
+        private int pairs() {
+            int result = 0;
+            for (int c = 0; c < _size; c += 1) {
+                if (_mach.plug(c) > c) {
+                    result += 1;
+                }
+            }
+            return result;
+        }
+
+        /** Set TEXT to the decryption of the ciphertext with my machine's
+         *  current plugboard. */
+        private void decrypt(int[] text) {
+            _mach.setPositions(_start);
+            System.arraycopy(_ciphertext, 0, text, 0, text.length);
+            _mach.convert(text, text.length);
+            _evaluations.increment();
+        }
+
+        /** My machine. */
+        private final Machine _mach;
+
+        /** The positions of its rotors at the start of the ciphertext. */
+        private final int[] _start;
+
+        /** Size of the alphabet. */
+        private final int _size;
+
+        /** The decryption with the current plugboard. */
+        private int[] _plain;
+
+        /** The decryption with a plugboard being tried. */
+        private int[] _trial;
+
+        /** Positions at which _trial differs from _plain. */
+        private final int[] _changed;
+
+        /** The characters of _plain at those positions. */
+        private final int[] _old;
+    }
+
+    /** Return the plugboard PLUGS, a table of indices in ALPHABET, as
+     *  cycles in the form used in settings lines. */
+    static String cycles(int[] plugs, Alphabet alphabet) {
+        StringBuilder result = new StringBuilder();
+        for (int c = 0; c < plugs.length; c += 1) {
+            if (plugs[c] > c) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append('(').append(alphabet.toChar(c))
+                    .append(alphabet.toChar(plugs[c])).append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Search for the plugboard of the ciphertext in the file named
+     *  ARGS[K + 2], whose key apart from the plugboard is given by the
+     *  settings line ARGS[K + 3] (any plugboard in it is ignored), for a
+     *  machine described by the configuration file named ARGS[K], scoring
+     *  decryptions with n-grams trained on the corpus in the file named
+     *  ARGS[K + 1].  ARGS[0 .. K-1] are options.  Prints the best
+     *  plugboard's score, the settings line with that plugboard, and the
+     *  decryption.  The options are
+     *      --threads=N    Climb on N threads (default: the number of
+     *                     processors).
+     *      --restarts=N   Climb from N random starts (default 100).
+     *      --pairs=N      Allow at most N pairs of plugs (default 10).
+     *      --ngram=N      Score by N-grams (default 3).
+     *      --seed=S       Seed the random starts with S (default 1). */
+    public static void main(String... args) {
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            int restarts = DEFAULT_RESTARTS;
+            int pairs = DEFAULT_PAIRS;
+            int n = DEFAULT_N;
+            long seed = 1;
+            int k;
+            for (k = 0; k < args.length && args[k].startsWith("--");
+                 k += 1) {
+                String option = args[k];
+                if (option.startsWith("--threads=")) {
+                    threads = Main.intOption(option);
+                } else if (option.startsWith("--restarts=")) {
+                    restarts = Main.intOption(option);
+                } else if (option.startsWith("--pairs=")) {
+                    pairs = option.equals("--pairs=0") ? 0
+                        : Main.intOption(option);
+                } else if (option.startsWith("--ngram=")) {
+                    n = Main.intOption(option);
+                } else if (option.startsWith("--seed=")) {
+                    seed = Main.intOption(option);
+                } else {
+                    throw error("unknown option %s", option);
+                }
+            }
+            if (args.length - k != 4) {
+                throw error("Usage: java enigma.PlugboardSearch [OPTIONS] "
+                            + "CONFIG CORPUS CIPHERTEXT SETTINGS");
+            }
+            Machine machine = Main.readConfig(args[k]);
+            Alphabet alphabet = machine.alphabet();
+            NgramScorer scorer;
+            try (Reader corpus =
+                 new InputStreamReader(new FileInputStream(args[k + 1]))) {
+                scorer = NgramScorer.train(alphabet, n, corpus);
+            } catch (IOException excp) {
+                throw error("could not read %s", args[k + 1]);
+            }
+            int[] ciphertext =
+                KeySearch.readCiphertext(args[k + 2], machine);
+            List<String> fields =
+                List.of(args[k + 3].trim().split(" +"));
+            int end = fields.size();
+            while (end > 0 && fields.get(end - 1).startsWith("(")) {
+                end -= 1;
+            }
+            String settings = String.join(" ", fields.subList(0, end));
+            Main.setUp(machine, settings);
+            Result best =
+                new PlugboardSearch(machine, ciphertext, scorer, pairs,
+                                    seed).run(restarts, threads);
+            for (int c = 0; c < best.plugs.length; c += 1) {
+                machine.setPlug(c, best.plugs[c]);
+            }
+            machine.convert(ciphertext, ciphertext.length);
+            StringBuilder plain = new StringBuilder();
+            for (int c : ciphertext) {
+                plain.append(alphabet.toChar(c));
+            }
+            System.out.printf("%.4f %s %s%n%s%n", best.score, settings,
+                              cycles(best.plugs, alphabet), plain);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Default number of random starts. */
+    private static final int DEFAULT_RESTARTS = 100;
+
+    /** Default largest number of pairs of plugs. */
+    private static final int DEFAULT_PAIRS = 10;
+
+    /** Default length of the n-grams scored. */
+    private static final int DEFAULT_N = 3;
+
+    /** Smallest change in score counted as an improvement. */
+    private static final double EPSILON = 1e-9;
+
+    /** Milliseconds between progress reports. */
+    private static final long REPORT_INTERVAL = 1000;
+
+    /** Nanoseconds per millisecond. */
+    private static final long MILLION = 1_000_000;
+
+    /** A machine set up with the key, apart from the plugboard. */
+    private final Machine _machine;
+
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _ciphertext;
+
+    /** Scores decryptions. */
+    private final NgramScorer _scorer;
+
+    /** Largest number of pairs of plugs. */
+    private final int _pairs;
+
+    /** Seed of the random starts. */
+    private final long _seed;
+
+    /** Number of plugboards tried. */
+    private final LongAdder _evaluations = new LongAdder();
+
+    /** Number of restarts finished. */
+    private final AtomicInteger _finished = new AtomicInteger();
+
+    /** The best plugboard found so far, or null. */
+    private volatile Result _best;
+
+}
@@ -0,0 +1,162 @@
+package enigma;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSearch class.
+ *  @author Frederick Fan
+ */
+public class PlugboardSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Training text, which also supplies the plaintext. */
+    static final String CORPUS =
+        "From his shoulder Hiawatha took the camera of rosewood, made of "
+        + "sliding, folding rosewood; neatly put it all together. In its "
+        + "case it lay compactly, folded into nearly nothing; but he opened "
+        + "out the hinges, pushed and pulled the joints and hinges, till it "
+        + "looked all squares and oblongs, like a complicated figure in the "
+        + "second book of Euclid. This he perched upon a tripod, crouched "
+        + "beneath its dusky cover, stretched his hand, enforcing silence, "
+        + "said, Be motionless, I beg you! Mystic, awful was the process.";
+
+    /** Return the letters of CORPUS, encrypted by the naval machine, as
+     *  alphabet indices. */
+    static int[] ciphertext() {
+        String letters = CORPUS.toUpperCase().replaceAll("[^A-Z]", "");
+        String cipher = MachineTest.naval().convert(letters);
+        int[] result = new int[cipher.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(cipher.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return a search for the plugboard of ciphertext(), allowing PAIRS
+     *  pairs, from starts determined by SEED. */
+    static PlugboardSearch search(int pairs, long seed) {
+        Machine machine = MachineTest.naval();
+        machine.setPlugboard(null);
+        NgramScorer scorer =
+            NgramScorer.train(UPPER, 2, new StringReader(CORPUS));
+        return new PlugboardSearch(machine, ciphertext(), scorer, pairs,
+                                   seed);
+    }
+
+    /** Return the decryption of ciphertext() with plugboard PLUGS. */
+    static int[] decrypt(int[] plugs) {
+        Machine machine = MachineTest.naval();
+        for (int c = 0; c < plugs.length; c += 1) {
+            machine.setPlug(c, plugs[c]);
+        }
+        int[] result = ciphertext();
+        machine.convert(result, result.length);
+        return result;
+    }
+
+    /** Return the plugboard of CLIMBER. */
+    static int[] plugs(PlugboardSearch.Climber climber) {
+        int[] result = new int[26];
+        for (int c = 0; c < result.length; c += 1) {
+            result[c] = climber.plug(c);
+        }
+        return result;
+    }
+
+    /** Return the identity plugboard with C and D plugged together, and so
+     *  on for each pair of PAIRS. */
+    static int[] plugboard(int... pairs) {
+        int[] result = new int[26];
+        for (int c = 0; c < result.length; c += 1) {
+            result[c] = c;
+        }
+        for (int i = 0; i < pairs.length; i += 2) {
+            result[pairs[i]] = pairs[i + 1];
+            result[pairs[i + 1]] = pairs[i];
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkTryPlug() {
+        NgramScorer scorer =
+            NgramScorer.train(UPPER, 2, new StringReader(CORPUS));
+        PlugboardSearch.Climber climber = search(3, 1).new Climber();
+        int kept = 0, reverted = 0, unplugged = 0, moved = 0;
+        int[][] starts = {
+            plugboard(), plugboard(0, 1), plugboard(0, 1, 2, 3),
+            plugboard(24, 5, 25, 7), plugboard(4, 9, 10, 11, 12, 13),
+        };
+        for (int[] start : starts) {
+            for (int c = 0; c < 26; c += 1) {
+                for (int d = c + 1; d < 26; d += 1) {
+                    climber.setPlugs(start);
+                    int[] before = climber.plain().clone();
+                    double change = climber.tryPlug(c, d);
+                    int[] after = plugs(climber);
+                    String id = msg("checkTryPlug", "%s, %d-%d",
+                                    PlugboardSearch.cycles(start, UPPER),
+                                    c, d);
+                    assertArrayEquals(id, decrypt(after), climber.plain());
+                    if (change > 0) {
+                        kept += 1;
+                        boolean unplug = start[c] == d;
+                        unplugged += unplug ? 1 : 0;
+                        moved += !unplug && (start[c] != c || start[d] != d)
+                            ? 1 : 0;
+                        assertEquals(id, unplug ? c : d, after[c]);
+                        assertEquals(id, unplug ? d : c, after[d]);
+                        int len = before.length;
+                        assertEquals(id, scorer.score(climber.plain(), len)
+                                     - scorer.score(before, len),
+                                     change, 1e-4);
+                    } else {
+                        reverted += 1;
+                        assertEquals(id, 0.0, change, 0.0);
+                        assertArrayEquals(id, start, after);
+                    }
+                }
+            }
+        }
+        assertTrue("nothing kept", kept > 0);
+        assertTrue("nothing reverted", reverted > 0);
+        assertTrue("nothing unplugged", unplugged > 0);
+        assertTrue("nothing moved", moved > 0);
+    }
+
+    @Test
+    public void checkPairLimit() {
+        PlugboardSearch.Climber climber = search(2, 1).new Climber();
+        int[] full = plugboard(0, 1, 2, 3);
+        for (int c = 4; c < 26; c += 1) {
+            for (int d = c + 1; d < 26; d += 1) {
+                climber.setPlugs(full);
+                assertEquals(0.0, climber.tryPlug(c, d), 0.0);
+                assertArrayEquals(full, plugs(climber));
+            }
+        }
+    }
+
+    @Test
+    public void checkThreads() {
+        PlugboardSearch.Result one = search(6, 7).run(8, 1);
+        PlugboardSearch.Result three = search(6, 7).run(8, 3);
+        assertEquals(one.score, three.score, 0.0);
+        assertEquals(one.restart, three.restart);
+        assertArrayEquals(one.plugs, three.plugs);
+    }
+
+}
@@ -14,6 +14,16 @@ class Reflector extends FixedRotor {
 
     }
 
+    /** A reflector like OTHER, sharing its tables. */
+    private Reflector(Reflector other) {
+        super(other);
+    }
+
+    @Override
+    Rotor copy() {
+        return new Reflector(this);
+    }
+
     @Override
     boolean reflecting() {
         return true;
@@ -31,4 +41,11 @@ class Reflector extends FixedRotor {
             throw error("reflector has only one position");
         }
     }
+
+    @Override
+    void setRing(int ring) {
+        if (ring != 0) {
+            throw error("reflector has no ring setting");
+        }
+    }
 }
@@ -0,0 +1,400 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** A cache of the conversions of message lines, for input in which the
+ *  same message is sent under the same key many times over.  A line is
+ *  looked up by its key (see key): the state of the machine before it,
+ *  which covers the settings line and any earlier lines of the same
+ *  message, and the line itself.  A Result holds the converted line and
+ *  the positions of the rotors after it, so a hit leaves the machine as
+ *  converting the line would have.
+ *
+ *  Results are held in memory, up to a bound on their total size, and
+ *  evicted least recently used first.  A result is admitted only if its
+ *  key has been asked for more often, recently, than the key of the entry
+ *  it would evict, so that a stream of messages seen once does not flush
+ *  out those that keep coming back (the TinyLFU policy).  The counts are
+ *  kept approximately, in a few bits per key, by a count-min sketch that
+ *  is halved periodically so that old popularity fades.
+ *
+ *  Results may also be kept on disk, in a directory, in a file named by
+ *  the SHA-256 digest of the key, which also holds the key itself so that
+ *  the file can be checked.  Results found there are brought into memory;
+ *  every result computed is written there, so that later runs can use it.
+ *  A cache is for use by one thread.
+ *  @author Frederick Fan
+ */
+class ResultCache {
+
+    /** The conversion of a message line. */
+    static final class Result {
+
+        /** The conversion OUTPUT of a line, after which the rotors were at
+         *  POSITIONS (as for Machine.positions). */
+        Result(String output, int[] positions) {
+            this.output = output;
+            this.positions = positions;
+        }
+
+        /** The converted line. */
+        final String output;
+
+        /** Positions of the rotors after the line. */
+        final int[] positions;
+    }
+
+    /** A cache holding results of about MAXBYTES bytes in all in memory,
+     *  and, if DIRECTORY is not null, keeping them on disk in DIRECTORY,
+     *  among those of other runs whose NAMESPACE differs.  NAMESPACE
+     *  should distinguish whatever affects conversion but is not part of
+     *  the machine's key, such as the alphabet. */
+    ResultCache(long maxBytes, File directory, String namespace) {
+        _maxBytes = maxBytes;
+        _namespace = namespace + '|';
+        _directory = directory == null ? null : directory.toPath();
+        if (_directory != null) {
+            try {
+                Files.createDirectories(_directory);
+            } catch (IOException excp) {
+                throw error("could not create cache directory %s",
+                            directory);
+            }
+        }
+        long entries = Math.max(MIN_SKETCH, maxBytes / AVERAGE_BYTES);
+        int width = Integer.highestOneBit(
+            (int) Math.min(entries, MAX_SKETCH) * 2 - 1);
+        _sketch = new byte[width];
+        _sketchMask = width - 1;
+        _sampleSize = width * SAMPLE_FACTOR;
+    }
+
+    /** Return the key under which the conversion of the message line
+     *  LINE by MACHINE is cached, where SETTINGS is MACHINE's key (see
+     *  Machine.key) when it was last set up. */
+    static String key(String settings, Machine machine, String line) {
+        StringBuilder result = new StringBuilder(settings);
+        result.append('|');
+        for (int p : machine.positions()) {
+            result.append(p).append(',');
+        }
+        return result.append('|').append(line).toString();
+    }
+
+    /** Return the result cached under KEY, or null if there is none. */
+    Result get(String key) {
+        int hash = spread(key.hashCode());
+        increment(hash);
+        Entry entry = _entries.get(key);
+        if (entry != null) {
+            _hits += 1;
+            return entry.result;
+        }
+        Result result = _directory == null ? null : read(key);
+        if (result != null) {
+            _diskHits += 1;
+            admit(key, hash, result);
+            return result;
+        }
+        _misses += 1;
+        return null;
+    }
+
+    /** Cache RESULT under KEY, which has just been looked up without
+     *  success. */
+    void put(String key, Result result) {
+        admit(key, spread(key.hashCode()), result);
+        if (_directory != null) {
+            write(key, result);
+        }
+    }
+
+    /** Return the number of lookups answered from memory. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups answered from disk. */
+    long diskHits() {
+        return _diskHits;
+    }
+
+    /** Return the number of lookups not answered. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the approximate number of bytes of results in memory. */
+    long bytes() {
+        return _bytes;
+    }
+
+    /** Return a one-line summary of my statistics. */
+    String summary() {
+        long lookups = _hits + _diskHits + _misses;
+        return String.format("%d lookups: %d hits in memory, %d on disk, "
+                             + "%d misses (%.1f%% hit); %d results in "
+                             + "memory, %d bytes; %d rejected, %d evicted",
+                             lookups, _hits, _diskHits, _misses,
+                             lookups == 0 ? 0.0
+                             : 100.0 * (_hits + _diskHits) / lookups,
+                             _entries.size(), _bytes, _rejected, _evicted);
+    }
+
+    /** A result in memory. */
+    private static final class Entry {
+
+        /** An entry for RESULT, whose key hashes to HASH, taking BYTES
+         *  bytes. */
+        Entry(Result result, int hash, long bytes) {
+            this.result = result;
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+
+        /** The result. */
+        final Result result;
+
+        /** The spread hash code of its key. */
+        final int hash;
+
+        /** Approximate number of bytes it takes. */
+        final long bytes;
+    }
+
+    /** Put RESULT, whose key KEY hashes to HASH, in memory, if there is
+     *  room or it is requested more often than the entries it would
+     *  evict. */
+    private void admit(String key, int hash, Result result) {
+        long bytes = ENTRY_BYTES + (long) key.length() * Character.BYTES
+            + (long) result.output.length() * Character.BYTES
+            + (long) result.positions.length * Integer.BYTES;
+        if (bytes > _maxBytes) {
+            _rejected += 1;
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> lru =
+            _entries.entrySet().iterator();
+        int frequency = frequency(hash);
+        long freed = 0;
+        while (_bytes - freed + bytes > _maxBytes) {
+            Entry victim = lru.next().getValue();
+            if (frequency <= frequency(victim.hash)) {
+                _rejected += 1;
+                return;
+            }
+            freed += victim.bytes;
+        }
+        lru = _entries.entrySet().iterator();
+        while (_bytes + bytes > _maxBytes) {
+            _bytes -= lru.next().getValue().bytes;
+            lru.remove();
+            _evicted += 1;
+        }
+        _entries.put(key, new Entry(result, hash, bytes));
+        _bytes += bytes;
+    }
+
+    /** Return H with its bits mixed, so that any of them may be used as an
+     *  index. */
+    private static int spread(int h) {
+        h *= MIX;
+        return h ^ (h >>> HALF);
+    }
+
+    /** Return the index in _sketch of the counter number I for the key
+     *  hashing to HASH. */
+    private int index(int hash, int i) {
+        return spread(hash + i * MIX) & _sketchMask;
+    }
+
+    /** Count one request for the key hashing to HASH. */
+    private void increment(int hash) {
+        for (int i = 0; i < SKETCH_DEPTH; i += 1) {
+            int k = index(hash, i);
+            if (_sketch[k] < MAX_COUNT) {
+                _sketch[k] += 1;
+            }
+        }
+        _samples += 1;
+        if (_samples >= _sampleSize) {
+            for (int k = 0; k < _sketch.length; k += 1) {
+                _sketch[k] >>= 1;
+            }
+            _samples /= 2;
+        }
+    }
+
+    /** Return the estimated number of recent requests for the key hashing
+     *  to HASH. */
+    private int frequency(int hash) {
+        int result = MAX_COUNT;
+        for (int i = 0; i < SKETCH_DEPTH; i += 1) {
+            result = Math.min(result, _sketch[index(hash, i)]);
+        }
+        return result;
+    }
+
+    /** Return the file in which the result for KEY is kept. */
+    private Path file(String key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException excp) {
+            throw error("SHA-256 is not available");
+        }
+        byte[] hash = digest.digest((_namespace + key)
+                                    .getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder();
+        for (byte b : hash) {
+            name.append(String.format("%02x", b));
+        }
+        return _directory.resolve(name.substring(0, 2))
+            .resolve(name.substring(2));
+    }
+
+    /** Return the result for KEY kept on disk, or null if there is none
+     *  (or it cannot be read). */
+    private Result read(String key) {
+        try {
+            Path file = file(key);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            List<String> lines =
+                Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.size() != FILE_LINES
+                || !lines.get(0).equals(_namespace + key)) {
+                return null;
+            }
+            String posns = lines.get(2);
+            int[] positions = posns.isEmpty() ? new int[0]
+                : Arrays.stream(posns.split(","))
+                  .mapToInt(Integer::parseInt).toArray();
+            return new Result(lines.get(1), positions);
+        } catch (IOException | NumberFormatException excp) {
+            return null;
+        }
+    }
+
+    /** Keep RESULT for KEY on disk, unless it is there already or cannot
+     *  be kept in lines. */
+    private void write(String key, Result result) {
+        if (breaksLine(key) || breaksLine(result.output)) {
+            return;
+        }
+        Path file = file(key);
+        if (Files.exists(file)) {
+            return;
+        }
+        StringBuilder text = new StringBuilder(_namespace).append(key)
+            .append('\n')
+            .append(result.output).append('\n');
+        for (int i = 0; i < result.positions.length; i += 1) {
+            text.append(i == 0 ? "" : ",").append(result.positions[i]);
+        }
+        text.append('\n');
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "tmp", "");
+            Files.write(temp, text.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write result cache in %s", _directory);
+        }
+    }
+
+    /** Return true iff S contains a character that would end a line. */
+    private static boolean breaksLine(String s) {
+        return s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+    }
+
+    /** Approximate number of bytes of an entry apart from its key and
+     *  result. */
+    private static final int ENTRY_BYTES = 96;
+
+    /** Expected average size of an entry, for sizing the sketch. */
+    private static final int AVERAGE_BYTES = 256;
+
+    /** Smallest and largest number of counters in the sketch. */
+    private static final long MIN_SKETCH = 1 << 10, MAX_SKETCH = 1 << 24;
+
+    /** Number of counters per key in the sketch. */
+    private static final int SKETCH_DEPTH = 4;
+
+    /** Largest value of a counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** The counters are halved after this many requests per counter. */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /** Multiplier for mixing hash codes (the golden ratio in fixed
+     *  point). */
+    private static final int MIX = 0x9e3779b9;
+
+    /** Shift for mixing hash codes. */
+    private static final int HALF = 16;
+
+    /** Number of lines in a file of the disk tier. */
+    private static final int FILE_LINES = 3;
+
+    /** Bound on _bytes. */
+    private final long _maxBytes;
+
+    /** Directory of the disk tier, or null. */
+    private final Path _directory;
+
+    /** Prefix of the keys of the disk tier, marking my namespace. */
+    private final String _namespace;
+
+    /** The results in memory, by key, least recently used first. */
+    private final LinkedHashMap<String, Entry> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Approximate number of bytes in _entries. */
+    private long _bytes;
+
+    /** Count-min sketch of recent requests. */
+    private final byte[] _sketch;
+
+    /** Mask reducing a hash code to an index in _sketch. */
+    private final int _sketchMask;
+
+    /** Number of requests after which the sketch is halved. */
+    private final long _sampleSize;
+
+    /** Number of requests counted since the sketch was last halved, in
+     *  effect. */
+    private long _samples;
+
+    /** Number of lookups answered from memory. */
+    private long _hits;
+
+    /** Number of lookups answered from disk. */
+    private long _diskHits;
+
+    /** Number of lookups not answered. */
+    private long _misses;
+
+    /** Number of results not admitted to memory. */
+    private long _rejected;
+
+    /** Number of results evicted from memory. */
+    private long _evicted;
+
+}
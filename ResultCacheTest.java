@@ -0,0 +1,99 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ResultCache class.
+ *  @author Frederick Fan
+ */
+public class ResultCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a result converting a line to OUTPUT, leaving the rotors
+     *  at POSN. */
+    private ResultCache.Result result(String output, int posn) {
+        return new ResultCache.Result(output, new int[] {0, 0, 0, posn});
+    }
+
+    /** Look KEY up in CACHE, and on a miss, cache a result for it with
+     *  output OUTPUT.  Return the result. */
+    private ResultCache.Result convert(ResultCache cache, String key,
+                                       String output) {
+        ResultCache.Result found = cache.get(key);
+        if (found == null) {
+            found = result(output, output.length());
+            cache.put(key, found);
+        }
+        return found;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkKeys() {
+        Machine machine = MachineTest.naval();
+        machine.setRotors("AXLE");
+        String settings = machine.key();
+        String key = ResultCache.key(settings, machine, "HELLO");
+        assertEquals(key, ResultCache.key(settings, machine, "HELLO"));
+        assertFalse(key.equals(ResultCache.key(settings, machine, "HELLP")));
+        machine.convert(new int[] {0}, 1);
+        assertFalse(key.equals(ResultCache.key(settings, machine, "HELLO")));
+        machine.setRotors("AXLF");
+        assertFalse(settings.equals(machine.key()));
+    }
+
+    @Test
+    public void checkHits() {
+        ResultCache cache = new ResultCache(1 << 20, null, "");
+        assertNull(cache.get("A"));
+        cache.put("A", result("XYZ", 3));
+        ResultCache.Result found = cache.get("A");
+        assertEquals("XYZ", found.output);
+        assertArrayEquals(new int[] {0, 0, 0, 3}, found.positions);
+        assertNull(cache.get("B"));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void checkAdmission() {
+        ResultCache cache = new ResultCache(200, null, "");
+        for (int i = 0; i < 5; i += 1) {
+            convert(cache, "POPULAR", "ABCDE");
+        }
+        for (int i = 0; i < 20; i += 1) {
+            convert(cache, "ONCE" + i, "FGHIJ");
+        }
+        assertEquals(4, cache.hits());
+        assertNotNull(cache.get("POPULAR"));
+        assertEquals(5, cache.hits());
+        assertTrue(cache.bytes() <= 200);
+    }
+
+    @Test
+    public void checkDisk() throws IOException {
+        File dir = Files.createTempDirectory("enigma-results").toFile();
+        ResultCache first = new ResultCache(1 << 20, dir, "ABC");
+        convert(first, "KEY", "OUT");
+        ResultCache second = new ResultCache(1 << 20, dir, "ABC");
+        ResultCache.Result found = second.get("KEY");
+        assertNotNull(found);
+        assertEquals("OUT", found.output);
+        assertArrayEquals(new int[] {0, 0, 0, 3}, found.positions);
+        assertEquals(1, second.diskHits());
+        assertNull(new ResultCache(1 << 20, dir, "ABCD").get("KEY"));
+    }
+
+}
@@ -0,0 +1,156 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/** A bounded queue between one producing thread and one consuming thread,
+ *  without locks.  Its slots hold objects allocated once, when the queue
+ *  is made, which the producer fills in place and the consumer uses in
+ *  place, so that passing an item allocates nothing.  The producer claims
+ *  the next free slot, fills it, and publishes it; the consumer takes the
+ *  next published slot, uses it, and releases it for reuse.  The only
+ *  shared state is the count of slots published and the count released,
+ *  each written by one thread only, so an ordered store suffices to pass
+ *  each slot between the threads.
+ *
+ *  A thread that finds the queue full (or empty) waits as its Wait
+ *  strategy says.  Either thread may abort the queue, after which waiting
+ *  threads give up.
+ *  @author Frederick Fan
+ */
+final class RingBuffer<T> {
+
+    /** Ways to wait for the other thread. */
+    enum Wait {
+        /** Spin, using a CPU the whole time, for the lowest latency when
+         *  each thread has a processor to itself. */
+        SPIN,
+        /** Spin briefly, then yield the processor between checks. */
+        YIELD,
+        /** Spin briefly, yield for a while, then sleep for short periods
+         *  between checks, using little CPU while idle. */
+        PARK
+    }
+
+    /** A queue of CAPACITY slots (a power of 2), holding objects made by
+     *  FACTORY, whose threads wait as WAIT says. */
+    RingBuffer(int capacity, Supplier<T> factory, Wait wait) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power "
+                                               + "of 2");
+        }
+        _slots = new Object[capacity];
+        for (int i = 0; i < capacity; i += 1) {
+            _slots[i] = factory.get();
+        }
+        _mask = capacity - 1;
+        _wait = wait;
+    }
+
+    /** Return the next free slot, for the producer to fill and then
+     *  publish, waiting for the consumer to release it if necessary.
+     *  Returns null if the queue has been aborted. */
+    T claim() {
+        for (int n = 0; _head - _releasedSeen > _mask; n += 1) {
+            _releasedSeen = _released.get();
+            if (_head - _releasedSeen > _mask && !idle(n)) {
+                return null;
+            }
+        }
+        return slot(_head);
+    }
+
+    /** Make the slot last claimed available to the consumer. */
+    void publish() {
+        _head += 1;
+        _published.lazySet(_head);
+    }
+
+    /** Return the next published slot, for the consumer to use and then
+     *  release, waiting for the producer to publish it if necessary.
+     *  Returns null if the queue has been aborted. */
+    T take() {
+        for (int n = 0; _tail >= _publishedSeen; n += 1) {
+            _publishedSeen = _published.get();
+            if (_tail >= _publishedSeen && !idle(n)) {
+                return null;
+            }
+        }
+        return slot(_tail);
+    }
+
+    /** Return the slot last taken to the producer. */
+    void release() {
+        _tail += 1;
+        _released.lazySet(_tail);
+    }
+
+    /** Make all waiting, now and later, give up. */
+    void abort() {
+        _aborted = true;
+    }
+
+    /** Return the slot for sequence number SEQ. */
+    @SuppressWarnings("unchecked")
+    private T slot(long seq) {
+        return (T) _slots[(int) (seq & _mask)];
+    }
+
+    /** Wait a little, as my Wait strategy says, having already waited
+     *  N times for the current slot.  Return false if the queue has been
+     *  aborted. */
+    private boolean idle(int n) {
+        if (_aborted) {
+            return false;
+        }
+        if (_wait == Wait.SPIN || n < SPINS) {
+            Thread.onSpinWait();
+        } else if (_wait == Wait.YIELD || n < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return true;
+    }
+
+    /** Number of times to spin before yielding. */
+    private static final int SPINS = 100;
+
+    /** Number of times to yield before sleeping, with Wait.PARK. */
+    private static final int YIELDS = 100;
+
+    /** Length of a sleep, in nanoseconds, with Wait.PARK. */
+    private static final long PARK_NANOS = 50_000;
+
+    /** The slots. */
+    private final Object[] _slots;
+
+    /** Capacity minus 1, to reduce sequence numbers to slot numbers. */
+    private final int _mask;
+
+    /** How my threads wait. */
+    private final Wait _wait;
+
+    /** Number of slots published, written only by the producer. */
+    private final AtomicLong _published = new AtomicLong();
+
+    /** Number of slots released, written only by the consumer. */
+    private final AtomicLong _released = new AtomicLong();
+
+    /** Number of slots published, as known to the producer. */
+    private long _head;
+
+    /** The value of _released when the producer last read it. */
+    private long _releasedSeen;
+
+    /** Number of slots released, as known to the consumer. */
+    private long _tail;
+
+    /** The value of _published when the consumer last read it. */
+    private long _publishedSeen;
+
+    /** True once the queue has been aborted. */
+    private volatile boolean _aborted;
+
+}
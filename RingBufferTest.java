@@ -0,0 +1,103 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RingBuffer class.
+ *  @author Frederick Fan
+ */
+public class RingBufferTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Number of items passed in each ordering test. */
+    static final int ITEMS = 100_000;
+
+    /** Check that ITEMS items pass, in order and intact, from a producer
+     *  thread to a consumer through a ring buffer of CAPACITY slots whose
+     *  threads wait as WAIT says. */
+    private void checkOrder(int capacity, RingBuffer.Wait wait)
+        throws InterruptedException {
+        RingBuffer<long[]> ring =
+            new RingBuffer<>(capacity, () -> new long[2], wait);
+        Thread producer = new Thread(() -> {
+                for (long k = 0; k < ITEMS; k += 1) {
+                    long[] slot = ring.claim();
+                    slot[0] = k;
+                    slot[1] = k * k;
+                    ring.publish();
+                }
+            });
+        producer.start();
+        for (long k = 0; k < ITEMS; k += 1) {
+            long[] slot = ring.take();
+            assertEquals(msg("checkOrder", "%s item %d", wait, k),
+                         k, slot[0]);
+            assertEquals(k * k, slot[1]);
+            ring.release();
+        }
+        producer.join();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkOrder() throws InterruptedException {
+        for (RingBuffer.Wait wait : RingBuffer.Wait.values()) {
+            if (wait == RingBuffer.Wait.SPIN
+                && Runtime.getRuntime().availableProcessors() < 2) {
+                /* Spinning threads starve each other on one processor. */
+                continue;
+            }
+            checkOrder(8, wait);
+        }
+        checkOrder(1, RingBuffer.Wait.YIELD);
+    }
+
+    @Test
+    public void checkSlotsReused() {
+        RingBuffer<long[]> ring =
+            new RingBuffer<>(2, () -> new long[1], RingBuffer.Wait.SPIN);
+        long[] first = ring.claim();
+        ring.publish();
+        long[] second = ring.claim();
+        ring.publish();
+        assertNotSame(first, second);
+        assertSame(first, ring.take());
+        ring.release();
+        assertSame(first, ring.claim());
+    }
+
+    @Test
+    public void checkAbort() throws InterruptedException {
+        RingBuffer<long[]> ring =
+            new RingBuffer<>(1, () -> new long[1], RingBuffer.Wait.PARK);
+        ring.claim();
+        ring.publish();
+        AtomicReference<long[]> claimed = new AtomicReference<>();
+        Thread producer = new Thread(() -> claimed.set(ring.claim()));
+        producer.start();
+        ring.abort();
+        producer.join();
+        assertNull(claimed.get());
+        assertNotNull(ring.take());
+        ring.release();
+        assertNull(ring.take());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkCapacity() {
+        new RingBuffer<>(6, () -> new long[1], RingBuffer.Wait.SPIN);
+    }
+
+}
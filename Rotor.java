@@ -13,9 +13,24 @@ class Rotor {
         _permutation = perm;
 
         _setting = 0;
+        compile();
 
     }
 
+    /** A rotor like OTHER, at its setting and ring setting, sharing its
+     *  tables, which never change, rather than compiling them again. */
+    Rotor(Rotor other) {
+        _name = other._name;
+        _permutation = other._permutation;
+        _setting = other._setting;
+        _ring = other._ring;
+        _tables = other._tables;
+        _tableIndex = other._tableIndex;
+        _forward = other._forward;
+        _backward = other._backward;
+        _compiled = other.compiled();
+    }
+
     /** Return my name. */
     String name() {
         return _name;
@@ -64,23 +79,94 @@ class Rotor {
 
     }
 
+    /** Return my current ring setting. */
+    int ring() {
+        return _ring;
+    }
+
+    /** Set ring() to RING, which rotates my wiring relative to my
+     *  alphabet ring by RING positions.  Since this is done once per
+     *  message, the ring setting is folded into my tables here, so that
+     *  converting characters costs the same whatever the ring setting. */
+    void setRing(int ring) {
+        if (ring != _ring) {
+            _ring = ring;
+            compile();
+        }
+    }
+
+    /** Set _forward and _backward to the tables of my permutation, as
+     *  rotated by my ring setting. */
+    private void compile() {
+        int n = size();
+        _forward = new int[n];
+        _backward = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            int e = _permutation.permute(_permutation.wrap(i - _ring));
+            _forward[i] = _permutation.wrap(e + _ring);
+            _backward[_forward[i]] = i;
+        }
+        _compiled = null;
+    }
+
+    /** Return my tables compiled for fast conversion, compiling them if
+     *  necessary. */
+    CompiledRotor compiled() {
+        if (_compiled == null) {
+            String notches = notches();
+            int[] posns = new int[notches.length()];
+            for (int i = 0; i < posns.length; i += 1) {
+                posns[i] = alphabet().toInt(notches.charAt(i));
+            }
+            _compiled = _tables != null
+                ? _tables.compiled(_tableIndex, _ring, posns)
+                : new CompiledRotor(_forward, _backward, posns);
+        }
+        return _compiled;
+    }
+
+    /** Read my tables in place from TABLES from now on, rather than
+     *  compiling them, so that processes using the same file share them.
+     *  TABLES must hold a rotor with my name and wiring. */
+    void useTables(RotorTableFile tables) {
+        int r = tables.index(_name);
+        if (r < 0 || !tables.matches(alphabet())) {
+            throw error("no tables for rotor %s", _name);
+        }
+        for (int p = 0; p < size(); p += 1) {
+            if (tables.forward(r, 0, p) != _permutation.permute(p)) {
+                throw error("tables for rotor %s have the wrong wiring",
+                            _name);
+            }
+        }
+        _tables = tables;
+        _tableIndex = r;
+        _compiled = null;
+    }
+
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int pMod = _permutation.wrap(p + _setting);
-        int pPermute = _permutation.permute(pMod);
-        int pDmod = _permutation.wrap(pPermute - _setting);
-        return pDmod;
-
+        return compiled().forward(_setting, p);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int eMod = _permutation.wrap(e + _setting);
-        int eInvert = _permutation.invert(eMod);
-        int eDmod = _permutation.wrap(eInvert - _setting);
-        return eDmod;
+        return compiled().backward(_setting, e);
+    }
+
+    /** Return a new rotor like me, at my setting and ring setting, that
+     *  can be moved independently of me (by another thread, for
+     *  instance).  My tables, which never change, are shared. */
+    Rotor copy() {
+        return new Rotor(this);
+    }
+
+    /** Return the characters at which I have notches, in no particular
+     *  order.  By default, I have none. */
+    String notches() {
+        return "";
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
@@ -107,5 +193,23 @@ class Rotor {
     /** setting for the rotor. */
     private int _setting;
 
+    /** Ring setting for the rotor. */
+    private int _ring;
+
+    /** My permutation, rotated by my ring setting, as a table. */
+    private int[] _forward;
+
+    /** The inverse of _forward. */
+    private int[] _backward;
+
+    /** The file from which my tables are read in place, or null. */
+    private RotorTableFile _tables;
+
+    /** My number in _tables. */
+    private int _tableIndex;
+
+    /** My compiled tables, or null if not yet compiled. */
+    private CompiledRotor _compiled;
+
 
 }
@@ -0,0 +1,196 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** The rotors available to a machine, looked up by name (ignoring case).
+ *  A catalog either holds ready-made rotors, or holds descriptions of
+ *  rotors read from a configuration file (see ConfigParser).  In the
+ *  latter case, a rotor is built from its description the first time it
+ *  is requested and then cached.
+ *  @author Frederick Fan
+ */
+class RotorCatalog {
+
+    /** The description of a rotor in a configuration file. */
+    static final class Description {
+
+        /** A rotor named NAME of kind KIND ('M' for moving, 'N' for
+         *  non-moving, 'R' for reflector) with notches at the characters
+         *  in NOTCHES and cycles CYCLES (with no whitespace), described
+         *  OFFSET characters into its configuration file. */
+        Description(String name, char kind, String notches, String cycles,
+                    int offset) {
+            this.name = name;
+            this.kind = kind;
+            this.notches = notches;
+            this.cycles = cycles;
+            this.offset = offset;
+        }
+
+        /** The rotor's name. */
+        final String name;
+
+        /** The rotor's kind. */
+        final char kind;
+
+        /** The characters at which the rotor has notches. */
+        final String notches;
+
+        /** The rotor's permutation in cycle notation. */
+        final String cycles;
+
+        /** Position of the description in its configuration file. */
+        final int offset;
+    }
+
+    /** A catalog of the rotors in ROTORS. */
+    RotorCatalog(Collection<Rotor> rotors) {
+        _alphabet = null;
+        _base = null;
+        _index = new HashMap<>();
+        _names = new ArrayList<>();
+        _descriptions = new ArrayList<>();
+        _built = new ArrayList<>();
+        for (Rotor rotor : rotors) {
+            String key = rotor.name().toUpperCase();
+            _index.put(key, _names.size());
+            _names.add(key);
+            _descriptions.add(null);
+            _built.add(rotor);
+        }
+    }
+
+    /** An empty catalog of rotors in ALPHABET, to which descriptions are
+     *  added with add. */
+    RotorCatalog(Alphabet alphabet) {
+        _alphabet = alphabet;
+        _base = null;
+        _index = new HashMap<>();
+        _names = new ArrayList<>();
+        _descriptions = new ArrayList<>();
+        _built = new ArrayList<>();
+    }
+
+    /** A catalog of copies of the rotors in BASE, to which nothing more
+     *  may be added, so that a machine using this catalog shares no rotors
+     *  with one using BASE.  Each rotor is built, and its tables compiled,
+     *  only once, in BASE; the copies share those tables. */
+    RotorCatalog(RotorCatalog base) {
+        _alphabet = base._alphabet;
+        _base = base;
+        _index = base._index;
+        _names = base._names;
+        _descriptions = base._descriptions;
+        _built = new ArrayList<>(Collections.nCopies(_names.size(),
+                                                     (Rotor) null));
+    }
+
+    /** Add the rotor described by DESC, unless there is already a rotor
+     *  of the same name (ignoring case).  Return the description of that
+     *  rotor if so, and otherwise null. */
+    Description add(Description desc) {
+        if (_base != null) {
+            throw new IllegalStateException("catalog is a copy");
+        }
+        String key = desc.name.toUpperCase();
+        Integer k = _index.putIfAbsent(key, _names.size());
+        if (k != null) {
+            return _descriptions.get(k);
+        }
+        _names.add(key);
+        _descriptions.add(desc);
+        _built.add(null);
+        return null;
+    }
+
+    /** Return the number of rotors in this catalog. */
+    int size() {
+        return _names.size();
+    }
+
+    /** Return the upper-cased names of my rotors, in the order in which
+     *  they were added. */
+    List<String> names() {
+        return Collections.unmodifiableList(_names);
+    }
+
+    /** Return the kind of my rotor named NAME (ignoring case), as for
+     *  Description.kind, without building it. */
+    synchronized char kind(String name) {
+        Description desc = _descriptions.get(_index.get(name.toUpperCase()));
+        if (desc != null) {
+            return desc.kind;
+        }
+        Rotor rotor = get(name);
+        return rotor.reflecting() ? 'R' : rotor.rotates() ? 'M' : 'N';
+    }
+
+    /** Return the rotor named NAME (ignoring case), building it if
+     *  necessary, or null if there is no such rotor. */
+    synchronized Rotor get(String name) {
+        Integer k = _index.get(name.toUpperCase());
+        if (k == null) {
+            return null;
+        }
+        Rotor result = _built.get(k);
+        if (result == null) {
+            result = _base != null ? _base.copyOf(name)
+                : build(_descriptions.get(k));
+            _built.set(k, result);
+        }
+        return result;
+    }
+
+    /** Return a copy of my rotor named NAME, which must exist. */
+    private synchronized Rotor copyOf(String name) {
+        return get(name).copy();
+    }
+
+    /** Return all the rotors in this catalog, building any that have not
+     *  yet been built. */
+    Collection<Rotor> rotors() {
+        ArrayList<Rotor> result = new ArrayList<>(size());
+        for (String name : _names) {
+            result.add(get(name));
+        }
+        return result;
+    }
+
+    /** Return the rotor described by DESC. */
+    private Rotor build(Description desc) {
+        Permutation perm = new Permutation(desc.cycles, _alphabet);
+        switch (desc.kind) {
+        case 'M':
+            return new MovingRotor(desc.name, perm, desc.notches);
+        case 'N':
+            return new FixedRotor(desc.name, perm);
+        default:
+            return new Reflector(desc.name, perm);
+        }
+    }
+
+    /** Alphabet of the described rotors, or null if all rotors were
+     *  supplied ready-made. */
+    private final Alphabet _alphabet;
+
+    /** The catalog whose rotors I copy, or null. */
+    private final RotorCatalog _base;
+
+    /** Maps upper-cased rotor names to their numbers in this catalog. */
+    private final HashMap<String, Integer> _index;
+
+    /** Upper-cased rotor names, by rotor number. */
+    private final ArrayList<String> _names;
+
+    /** Rotor descriptions, by rotor number (null for ready-made
+     *  rotors). */
+    private final ArrayList<Description> _descriptions;
+
+    /** Rotors built so far, by rotor number (null if not yet built). */
+    private final ArrayList<Rotor> _built;
+
+}
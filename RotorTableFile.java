@@ -0,0 +1,343 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static enigma.EnigmaException.*;
+
+/** A file of precomputed rotor tables, mapped read-only into memory so that
+ *  any number of processes on a host share the same pages.  For every rotor
+ *  of a configuration and every position P of that rotor, the file holds
+ *  the tables that Rotor.convertForward and Rotor.convertBackward apply
+ *  when the rotor's setting is P.
+ *
+ *  The file consists of a fixed-size header (magic number, format version,
+ *  alphabet size, number of rotors, offset of the tables, and a CRC-32 of
+ *  everything following the header), then the characters of the alphabet,
+ *  then a directory giving each rotor's name, kind ('M', 'N', or 'R') and
+ *  notches, and finally the tables.  Each rotor has size() positions of
+ *  size() forward entries followed by size() backward entries, each an
+ *  unsigned 16-bit index.
+ *
+ *  The tables are those of rotors at ring setting A.  Since the tables
+ *  of a rotor at ring setting R and position P are those at ring setting
+ *  A and position P - R, they serve every ring setting.  Rotors read them
+ *  in place once told to (see Rotor.useTables), as the key-search workers
+ *  are by KeySearch's --tables option.
+ *  @author Frederick Fan
+ */
+final class RotorTableFile {
+
+    /** Write the tables for ROTORS, whose common alphabet is ALPHABET, to
+     *  a new file named NAME.  The file is written under a temporary name
+     *  and then renamed, so that readers never see a partial file. */
+    static void write(File name, Alphabet alphabet,
+                      Collection<Rotor> rotors) {
+        int n = alphabet.size();
+        if (n > Character.MAX_VALUE) {
+            throw error("alphabet too large for a table file");
+        }
+        long total = HEADER_SIZE + 2L * n + (long) rotors.size() * n * n * 4
+            + DIRECTORY_ALLOWANCE * rotors.size();
+        if (total > Integer.MAX_VALUE) {
+            throw error("rotor tables too large for a table file");
+        }
+        File temp = new File(name.getPath() + ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            int tableOffset;
+            try (FileOutputStream file = new FileOutputStream(temp)) {
+                file.write(new byte[HEADER_SIZE]);
+                DataOutputStream out =
+                    new DataOutputStream(new CheckedOutputStream(
+                        new BufferedOutputStream(file), crc));
+                for (int i = 0; i < n; i += 1) {
+                    out.writeChar(alphabet.toChar(i));
+                }
+                for (Rotor rotor : rotors) {
+                    out.writeUTF(rotor.name());
+                    out.writeChar(kind(rotor));
+                    out.writeUTF(rotor.notches());
+                }
+                while ((HEADER_SIZE + out.size()) % ALIGNMENT != 0) {
+                    out.writeByte(0);
+                }
+                tableOffset = HEADER_SIZE + out.size();
+                for (Rotor rotor : rotors) {
+                    writeTables(out, rotor.permutation());
+                }
+                out.flush();
+            }
+            try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(n);
+                file.writeInt(rotors.size());
+                file.writeLong(tableOffset);
+                file.writeLong(crc.getValue());
+            }
+            Files.move(temp.toPath(), name.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Write the forward and backward tables of PERM at each of its
+     *  positions to OUT. */
+    private static void writeTables(DataOutputStream out, Permutation perm)
+        throws IOException {
+        int n = perm.size();
+        int[] forward = new int[n], backward = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            forward[i] = perm.permute(i);
+            backward[forward[i]] = i;
+        }
+        for (int posn = 0; posn < n; posn += 1) {
+            for (int p = 0; p < n; p += 1) {
+                out.writeChar(perm.wrap(forward[perm.wrap(p + posn)] - posn));
+            }
+            for (int e = 0; e < n; e += 1) {
+                out.writeChar(perm.wrap(backward[perm.wrap(e + posn)]
+                                        - posn));
+            }
+        }
+    }
+
+    /** Return the kind code recorded for ROTOR. */
+    private static char kind(Rotor rotor) {
+        if (rotor.reflecting()) {
+            return 'R';
+        } else if (rotor.rotates()) {
+            return 'M';
+        } else {
+            return 'N';
+        }
+    }
+
+    /** Return the tables in the file named NAME, mapped read-only.  If
+     *  VERIFY, first check the file's checksum, which touches every page
+     *  of the file. */
+    static RotorTableFile open(File name, boolean verify) {
+        try (FileChannel channel = FileChannel.open(name.toPath())) {
+            if (channel.size() > Integer.MAX_VALUE
+                || channel.size() < HEADER_SIZE) {
+                throw error("%s is not a rotor table file", name);
+            }
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new RotorTableFile(name, buffer, verify);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** The tables in BUFFER, which was mapped from the file named NAME.
+     *  Checks the checksum iff VERIFY. */
+    private RotorTableFile(File name, MappedByteBuffer buffer,
+                           boolean verify) {
+        if (buffer.getInt(0) != MAGIC) {
+            throw error("%s is not a rotor table file", name);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw error("%s has unsupported version %d", name,
+                        buffer.getInt(4));
+        }
+        _size = buffer.getInt(8);
+        int count = buffer.getInt(12);
+        long tableOffset = buffer.getLong(16);
+        long checksum = buffer.getLong(24);
+        if (tableOffset + (long) count * _size * _size * 4
+            != buffer.capacity()) {
+            throw error("%s is truncated", name);
+        }
+        if (verify) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_SIZE));
+            if (crc.getValue() != checksum) {
+                throw error("%s is corrupt (bad checksum)", name);
+            }
+        }
+
+        ByteBuffer dir = buffer.duplicate().position(HEADER_SIZE);
+        char[] chars = new char[_size];
+        for (int i = 0; i < _size; i += 1) {
+            chars[i] = dir.getChar();
+        }
+        _alphabet = new MixedAlphabet(new String(chars));
+        _names = new String[count];
+        _kinds = new char[count];
+        _notches = new String[count];
+        for (int r = 0; r < count; r += 1) {
+            _names[r] = readUTF(dir);
+            _kinds[r] = dir.getChar();
+            _notches[r] = readUTF(dir);
+            _index.put(_names[r].toUpperCase(), r);
+        }
+        _tables = buffer.duplicate().position((int) tableOffset)
+            .slice().asCharBuffer();
+    }
+
+    /** Return the string written by DataOutputStream.writeUTF at the
+     *  current position of BUF, advancing past it. */
+    private static String readUTF(ByteBuffer buf) {
+        char[] result = new char[buf.getChar()];
+        int len = 0;
+        for (int i = 0; i < result.length; i += 1, len += 1) {
+            int b = buf.get() & 0xff;
+            if (b < 0x80) {
+                result[len] = (char) b;
+            } else if (b < 0xe0) {
+                result[len] = (char) (((b & 0x1f) << 6) | (buf.get() & 0x3f));
+                i += 1;
+            } else {
+                int b2 = buf.get() & 0x3f, b3 = buf.get() & 0x3f;
+                result[len] = (char) (((b & 0x0f) << 12) | (b2 << 6) | b3);
+                i += 2;
+            }
+        }
+        return new String(result, 0, len);
+    }
+
+    /** Return the size of the alphabet of my tables. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the alphabet of my tables. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return true iff my tables were built for ALPHABET. */
+    boolean matches(Alphabet alphabet) {
+        if (alphabet.size() != _size) {
+            return false;
+        }
+        for (int i = 0; i < _size; i += 1) {
+            if (alphabet.toChar(i) != _alphabet.toChar(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of rotors in this file. */
+    int rotorCount() {
+        return _names.length;
+    }
+
+    /** Return the number of the rotor named NAME (ignoring case), or -1
+     *  if there is none. */
+    int index(String name) {
+        Integer r = _index.get(name.toUpperCase());
+        return r == null ? -1 : r;
+    }
+
+    /** Return the name of rotor number R. */
+    String name(int r) {
+        return _names[r];
+    }
+
+    /** Return the kind of rotor number R: 'M' for a moving rotor, 'N' for
+     *  a fixed rotor, and 'R' for a reflector. */
+    char kind(int r) {
+        return _kinds[r];
+    }
+
+    /** Return the notches of rotor number R. */
+    String notches(int r) {
+        return _notches[r];
+    }
+
+    /** Return the result of converting P forward through rotor number R
+     *  when it is at position POSN. */
+    int forward(int r, int posn, int p) {
+        return _tables.get(((r * _size + posn) * 2) * _size + p);
+    }
+
+    /** Return the result of converting E backward through rotor number R
+     *  when it is at position POSN. */
+    int backward(int r, int posn, int e) {
+        return _tables.get(((r * _size + posn) * 2 + 1) * _size + e);
+    }
+
+    /** Return the tables of rotor number R at ring setting RING, read in
+     *  place, for a rotor with notches at the positions in NOTCHES. */
+    CompiledRotor compiled(int r, int ring, int[] notches) {
+        int len = 2 * _size * _size;
+        CharBuffer tables = _tables.duplicate().position(r * len)
+            .limit((r + 1) * len).slice();
+        return new CompiledRotor(tables, _size, ring, notches);
+    }
+
+    /** Write the tables for the configuration file named ARGS[0] to the
+     *  file named ARGS[1]. */
+    public static void main(String... args) {
+        try {
+            if (args.length != 2) {
+                throw error("Usage: java enigma.RotorTableFile CONFIG TABLES");
+            }
+            Machine machine = Main.readConfig(args[0]);
+            write(new File(args[1]), machine.alphabet(),
+                  machine.allRotors());
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Identifies a rotor table file ("ENGT"). */
+    private static final int MAGIC = 0x454e4754;
+
+    /** Version of the file format written by this class. */
+    private static final int VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    private static final int HEADER_SIZE = 32;
+
+    /** Alignment of the start of the tables, in bytes. */
+    private static final int ALIGNMENT = 8;
+
+    /** Generous bound on the size of one directory entry, in bytes. */
+    private static final int DIRECTORY_ALLOWANCE = 256;
+
+    /** Size of my alphabet. */
+    private final int _size;
+
+    /** The alphabet recorded in my file. */
+    private final Alphabet _alphabet;
+
+    /** Names of my rotors. */
+    private final String[] _names;
+
+    /** Kinds of my rotors. */
+    private final char[] _kinds;
+
+    /** Notches of my rotors. */
+    private final String[] _notches;
+
+    /** Maps upper-cased rotor names to rotor numbers. */
+    private final HashMap<String, Integer> _index = new HashMap<>();
+
+    /** The tables, as a view of the mapped file. */
+    private final CharBuffer _tables;
+
+}
@@ -0,0 +1,107 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorTableFile class.
+ *  @author Frederick Fan
+ */
+public class RotorTableFileTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new table file holding the naval rotors. */
+    private File naval() throws IOException {
+        File file = File.createTempFile("rotors", ".tables");
+        file.deleteOnExit();
+        RotorTableFile.write(file, UPPER, MachineTest.naval().allRotors());
+        return file;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRoundTrip() throws IOException {
+        Collection<Rotor> rotors = MachineTest.naval().allRotors();
+        RotorTableFile tables = RotorTableFile.open(naval(), true);
+        assertEquals(26, tables.size());
+        assertTrue(tables.matches(UPPER));
+        assertEquals(rotors.size(), tables.rotorCount());
+        assertEquals(-1, tables.index("VI"));
+        for (Rotor rotor : rotors) {
+            int r = tables.index(rotor.name().toLowerCase());
+            assertEquals(rotor.name(), tables.name(r));
+            assertEquals(rotor.notches(), tables.notches(r));
+            assertEquals(rotor.reflecting() ? 'R'
+                         : rotor.rotates() ? 'M' : 'N', tables.kind(r));
+            CompiledRotor compiled = rotor.compiled();
+            for (int posn = 0; posn < 26; posn += 1) {
+                for (int p = 0; p < 26; p += 1) {
+                    String id = String.format("%s at %d, %d",
+                                              rotor.name(), posn, p);
+                    assertEquals(msg("checkRoundTrip", "forward %s", id),
+                                 compiled.forward(posn, p),
+                                 tables.forward(r, posn, p));
+                    assertEquals(msg("checkRoundTrip", "backward %s", id),
+                                 compiled.backward(posn, p),
+                                 tables.backward(r, posn, p));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkRingSettings() throws IOException {
+        RotorTableFile tables = RotorTableFile.open(naval(), true);
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        for (String rings : new String[] { "AAAA", "BQZX", "ZZZZ" }) {
+            Machine direct = MachineTest.naval();
+            Machine mapped = MachineTest.naval();
+            for (Rotor rotor : mapped.allRotors()) {
+                rotor.useTables(tables);
+            }
+            mapped.insertRotors(new String[] { "B", "Beta", "III", "IV",
+                                               "I" });
+            mapped.setRotors("AXLE");
+            direct.setRings(rings);
+            mapped.setRings(rings);
+            assertEquals(msg("checkRingSettings", "rings %s", rings),
+                         direct.convert(msg), mapped.convert(msg));
+            assertEquals(MachineTest.posns(direct),
+                         MachineTest.posns(mapped));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkWrongWiring() throws IOException {
+        RotorTableFile tables = RotorTableFile.open(naval(), true);
+        new FixedRotor("Beta", new Permutation("(AB)", UPPER))
+            .useTables(tables);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkCorrupt() throws IOException {
+        File file = naval();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(out.length() - 1);
+            int last = out.read();
+            out.seek(out.length() - 1);
+            out.write(last ^ 1);
+        }
+        RotorTableFile.open(file, true);
+    }
+
+}
@@ -0,0 +1,301 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static enigma.EnigmaException.*;
+
+/** A store of many long-lived encryption sessions for one configuration.
+ *  A session is a stream of messages encrypted under one key (a settings
+ *  line, as given to Main), each message starting where the last left
+ *  off.
+ *
+ *  Idle sessions take no objects: each is a fixed-size record in a
+ *  direct (off-heap) buffer holding the number of its key and the
+ *  positions of its rotors, packed into one byte each when the alphabet
+ *  has at most 256 characters and two bytes otherwise.  Records live in
+ *  segments allocated as the store grows, and the records of closed
+ *  sessions are reused.  To convert a message, a session's record is
+ *  loaded into a machine set up for its key, taken from a pool kept for
+ *  that key, and stored back when the message is done.
+ *
+ *  Different sessions may be used by different threads at the same time.
+ *  Uses of one session, including closing it and reopening its record
+ *  for a new session, are serialized, so that a conversion finishing
+ *  after its session is closed cannot write into the record's next
+ *  session.
+ *  @author Frederick Fan
+ */
+class SessionStore {
+
+    /** A store of sessions for machines configured by CONFIG, with no
+     *  limit on the number open at once. */
+    SessionStore(ConfigParser config) {
+        this(config, Integer.MAX_VALUE);
+    }
+
+    /** A store of at most CAPACITY open sessions for machines configured
+     *  by CONFIG. */
+    SessionStore(ConfigParser config, int capacity) {
+        if (capacity <= 0) {
+            throw error("session capacity must be positive");
+        }
+        _config = config;
+        _capacity = capacity;
+        _slots = config.numRotors() - 1;
+        _wide = config.alphabet().size() > BYTE_LIMIT;
+        _recordSize = KEY_BYTES + _slots * (_wide ? 2 : 1);
+        _locks = new Object[NUM_LOCKS];
+        for (int i = 0; i < _locks.length; i += 1) {
+            _locks[i] = new Object();
+        }
+    }
+
+    /** Return the number of the key given by the settings line SETTINGS
+     *  (in the form accepted by Main), registering it if it is new. */
+    synchronized int key(String settings) {
+        Integer id = _keyIds.get(settings);
+        if (id == null) {
+            Machine machine =
+                new Machine(_config.alphabet(), _config.numRotors(),
+                            _config.numPawls(),
+                            new RotorCatalog(_config.catalog()));
+            Main.setUp(machine, settings);
+            id = _keys.size();
+            _keys.add(machine);
+            _pools.add(new ConcurrentLinkedQueue<>());
+            _keyIds.put(settings, id);
+        }
+        return id;
+    }
+
+    /** Return the number of a new session using key number KEY, with the
+     *  rotors at the key's initial positions.  It is an error if there
+     *  are already as many open sessions as my capacity. */
+    int open(int key) {
+        int session;
+        int[] posns;
+        synchronized (this) {
+            if (key < 0 || key >= _keys.size()) {
+                throw error("no key %d", key);
+            }
+            if (_open == _capacity) {
+                throw error("session store is full (%d sessions)",
+                            _capacity);
+            }
+            posns = _keys.get(key).positions();
+            if (_numFree > 0) {
+                _numFree -= 1;
+                session = _free[_numFree];
+            } else {
+                session = _limit;
+                if (session % SEGMENT_SESSIONS == 0) {
+                    _segments.add(ByteBuffer.allocateDirect(
+                                      SEGMENT_SESSIONS * _recordSize));
+                }
+                segment(session).putInt(offset(session), CLOSED);
+                _limit += 1;
+            }
+            _open += 1;
+        }
+        synchronized (lockFor(session)) {
+            synchronized (this) {
+                store(session, key, posns);
+            }
+        }
+        return session;
+    }
+
+    /** Close session number SESSION, so that its record can be
+     *  reused. */
+    void close(int session) {
+        synchronized (lockFor(session)) {
+            synchronized (this) {
+                checkOpen(session);
+                segment(session).putInt(offset(session), CLOSED);
+                if (_numFree == _free.length) {
+                    _free = Arrays.copyOf(_free,
+                                          Math.max(2 * _numFree, 16));
+                }
+                _free[_numFree] = session;
+                _numFree += 1;
+                _open -= 1;
+            }
+        }
+    }
+
+    /** Return the number of open sessions. */
+    synchronized int size() {
+        return _open;
+    }
+
+    /** Return the number of bytes of off-heap storage in use. */
+    synchronized long storageBytes() {
+        return (long) _segments.size() * SEGMENT_SESSIONS * _recordSize;
+    }
+
+    /** Return the conversion of MSG, a message of letters of my alphabet
+     *  (and whitespace, which is removed), in session number SESSION,
+     *  advancing the session's rotors accordingly. */
+    String convert(int session, String msg) {
+        synchronized (lockFor(session)) {
+            int key;
+            int[] posns;
+            synchronized (this) {
+                checkOpen(session);
+                key = segment(session).getInt(offset(session));
+                posns = load(session);
+            }
+            Machine machine = borrow(key);
+            try {
+                machine.setPositions(posns);
+                String result = machine.convert(msg);
+                synchronized (this) {
+                    store(session, key, machine.positions());
+                }
+                return result;
+            } finally {
+                _pools.get(key).add(machine);
+            }
+        }
+    }
+
+    /** Return a machine set up with key number KEY, from its pool if
+     *  possible. */
+    private Machine borrow(int key) {
+        ConcurrentLinkedQueue<Machine> pool;
+        Machine prototype;
+        synchronized (this) {
+            pool = _pools.get(key);
+            prototype = _keys.get(key);
+        }
+        Machine result = pool.poll();
+        if (result == null) {
+            synchronized (prototype) {
+                result = prototype.copy();
+            }
+        }
+        return result;
+    }
+
+    /** Return the lock serializing uses of session number SESSION. */
+    private Object lockFor(int session) {
+        return _locks[session & (_locks.length - 1)];
+    }
+
+    /** Report an error unless SESSION is an open session. */
+    private void checkOpen(int session) {
+        if (session < 0 || session >= _limit
+            || segment(session).getInt(offset(session)) == CLOSED) {
+            throw error("no open session %d", session);
+        }
+    }
+
+    /** Return the segment holding the record of SESSION. */
+    private ByteBuffer segment(int session) {
+        return _segments.get(session / SEGMENT_SESSIONS);
+    }
+
+    /** Return the offset in its segment of the record of SESSION. */
+    private int offset(int session) {
+        return (session % SEGMENT_SESSIONS) * _recordSize;
+    }
+
+    /** Set the record of SESSION to key number KEY with rotor positions
+     *  POSNS. */
+    private void store(int session, int key, int[] posns) {
+        ByteBuffer segment = segment(session);
+        int p = offset(session);
+        segment.putInt(p, key);
+        p += KEY_BYTES;
+        for (int posn : posns) {
+            if (_wide) {
+                segment.putShort(p, (short) posn);
+                p += 2;
+            } else {
+                segment.put(p, (byte) posn);
+                p += 1;
+            }
+        }
+    }
+
+    /** Return the rotor positions in the record of SESSION. */
+    private int[] load(int session) {
+        ByteBuffer segment = segment(session);
+        int p = offset(session) + KEY_BYTES;
+        int[] result = new int[_slots];
+        for (int i = 0; i < _slots; i += 1) {
+            if (_wide) {
+                result[i] = segment.getShort(p) & 0xffff;
+                p += 2;
+            } else {
+                result[i] = segment.get(p) & 0xff;
+                p += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Largest alphabet whose positions fit in a byte. */
+    private static final int BYTE_LIMIT = 256;
+
+    /** Bytes in the key number of a record. */
+    private static final int KEY_BYTES = 4;
+
+    /** Key number in the record of a closed session. */
+    private static final int CLOSED = -1;
+
+    /** Number of session records in a segment. */
+    private static final int SEGMENT_SESSIONS = 1 << 16;
+
+    /** Number of locks serializing uses of sessions; a power of 2. */
+    private static final int NUM_LOCKS = 64;
+
+    /** Largest number of sessions open at once. */
+    private final int _capacity;
+
+    /** The configuration of my machines. */
+    private final ConfigParser _config;
+
+    /** Number of rotor positions in a record. */
+    private final int _slots;
+
+    /** True iff rotor positions take two bytes. */
+    private final boolean _wide;
+
+    /** Size of a session record in bytes. */
+    private final int _recordSize;
+
+    /** Machines set up with each key, in their initial positions, by key
+     *  number. */
+    private final ArrayList<Machine> _keys = new ArrayList<>();
+
+    /** Maps settings lines to key numbers. */
+    private final HashMap<String, Integer> _keyIds = new HashMap<>();
+
+    /** Idle machines set up with each key, by key number. */
+    private final ArrayList<ConcurrentLinkedQueue<Machine>> _pools =
+        new ArrayList<>();
+
+    /** Segments of session records. */
+    private final ArrayList<ByteBuffer> _segments = new ArrayList<>();
+
+    /** Number of session records ever used. */
+    private int _limit;
+
+    /** Number of open sessions. */
+    private int _open;
+
+    /** Numbers of closed sessions whose records may be reused. */
+    private int[] _free = new int[0];
+
+    /** Number of entries in _free. */
+    private int _numFree;
+
+    /** Locks serializing uses of sessions. */
+    private final Object[] _locks;
+
+}
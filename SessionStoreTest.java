@@ -0,0 +1,133 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SessionStore class.
+ *  @author Frederick Fan
+ */
+public class SessionStoreTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A settings line. */
+    static final String KEY1 = "* B BETA III IV I AXLE (YF) (ZH)";
+
+    /** Another settings line. */
+    static final String KEY2 = "* B GAMMA I II III ZDQV";
+
+    /** Return the parsed default configuration. */
+    static ConfigParser config() {
+        try {
+            return new ConfigParser(
+                new String(Files.readAllBytes(Paths.get("default.conf"))));
+        } catch (IOException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+    /** Return the conversion of MSG by a machine newly set up with
+     *  SETTINGS. */
+    static String direct(String settings, String msg) {
+        ConfigParser config = config();
+        Machine machine =
+            new Machine(config.alphabet(), config.numRotors(),
+                        config.numPawls(), config.catalog());
+        Main.setUp(machine, settings);
+        return machine.convert(msg);
+    }
+
+    /** Check that SESSION is not open in STORE. */
+    static void checkClosed(SessionStore store, int session) {
+        try {
+            store.convert(session, "A");
+            fail("session " + session + " is still open");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSessions() {
+        SessionStore store = new SessionStore(config());
+        int key1 = store.key(KEY1), key2 = store.key(KEY2);
+        assertEquals(key1, store.key(KEY1));
+        int s1 = store.open(key1), s2 = store.open(key2);
+        assertEquals(2, store.size());
+        assertEquals(direct(KEY2, "HIAWATHA"), store.convert(s2, "HIAWATHA"));
+        String text = direct(KEY1, "FROMHISSHOULDERHIAWATHA");
+        assertEquals(text.substring(0, 15),
+                     store.convert(s1, "FROM HIS SHOULDER"));
+        assertEquals(text.substring(15), store.convert(s1, "HIAWATHA"));
+        store.close(s1);
+        assertEquals(1, store.size());
+        checkClosed(store, s1);
+        int s3 = store.open(key2);
+        assertEquals(s1, s3);
+        assertEquals(direct(KEY2, "HIAWATHA"), store.convert(s3, "HIAWATHA"));
+        checkClosed(store, s3 + s2 + 1);
+        assertTrue(store.storageBytes() > 0);
+    }
+
+    @Test
+    public void checkCapacity() {
+        SessionStore store = new SessionStore(config(), 3);
+        int key = store.key(KEY1);
+        int[] sessions = new int[3];
+        for (int i = 0; i < sessions.length; i += 1) {
+            sessions[i] = store.open(key);
+        }
+        try {
+            store.open(key);
+            fail("opened more sessions than the capacity");
+        } catch (EnigmaException excp) {
+            assertEquals(3, store.size());
+        }
+        store.close(sessions[1]);
+        assertEquals(sessions[1], store.open(key));
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    public void checkCloseDuringConvert() throws InterruptedException {
+        SessionStore store = new SessionStore(config());
+        int key1 = store.key(KEY1), key2 = store.key(KEY2);
+        String fresh = direct(KEY2, "HIAWATHA");
+        String advanced =
+            direct(KEY2, "FROMHISSHOULDERHIAWATHA").substring(15);
+        for (int round = 0; round < 200; round += 1) {
+            int session = store.open(key1);
+            Thread converter = new Thread(() -> {
+                try {
+                    store.convert(session, "FROMHISSHOULDER");
+                } catch (EnigmaException excp) {
+                    /* Closed first. */
+                }
+            });
+            converter.start();
+            store.close(session);
+            int reopened = store.open(key2);
+            converter.join();
+            String result = store.convert(reopened, "HIAWATHA");
+            assertTrue(msg("checkCloseDuringConvert", "round %d: %s",
+                           round, result),
+                       result.equals(fresh) || result.equals(advanced));
+            store.close(reopened);
+        }
+    }
+
+}
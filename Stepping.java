@@ -0,0 +1,164 @@
+package enigma;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** How the rotors of a machine move at each keystroke, compiled for the
+ *  rotors in its slots.  Only the rotors in the rightmost P slots, where P
+ *  is the machine's number of pawls, are driven.  Numbering those slots
+ *  from the right, starting with 0 for the fast rotor, slot J of them has
+ *  the bit 1 << J in a mask.  Before each keystroke, the machine forms the
+ *  mask of the driven rotors at their trip positions (see trips), and
+ *  advance gives the mask of the rotors that move.  For at most TABLE_BITS
+ *  pawls, advance is a single lookup in a table built here, so that
+ *  stepping costs the same whatever the model and however many rotors
+ *  there are; only for more pawls than that is the model's rule applied
+ *  at each keystroke.
+ *  @author Frederick Fan
+ */
+final class Stepping {
+
+    /** Ways in which rotors drive one another. */
+    enum Model {
+        /** Pawl and ratchet, as in the service Enigma: the fast rotor
+         *  moves at every keystroke, and each other pawl moves its rotor
+         *  when the rotor to its right is at a notch, pushing that rotor
+         *  on as well unless it is the fast rotor (the "double step"). */
+        ENIGMA,
+        /** An odometer: each rotor moves only when the rotor to its right
+         *  moves on from a notch, so that no rotor moves twice running
+         *  except the fast rotor. */
+        ODOMETER,
+        /** Cog-wheel drive, as in the Abwehr's Enigma G: as for ODOMETER,
+         *  except that a wheel carries into the next as it moves onto a
+         *  notch, rather than off it. */
+        GEAR
+    }
+
+    /** Return the model named NAME (ignoring case), as given in an
+     *  option. */
+    static Model model(String name) {
+        try {
+            return Model.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException excp) {
+            throw error("unknown stepping model %s", name);
+        }
+    }
+
+    /** Stepping according to MODEL for the rotors in SLOTS (the reflector
+     *  first), of which the rightmost PAWLS are driven. */
+    Stepping(Model model, List<Rotor> slots, int pawls) {
+        int numSlots = slots.size();
+        _model = model;
+        _pawls = Math.max(0, Math.min(pawls, numSlots - 1));
+        if (_pawls >= Long.SIZE) {
+            throw error("at most %d pawls are supported", Long.SIZE - 1);
+        }
+        _size = slots.get(0).size();
+        _trips = new long[numSlots * _size];
+        for (int j = 0; j < _pawls; j += 1) {
+            int k = numSlots - 1 - j;
+            Rotor rotor = slots.get(k);
+            CompiledRotor tables = rotor.compiled();
+            if (rotor.rotates()) {
+                _rotates |= 1L << j;
+            }
+            for (int posn = 0; posn < _size; posn += 1) {
+                int trip = model == Model.GEAR ? tables.next(posn) : posn;
+                if (tables.atNotch(trip)) {
+                    _trips[k * _size + posn] = 1L << j;
+                }
+            }
+        }
+        if (_pawls <= TABLE_BITS) {
+            _table = new int[1 << _pawls];
+            for (int trips = 0; trips < _table.length; trips += 1) {
+                _table[trips] = (int) rule(trips);
+            }
+        } else {
+            _table = null;
+        }
+    }
+
+    /** Return my model. */
+    Model model() {
+        return _model;
+    }
+
+    /** Return the number of rotors I drive. */
+    int pawls() {
+        return _pawls;
+    }
+
+    /** Return the bit of the rotor in slot K (counting from the
+     *  reflector, at 0) if it trips the rotor to its left at position
+     *  POSN, and otherwise 0. */
+    long trips(int k, int posn) {
+        return _trips[k * _size + posn];
+    }
+
+    /** Return the table of trips, whose element K * size + POSN is
+     *  trips(K, POSN), for loops that index it directly.  It must not be
+     *  modified. */
+    long[] tripTable() {
+        return _trips;
+    }
+
+    /** Return the mask of the rotors that move at a keystroke, given the
+     *  mask TRIPS of those at their trip positions. */
+    long advance(long trips) {
+        if (_table != null) {
+            return _table[(int) trips];
+        }
+        return rule(trips);
+    }
+
+    /** Return the mask of the rotors that move at a keystroke, given the
+     *  mask TRIPS of those at their trip positions, according to my
+     *  model. */
+    private long rule(long trips) {
+        if (_pawls == 0) {
+            return 0;
+        }
+        long moves = _rotates & 1;
+        for (int j = 1; j < _pawls; j += 1) {
+            long right = 1L << (j - 1), self = 1L << j;
+            boolean move;
+            if (_model == Model.ENIGMA) {
+                move = (trips & right) != 0
+                    || (j + 1 < _pawls && (trips & self) != 0
+                        && (_rotates & (self << 1)) != 0);
+            } else {
+                move = (moves & right) != 0 && (trips & right) != 0;
+            }
+            if (move && (_rotates & self) != 0) {
+                moves |= self;
+            }
+        }
+        return moves;
+    }
+
+    /** Largest number of pawls for which advance uses a table. */
+    static final int TABLE_BITS = 16;
+
+    /** My model. */
+    private final Model _model;
+
+    /** Number of rotors driven. */
+    private final int _pawls;
+
+    /** Size of the rotors' alphabet. */
+    private final int _size;
+
+    /** Mask of the driven rotors that can move. */
+    private long _rotates;
+
+    /** The trips of each slot at each position; see tripTable. */
+    private final long[] _trips;
+
+    /** The result of advance for every mask of trips, or null if there
+     *  are more than TABLE_BITS pawls. */
+    private final int[] _table;
+
+}
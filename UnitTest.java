@@ -16,7 +16,25 @@ public class UnitTest {
 
 
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(PermutationTest.class, MovingRotorTest.class,
+                          CribFilterTest.class, MachineTest.class,
+                          NgramScorerTest.class, KeystreamCacheTest.class,
+                          ResultCacheTest.class,
+                          SessionStoreTest.class,
+                          RotorTableFileTest.class,
+                          MachineProcessorTest.class,
+                          FilePublisherTest.class,
+                          ParallelConverterTest.class,
+                          LatencyHistogramTest.class,
+                          CompressionTest.class,
+                          RingBufferTest.class,
+                          CheckpointTest.class,
+                          LineReaderTest.class,
+                          ConfigParserTest.class,
+                          KeySpaceTest.class,
+                          PlugboardSearchTest.class,
+                          BatchTest.class,
+                          LineValidatorTest.class);
     }
 
 }
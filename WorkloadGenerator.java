@@ -0,0 +1,483 @@
+package enigma;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.SplittableRandom;
+
+import static enigma.EnigmaException.*;
+
+/** Generates configuration files, and files of messages for them, for
+ *  load-testing.  Everything generated is determined by a seed, and is
+ *  written as it is generated, so that arbitrarily large message files
+ *  take no more memory than small ones.
+ *
+ *  Alphabets may be ranges of characters or mixed alphabets of any size
+ *  for which the default charset has enough suitable characters.  Rotors
+ *  are random permutations with random notches; reflectors are random
+ *  pairings.  Messages consist of a settings line, with random rotors,
+ *  positions, optionally ring settings, and plugboard, followed by lines
+ *  of random letters laid out with a chosen pattern of whitespace.
+ *  @author Frederick Fan
+ */
+class WorkloadGenerator {
+
+    /** A generator whose parameters are given by OPTIONS, each of the form
+     *  --NAME=VALUE (see main). */
+    WorkloadGenerator(String... options) {
+        for (String option : options) {
+            setOption(option);
+        }
+        if (_size < 2) {
+            throw error("alphabet must have at least 2 characters");
+        }
+        if (_pawls >= _slots || _pawls < 1) {
+            throw error("need 1 <= pawls < slots");
+        }
+        if (_moving < _pawls || _fixed < _slots - 1 - _pawls
+            || _reflectors < 1) {
+            throw error("too few rotors for %d slots and %d pawls",
+                        _slots, _pawls);
+        }
+        _symbols = _mixed ? mixedSymbols() : rangeSymbols();
+    }
+
+    /** Record the option OPTION. */
+    private void setOption(String option) {
+        String name = option.substring(0, option.indexOf('=') + 1);
+        switch (name) {
+        case "--seed=":
+            _seed = Long.parseLong(option.substring(name.length()));
+            break;
+        case "--alphabet=":
+            _size = number(option);
+            break;
+        case "--mixed=":
+            _mixed = Boolean.parseBoolean(option.substring(name.length()));
+            break;
+        case "--slots=":
+            _slots = number(option);
+            break;
+        case "--pawls=":
+            _pawls = number(option);
+            break;
+        case "--moving=":
+            _moving = number(option);
+            break;
+        case "--fixed=":
+            _fixed = number(option);
+            break;
+        case "--reflectors=":
+            _reflectors = number(option);
+            break;
+        case "--messages=":
+            _messages = number(option);
+            break;
+        case "--length=":
+            _length = number(option);
+            break;
+        case "--line=":
+            _line = number(option);
+            break;
+        case "--plugs=":
+            _plugs = number(option);
+            break;
+        case "--rings=":
+            _rings = Boolean.parseBoolean(option.substring(name.length()));
+            break;
+        case "--whitespace=":
+            _whitespace = option.substring(name.length());
+            if (!_whitespace.matches("groups|words|none")) {
+                throw error("bad value in option %s", option);
+            }
+            break;
+        default:
+            throw error("unknown option %s", option);
+        }
+    }
+
+    /** Return the non-negative integer value of OPTION, which has the form
+     *  --NAME=VALUE. */
+    private static int number(String option) {
+        int value;
+        try {
+            value = Integer.parseInt(option.substring(option.indexOf('=') + 1));
+        } catch (NumberFormatException excp) {
+            value = -1;
+        }
+        if (value < 0) {
+            throw error("bad value in option %s", option);
+        }
+        return value;
+    }
+
+    /** Return the characters of a range alphabet of _size characters. */
+    private String rangeSymbols() {
+        char first;
+        if (_size <= LETTERS) {
+            first = 'A';
+        } else if (_size <= 'Z' - '0' + 1) {
+            first = '0';
+        } else {
+            first = WIDE_START;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < _size; i += 1) {
+            result.append((char) (first + i));
+        }
+        return checkEncodable(result.toString());
+    }
+
+    /** Return the characters, in random order, of a mixed alphabet of
+     *  _size characters. */
+    private String mixedSymbols() {
+        StringBuilder pool = new StringBuilder(SAFE_SYMBOLS);
+        for (char c = WIDE_START; pool.length() < _size; c += 1) {
+            pool.append(c);
+        }
+        char[] chars = pool.substring(0, _size).toCharArray();
+        shuffle(chars, new SplittableRandom(_seed));
+        return checkEncodable(new String(chars));
+    }
+
+    /** Return SYMBOLS, after checking that the default charset, which Main
+     *  uses to read files, can represent them. */
+    private static String checkEncodable(String symbols) {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder();
+        if (!encoder.canEncode(symbols)) {
+            throw error("alphabet too large for the default charset (%s)",
+                        Charset.defaultCharset());
+        }
+        return symbols;
+    }
+
+    /** Randomly permute the elements of A using RANDOM. */
+    private static void shuffle(char[] a, SplittableRandom random) {
+        for (int i = a.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            char t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    /** Write a configuration file to OUT. */
+    void writeConfig(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(_seed + 1);
+        if (_mixed) {
+            out.write(_symbols);
+        } else {
+            out.write(_symbols.charAt(0) + "-"
+                      + _symbols.charAt(_size - 1));
+        }
+        out.write("\n " + _slots + " " + _pawls + "\n");
+        for (int i = 1; i <= _moving; i += 1) {
+            StringBuilder notches = new StringBuilder("M");
+            int count = 1 + random.nextInt(MAX_NOTCHES);
+            for (int k = 0; k < count; k += 1) {
+                char c = _symbols.charAt(random.nextInt(_size));
+                if (notches.indexOf(Character.toString(c)) < 0) {
+                    notches.append(c);
+                }
+            }
+            writeRotor(out, "M" + i, notches.toString(),
+                       permutation(random));
+        }
+        for (int i = 1; i <= _fixed; i += 1) {
+            writeRotor(out, "F" + i, "N", permutation(random));
+        }
+        for (int i = 1; i <= _reflectors; i += 1) {
+            writeRotor(out, "R" + i, "R", pairing(random));
+        }
+    }
+
+    /** Return the cycles of a random permutation of my alphabet, chosen
+     *  using RANDOM. */
+    private String[] permutation(SplittableRandom random) {
+        char[] chars = _symbols.toCharArray();
+        shuffle(chars, random);
+        int count = 0;
+        String[] cycles = new String[_size];
+        for (int start = 0; start < _size; ) {
+            int len = 1 + random.nextInt(_size - start);
+            cycles[count] = new String(chars, start, len);
+            count += 1;
+            start += len;
+        }
+        String[] result = new String[count];
+        System.arraycopy(cycles, 0, result, 0, count);
+        return result;
+    }
+
+    /** Return the cycles of a random pairing of the characters of my
+     *  alphabet (leaving one character alone if there are an odd number
+     *  of them), chosen using RANDOM. */
+    private String[] pairing(SplittableRandom random) {
+        char[] chars = _symbols.toCharArray();
+        shuffle(chars, random);
+        String[] result = new String[(_size + 1) / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = new String(chars, 2 * i, Math.min(2, _size - 2 * i));
+        }
+        return result;
+    }
+
+    /** Write a rotor description to OUT for the rotor NAME with notch
+     *  specification NOTCHES and permutation CYCLES, continuing the
+     *  cycles on further lines as necessary. */
+    private void writeRotor(Writer out, String name, String notches,
+                            String[] cycles) throws IOException {
+        String head = " " + name + " " + notches;
+        StringBuilder line = new StringBuilder(head);
+        while (line.length() < CYCLE_COLUMN) {
+            line.append(' ');
+        }
+        for (String cycle : cycles) {
+            if (line.length() > CYCLE_COLUMN
+                && line.length() + cycle.length() + 3 > LINE_WIDTH) {
+                out.write(line.append('\n').toString());
+                line.setLength(0);
+                while (line.length() < CYCLE_COLUMN) {
+                    line.append(' ');
+                }
+            }
+            if (line.length() > CYCLE_COLUMN) {
+                line.append(' ');
+            }
+            line.append('(').append(cycle).append(')');
+        }
+        out.write(line.append('\n').toString());
+    }
+
+    /** Write the messages to OUT. */
+    void writeMessages(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(_seed + 2);
+        StringBuilder line = new StringBuilder();
+        for (int m = 0; m < _messages; m += 1) {
+            writeSettings(out, random);
+            int length = _length / 2 + random.nextInt(_length + 1);
+            int column = 0, group = 0;
+            line.setLength(0);
+            for (int i = 0; i < length; i += 1) {
+                if (column == _line) {
+                    out.write(line.append('\n').toString());
+                    line.setLength(0);
+                    column = group = 0;
+                    if (random.nextInt(BLANK_ODDS) == 0) {
+                        out.write('\n');
+                    }
+                }
+                if (group > 0 && breakGroup(group, random)) {
+                    line.append(' ');
+                    group = 0;
+                }
+                line.append(_symbols.charAt(random.nextInt(_size)));
+                column += 1;
+                group += 1;
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    /** Return true iff a group of GROUP letters should end here, choosing
+     *  using RANDOM where necessary. */
+    private boolean breakGroup(int group, SplittableRandom random) {
+        switch (_whitespace) {
+        case "groups":
+            return group == GROUP_SIZE;
+        case "words":
+            return random.nextInt(WORD_LENGTH) == 0;
+        default:
+            return false;
+        }
+    }
+
+    /** Write a random settings line to OUT, choosing using RANDOM. */
+    private void writeSettings(Writer out, SplittableRandom random)
+        throws IOException {
+        StringBuilder line = new StringBuilder("* R");
+        line.append(1 + random.nextInt(_reflectors));
+        int[] fixed = choose(_fixed, _slots - 1 - _pawls, random);
+        for (int f : fixed) {
+            line.append(" F").append(f + 1);
+        }
+        int[] moving = choose(_moving, _pawls, random);
+        for (int k : moving) {
+            line.append(" M").append(k + 1);
+        }
+        line.append(' ');
+        for (int i = 1; i < _slots; i += 1) {
+            line.append(_symbols.charAt(random.nextInt(_size)));
+        }
+        if (_rings) {
+            line.append(' ');
+            for (int i = 1; i < _slots; i += 1) {
+                line.append(_symbols.charAt(random.nextInt(_size)));
+            }
+        }
+        int plugs = Math.min(random.nextInt(_plugs + 1), _size / 2);
+        char[] chars = _symbols.toCharArray();
+        for (int i = 0; i < 2 * plugs; i += 1) {
+            int j = i + random.nextInt(chars.length - i);
+            char t = chars[i];
+            chars[i] = chars[j];
+            chars[j] = t;
+        }
+        for (int i = 0; i < plugs; i += 1) {
+            line.append(" (").append(chars[2 * i]).append(chars[2 * i + 1])
+                .append(')');
+        }
+        out.write(line.append('\n').toString());
+    }
+
+    /** Return K distinct numbers chosen from 0 .. N-1 using RANDOM. */
+    private static int[] choose(int n, int k, SplittableRandom random) {
+        int[] result = new int[k];
+        for (int i = 0; i < k; i += 1) {
+            boolean fresh;
+            do {
+                result[i] = random.nextInt(n);
+                fresh = true;
+                for (int j = 0; j < i; j += 1) {
+                    fresh &= result[j] != result[i];
+                }
+            } while (!fresh);
+        }
+        return result;
+    }
+
+    /** Generate a configuration file named ARGS[N-2] and a message file
+     *  named ARGS[N-1], where N = ARGS.length, according to the options
+     *  ARGS[0 .. N-3].  The options, with their defaults, are
+     *      --seed=1          Seed for all random choices.
+     *      --alphabet=26     Size of the alphabet.
+     *      --mixed=false     Use a mixed alphabet rather than a range.
+     *      --slots=5         Number of rotor slots.
+     *      --pawls=3         Number of pawls.
+     *      --moving=8        Number of moving rotors in the configuration.
+     *      --fixed=2         Number of fixed rotors in the configuration.
+     *      --reflectors=2    Number of reflectors in the configuration.
+     *      --messages=100    Number of messages.
+     *      --length=500      Average number of letters in a message.
+     *      --line=60         Number of letters per line.
+     *      --plugs=10        Largest number of plugboard pairs.
+     *      --rings=false     Give ring settings in settings lines.
+     *      --whitespace=groups  Separate letters into groups of five
+     *                        ("groups"), random words ("words"), or not at
+     *                        all ("none"). */
+    public static void main(String... args) {
+        try {
+            if (args.length < 2) {
+                throw error("Usage: java enigma.WorkloadGenerator "
+                            + "[OPTIONS] CONFIG MESSAGES");
+            }
+            String[] options = new String[args.length - 2];
+            System.arraycopy(args, 0, options, 0, options.length);
+            WorkloadGenerator gen = new WorkloadGenerator(options);
+            try (Writer config = open(args[args.length - 2]);
+                 Writer messages = open(args[args.length - 1])) {
+                gen.writeConfig(config);
+                gen.writeMessages(messages);
+            } catch (IOException excp) {
+                throw error("could not write output: %s", excp.getMessage());
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: bad number: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return a buffered writer to a new file named NAME, in the default
+     *  charset. */
+    private static Writer open(String name) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(name), Charset.defaultCharset()),
+                                  BUFFER_SIZE);
+    }
+
+    /** Number of letters in the Latin alphabet. */
+    private static final int LETTERS = 26;
+
+    /** First character of the large caseless block used for large
+     *  alphabets (CJK Unified Ideographs). */
+    private static final char WIDE_START = '\u4e00';
+
+    /** Characters that are unchanged by upper-casing and have no special
+     *  meaning in configuration or message files, for mixed alphabets. */
+    private static final String SAFE_SYMBOLS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!\"#$%&'+,./:;<=>?@[\\]^_`{|}~";
+
+    /** Most notches generated for a moving rotor. */
+    private static final int MAX_NOTCHES = 3;
+
+    /** Column at which rotor cycles start in the configuration file. */
+    private static final int CYCLE_COLUMN = 12;
+
+    /** Width beyond which cycles continue on the next line. */
+    private static final int LINE_WIDTH = 72;
+
+    /** Number of letters in a group, for "groups" whitespace. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Average length of a word, for "words" whitespace. */
+    private static final int WORD_LENGTH = 6;
+
+    /** One in this many message lines is followed by a blank line. */
+    private static final int BLANK_ODDS = 20;
+
+    /** Size of the output buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Seed for all random choices. */
+    private long _seed = 1;
+
+    /** Size of the alphabet. */
+    private int _size = LETTERS;
+
+    /** True for a mixed alphabet; false for a range. */
+    private boolean _mixed;
+
+    /** Number of rotor slots. */
+    private int _slots = 5;
+
+    /** Number of pawls. */
+    private int _pawls = 3;
+
+    /** Number of moving rotors. */
+    private int _moving = 8;
+
+    /** Number of fixed rotors. */
+    private int _fixed = 2;
+
+    /** Number of reflectors. */
+    private int _reflectors = 2;
+
+    /** Number of messages. */
+    private int _messages = 100;
+
+    /** Average number of letters per message. */
+    private int _length = 500;
+
+    /** Number of letters per line. */
+    private int _line = 60;
+
+    /** Largest number of plugboard pairs. */
+    private int _plugs = 10;
+
+    /** True iff settings lines give ring settings. */
+    private boolean _rings;
+
+    /** Whitespace pattern: "groups", "words", or "none". */
+    private String _whitespace = "groups";
+
+    /** Characters of the alphabet, in order. */
+    private final String _symbols;
+
+}